@@ -0,0 +1,55 @@
+package com.example.api;
+
+import com.example.project.Project;
+import com.example.project.ProjectService;
+import com.example.security.PmisUserDetails;
+import com.example.security.SecurityService;
+
+import java.util.List;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Read-only API for service accounts, authenticated with API tokens (see
+ * {@link com.example.security.ApiSecurityConfig})
+ */
+@RestController
+@RequestMapping("/api")
+public class ServiceApiController {
+
+    private final SecurityService securityService;
+    private final ProjectService projectService;
+
+    public ServiceApiController(SecurityService securityService, ProjectService projectService) {
+        this.securityService = securityService;
+        this.projectService = projectService;
+    }
+
+    @GetMapping("/me")
+    public Me me() {
+        PmisUserDetails principal = securityService.getCurrentPrincipal();
+        return new Me(principal.getId(), principal.getUsername(), principal.getName(), principal.getRole().name());
+    }
+
+    /**
+     * Projects visible to the service account, with the same scoping as the UI
+     */
+    @GetMapping("/projects")
+    public List<ProjectSummary> projects() {
+        return projectService.getAll().stream().map(ProjectSummary::of).toList();
+    }
+
+    public record Me(Long id, String uvus, String name, String role) {
+    }
+
+    public record ProjectSummary(Long id, String name, Long programId, String programName) {
+
+        static ProjectSummary of(Project project) {
+            return new ProjectSummary(project.getId(), project.getName(),
+                    project.getProgram() != null ? project.getProgram().getId() : null,
+                    project.getProgram() != null ? project.getProgram().getName() : null);
+        }
+    }
+}
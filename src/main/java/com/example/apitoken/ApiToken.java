@@ -0,0 +1,108 @@
+package com.example.apitoken;
+
+import com.example.user.User;
+
+import java.time.Instant;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+
+/**
+ * Token of a service account. Only the HMAC of the secret is stored; the raw
+ * token is shown once, when it is issued.
+ */
+@Entity
+@Table(name = "api_token")
+public class ApiToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "api_token_seq")
+    @SequenceGenerator(name = "api_token_seq", sequenceName = "api_token_seq", allocationSize = 100)
+    @Column(name = "api_token_id", nullable = false)
+    @NotNull
+    private Long id;
+
+    @Column(name = "api_token_name", nullable = false)
+    @NotBlank
+    private String name;
+
+    // Public part of the token, used to find it without scanning
+    @Column(name = "api_token_public_id", unique = true, nullable = false, length = 32)
+    @NotBlank
+    private String publicId;
+
+    @Column(name = "api_token_secret_hash", nullable = false)
+    @NotBlank
+    private String secretHash;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "api_token_created_at", nullable = false)
+    @NotNull
+    private Instant createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public void setPublicId(String publicId) {
+        this.publicId = publicId;
+    }
+
+    public String getSecretHash() {
+        return secretHash;
+    }
+
+    public void setSecretHash(String secretHash) {
+        this.secretHash = secretHash;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ApiToken))
+            return false;
+        ApiToken apiToken = (ApiToken) o;
+        return getId() != null && getId().equals(apiToken.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
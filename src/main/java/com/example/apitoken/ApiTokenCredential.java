@@ -0,0 +1,8 @@
+package com.example.apitoken;
+
+/**
+ * What verification needs from a stored token: its public id, the HMAC of its
+ * secret and the service account it authenticates
+ */
+public record ApiTokenCredential(String publicId, String secretHash, Long userId) {
+}
@@ -0,0 +1,22 @@
+package com.example.apitoken;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ApiTokenRepository extends JpaRepository<ApiToken, Long> {
+
+    @Query("SELECT new com.example.apitoken.ApiTokenCredential(t.publicId, t.secretHash, t.user.id) FROM ApiToken t")
+    List<ApiTokenCredential> findAllCredentials();
+
+    @Query("SELECT new com.example.apitoken.ApiTokenRow(t.id, t.name, t.publicId, u.uvus, u.name, t.createdAt) "
+            + "FROM ApiToken t JOIN t.user u ORDER BY t.createdAt DESC, t.id DESC")
+    List<ApiTokenRow> findAllRows();
+
+    @Query("SELECT t FROM ApiToken t WHERE t.user.id = :userId")
+    List<ApiToken> findAllByUserId(@Param("userId") Long userId);
+}
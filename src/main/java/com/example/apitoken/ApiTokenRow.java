@@ -0,0 +1,10 @@
+package com.example.apitoken;
+
+import java.time.Instant;
+
+/**
+ * Grid row of a token: what an admin needs to tell tokens apart, never the
+ * secret hash
+ */
+public record ApiTokenRow(Long id, String name, String publicId, String uvus, String userName, Instant createdAt) {
+}
@@ -0,0 +1,307 @@
+package com.example.apitoken;
+
+import com.example.config.PrimaryReads;
+import com.example.security.PmisUserDetails;
+import com.example.security.SecurityService;
+import com.example.security.UserVersions;
+import com.example.user.User;
+import com.example.user.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Issues, revokes and verifies service-account API tokens.
+ * <p>
+ * A token is {@code pmis_<publicId>_<secret>}. The database keeps the HMAC-SHA256
+ * of the secret under the server key ({@code pmis.api.token-key}), never the
+ * secret itself. Verification is an in-memory lookup by public id plus one HMAC
+ * and a constant-time comparison: no query, no BCrypt, no session. The cache
+ * holds every token and is kept up to date by this service: a new token is only
+ * accepted once its transaction commits, and if a transaction that changed the
+ * cache rolls back, it is reloaded on the next verification.
+ */
+@Service
+@Transactional
+public class ApiTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiTokenService.class);
+
+    static final String PREFIX = "pmis_";
+    private static final String HMAC = "HmacSHA256";
+
+    private final ApiTokenRepository apiTokenRepository;
+    private final UserRepository userRepository;
+    private final SecurityService securityService;
+    private final UserVersions userVersions;
+    private final PrimaryReads primaryReads;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs;
+
+    private volatile Map<String, CachedToken> tokens = new ConcurrentHashMap<>();
+    private volatile boolean stale = true;
+
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    public ApiTokenService(ApiTokenRepository apiTokenRepository, UserRepository userRepository,
+            SecurityService securityService, UserVersions userVersions, PrimaryReads primaryReads,
+            @Value("${pmis.api.token-key:}") String tokenKey) {
+        this.apiTokenRepository = apiTokenRepository;
+        this.userRepository = userRepository;
+        this.securityService = securityService;
+        this.userVersions = userVersions;
+        this.primaryReads = primaryReads;
+
+        byte[] keyBytes;
+        if (tokenKey.isBlank()) {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+            log.warn("pmis.api.token-key is not set: using a random key, API tokens will not survive a restart");
+        } else {
+            keyBytes = Base64.getDecoder().decode(tokenKey);
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * Creates a token for a service account. Only admins can issue tokens.
+     *
+     * @return The raw token; it cannot be recovered later
+     */
+    public String issue(Long userId, String name) {
+        requireAdmin("Solo los administradores pueden emitir tokens de API");
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado: " + userId));
+
+        byte[] publicBytes = new byte[10];
+        random.nextBytes(publicBytes);
+        String publicId = HexFormat.of().formatHex(publicBytes);
+        byte[] secretBytes = new byte[32];
+        random.nextBytes(secretBytes);
+        String secret = Base64.getUrlEncoder().withoutPadding().encodeToString(secretBytes);
+        byte[] hash = hmac(secret);
+
+        ApiToken token = new ApiToken();
+        token.setName(name);
+        token.setPublicId(publicId);
+        token.setSecretHash(Base64.getEncoder().encodeToString(hash));
+        token.setUser(user);
+        token.setCreatedAt(Instant.now());
+        apiTokenRepository.save(token);
+
+        CachedToken cached = new CachedToken(hash, user.getId());
+        onCompletion(() -> tokens.put(publicId, cached));
+        return PREFIX + publicId + "_" + secret;
+    }
+
+    /**
+     * Revokes a token. Only admins can revoke tokens.
+     */
+    public void revoke(Long tokenId) {
+        requireAdmin("Solo los administradores pueden revocar tokens de API");
+        apiTokenRepository.findById(tokenId).ifPresent(token -> {
+            apiTokenRepository.delete(token);
+            tokens.remove(token.getPublicId());
+            onCompletion(null);
+        });
+    }
+
+    /**
+     * Removes the tokens of a user about to be deleted
+     */
+    public void userRemoved(Long userId) {
+        // Entity deletes (a user has a handful of tokens) so no managed token keeps
+        // pointing at the user being deleted
+        apiTokenRepository.deleteAll(apiTokenRepository.findAllByUserId(userId));
+        tokens.values().removeIf(token -> token.userId().equals(userId));
+        onCompletion(null);
+    }
+
+    /**
+     * Every token, newest first. Only admins can list tokens.
+     */
+    @Transactional(readOnly = true)
+    public List<ApiTokenRow> findAll() {
+        requireAdmin("Solo los administradores pueden ver los tokens de API");
+        return apiTokenRepository.findAllRows();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ApiToken> findAllByUserId(Long userId) {
+        return apiTokenRepository.findAllByUserId(userId);
+    }
+
+    /**
+     * Verifies a raw token
+     *
+     * @return Principal of the service account, or null if the token is not valid
+     */
+    @Transactional(readOnly = true)
+    public PmisUserDetails authenticate(String rawToken) {
+        CachedToken cached = null;
+        String secret = null;
+        if (rawToken != null && rawToken.startsWith(PREFIX)) {
+            int separator = rawToken.indexOf('_', PREFIX.length());
+            if (separator > 0) {
+                cached = fresh().get(rawToken.substring(PREFIX.length(), separator));
+                secret = rawToken.substring(separator + 1);
+            }
+        }
+        if (cached == null || !MessageDigest.isEqual(cached.hash(), hmac(secret))) {
+            rejected.increment();
+            return null;
+        }
+
+        PmisUserDetails principal = cached.principal;
+        long version = userVersions.current(cached.userId());
+        if (principal == null || principal.getVersion() != version) {
+            // First use of the token, or the account changed since
+            User user = userRepository.findById(cached.userId()).orElse(null);
+            if (user == null) {
+                rejected.increment();
+                return null;
+            }
+            principal = PmisUserDetails.of(user, version);
+            principal.eraseCredentials();
+            cached.principal = principal;
+        }
+        verified.increment();
+        return principal;
+    }
+
+    /**
+     * Reloads every committed token from the primary database (see
+     * {@link PrimaryReads})
+     */
+    public synchronized void reload() {
+        Map<String, CachedToken> loaded = new ConcurrentHashMap<>();
+        for (ApiTokenCredential credential : primaryReads.read(apiTokenRepository::findAllCredentials)) {
+            loaded.put(credential.publicId(),
+                    new CachedToken(Base64.getDecoder().decode(credential.secretHash()), credential.userId()));
+        }
+        tokens = loaded;
+        stale = false;
+        reloads.increment();
+    }
+
+    // ===== Metrics =====
+
+    public long getVerifiedCount() {
+        return verified.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    private void requireAdmin(String message) {
+        if (!securityService.isSystemAdmin() && !securityService.isAdmin()) {
+            throw new SecurityException(message);
+        }
+    }
+
+    private Map<String, CachedToken> fresh() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    reload();
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Applies a change after commit (or at once, outside a transaction), or marks
+     * the cache stale if the transaction rolls back
+     */
+    private void onCompletion(Runnable afterCommit) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (afterCommit != null) {
+                afterCommit.run();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    stale = true;
+                } else if (afterCommit != null) {
+                    afterCommit.run();
+                }
+            }
+        });
+    }
+
+    private byte[] hmac(String secret) {
+        Mac mac = macs.get();
+        return mac.doFinal(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    private static final class CachedToken {
+
+        private final byte[] hash;
+        private final Long userId;
+        private volatile PmisUserDetails principal;
+
+        CachedToken(byte[] hash, Long userId) {
+            this.hash = hash;
+            this.userId = userId;
+        }
+
+        byte[] hash() {
+            return hash;
+        }
+
+        Long userId() {
+            return userId;
+        }
+    }
+}
@@ -33,13 +33,13 @@ public class MainLayout extends AppLayout implements RouterLayout { // Implement
 
     // Constructor del Esqueleto
     private final com.vaadin.flow.spring.security.AuthenticationContext authContext;
-    private final com.example.user.UserService userService;
+    private final com.example.security.SecurityService securityService;
 
     // Constructor del Esqueleto
     public MainLayout(com.vaadin.flow.spring.security.AuthenticationContext authContext,
-            com.example.user.UserService userService) {
+            com.example.security.SecurityService securityService) {
         this.authContext = authContext;
-        this.userService = userService;
+        this.securityService = securityService;
 
         setPrimarySection(Section.DRAWER);
         setDrawerOpened(true); // Ensure drawer is open by default on login
@@ -87,19 +87,17 @@ public class MainLayout extends AppLayout implements RouterLayout { // Implement
         Div footer = new Div();
         footer.addClassNames(Display.FLEX, FlexDirection.COLUMN, Padding.MEDIUM, Gap.SMALL, "border-t");
 
-        authContext.getAuthenticatedUser(org.springframework.security.core.userdetails.UserDetails.class)
-                .ifPresent(userDetails -> {
-                    com.example.user.User user = userService.findByUvus(userDetails.getUsername());
-                    if (user != null) {
-                        Span name = new Span(user.getName());
-                        name.addClassNames(FontWeight.BOLD, FontSize.SMALL);
+        // Nombre y UVUS salen del principal, sin consultar la base de datos
+        com.example.security.PmisUserDetails user = securityService.getCurrentPrincipal();
+        if (user != null) {
+            Span name = new Span(user.getName());
+            name.addClassNames(FontWeight.BOLD, FontSize.SMALL);
 
-                        Span uvus = new Span("@" + user.getUvus());
-                        uvus.addClassNames(TextColor.SECONDARY, FontSize.XSMALL);
+            Span uvus = new Span("@" + user.getUsername());
+            uvus.addClassNames(TextColor.SECONDARY, FontSize.XSMALL);
 
-                        footer.add(name, uvus);
-                    }
-                });
+            footer.add(name, uvus);
+        }
 
         com.vaadin.flow.component.button.Button logoutButton = new com.vaadin.flow.component.button.Button(
                 "Cerrar Sesión", VaadinIcon.SIGN_OUT.create());
@@ -128,35 +126,30 @@ public class MainLayout extends AppLayout implements RouterLayout { // Implement
         var nav = new SideNav();
         nav.addClassNames(Margin.Horizontal.MEDIUM);
 
-        // Get current user role
-        authContext.getAuthenticatedUser(org.springframework.security.core.userdetails.UserDetails.class)
-                .ifPresent(userDetails -> {
-                    com.example.user.User currentUser = userService.findByUvus(userDetails.getUsername());
-                    if (currentUser != null) {
-                        com.example.user.Role userRole = currentUser.getRole();
-
-                        // Add menu entries based on role
-                        MenuConfiguration.getMenuEntries().forEach(entry -> {
-                            String title = entry.title();
-
-                            // Filter menu items based on role
-                            boolean shouldShow = true;
-
-                            if (title.equals("Registro de Gestores")) {
-                                // Only ADMIN can see Gestores
-                                shouldShow = userRole == com.example.user.Role.ADMIN;
-                            } else if (title.equals("Usuarios")) {
-                                // ADMIN and MANAGER can see Usuarios
-                                shouldShow = userRole == com.example.user.Role.ADMIN
-                                        || userRole == com.example.user.Role.MANAGER;
-                            }
-
-                            if (shouldShow) {
-                                nav.addItem(createSideNavItem(entry));
-                            }
-                        });
-                    }
-                });
+        // Get current user role (from the principal, no lookup)
+        com.example.user.Role userRole = securityService.getCurrentRole();
+        if (userRole != null) {
+            // Add menu entries based on role
+            MenuConfiguration.getMenuEntries().forEach(entry -> {
+                String title = entry.title();
+
+                // Filter menu items based on role
+                boolean shouldShow = true;
+
+                if (title.equals("Registro de Gestores")) {
+                    // Only ADMIN can see Gestores
+                    shouldShow = userRole == com.example.user.Role.ADMIN;
+                } else if (title.equals("Usuarios")) {
+                    // ADMIN and MANAGER can see Usuarios
+                    shouldShow = userRole == com.example.user.Role.ADMIN
+                            || userRole == com.example.user.Role.MANAGER;
+                }
+
+                if (shouldShow) {
+                    nav.addItem(createSideNavItem(entry));
+                }
+            });
+        }
 
         return nav;
     }
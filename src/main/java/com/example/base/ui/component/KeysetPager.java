@@ -0,0 +1,89 @@
+package com.example.base.ui.component;
+
+import com.vaadin.flow.component.grid.Grid;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Lazy grid items backed by a keyset-paginated query ordered by a text key
+ * (usually the name) and the id.
+ * <p>
+ * The grid asks for rows by offset; the pager remembers the (name, id) of the last
+ * row of every page it served and seeks from the nearest one, so the database
+ * never scans skipped rows and the grid only holds the visible window. The grid
+ * has no row count, so no {@code COUNT(*)} is issued either.
+ *
+ * <pre>
+ * KeysetPager.setItems(grid, userService::getPage, User::getName, User::getId);
+ * </pre>
+ */
+@NullMarked
+public final class KeysetPager<T> {
+
+    /**
+     * Page of rows after the given key, ordered by the text key and id. A null key
+     * means from the first row.
+     */
+    @FunctionalInterface
+    public interface PageQuery<T> {
+
+        List<T> fetch(@Nullable String afterName, @Nullable Long afterId, int limit);
+    }
+
+    private record Key(@Nullable String name, @Nullable Long id) {
+    }
+
+    private final PageQuery<T> query;
+    private final Function<T, String> name;
+    private final Function<T, Long> id;
+    private final Consumer<List<T>> onPage;
+
+    // Offset of a row -> key of the row just before it
+    private final NavigableMap<Integer, Key> seeks = new TreeMap<>(Map.of(0, new Key(null, null)));
+
+    private KeysetPager(PageQuery<T> query, Function<T, String> name, Function<T, Long> id,
+            Consumer<List<T>> onPage) {
+        this.query = query;
+        this.name = name;
+        this.id = id;
+        this.onPage = onPage;
+    }
+
+    public static <T> void setItems(Grid<T> grid, PageQuery<T> query, Function<T, String> name,
+            Function<T, Long> id) {
+        setItems(grid, query, name, id, page -> {
+        });
+    }
+
+    /**
+     * @param onPage Called with every page fetched, before the grid renders it
+     */
+    public static <T> void setItems(Grid<T> grid, PageQuery<T> query, Function<T, String> name,
+            Function<T, Long> id, Consumer<List<T>> onPage) {
+        KeysetPager<T> pager = new KeysetPager<>(query, name, id, onPage);
+        grid.setItems(q -> pager.fetch(q.getOffset(), q.getLimit()));
+    }
+
+    Stream<T> fetch(int offset, int limit) {
+        // Usually an exact hit: the grid reads pages in order
+        Map.Entry<Integer, Key> seek = seeks.floorEntry(offset);
+        int skip = offset - seek.getKey();
+        List<T> rows = query.fetch(seek.getValue().name(), seek.getValue().id(), skip + limit);
+        rows = skip < rows.size() ? rows.subList(skip, rows.size()) : List.of();
+        if (!rows.isEmpty()) {
+            T last = rows.get(rows.size() - 1);
+            seeks.put(offset + rows.size(), new Key(name.apply(last), id.apply(last)));
+        }
+        onPage.accept(rows);
+        return rows.stream();
+    }
+}
@@ -10,6 +10,7 @@ import com.example.program.Program;
 import com.example.project.Project;
 import com.example.user.Role;
 import com.example.user.User;
+import com.example.user.UserRepository;
 import com.example.user.UserService;
 import com.example.portfolio.PortfolioService;
 import com.example.pmo.PMOService;
@@ -24,17 +25,19 @@ public class DataInitializer implements CommandLineRunner {
     private final ProgramService programService;
     private final ProjectService projectService;
     private final UserService userService;
+    private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
     public DataInitializer(
             PortfolioService portfolioService, PMOService pmoService,
             ProgramService programService, ProjectService projectService, UserService userService,
-            PasswordEncoder passwordEncoder) {
+            UserRepository userRepository, PasswordEncoder passwordEncoder) {
         this.portfolioService = portfolioService;
         this.pmoService = pmoService;
         this.programService = programService;
         this.projectService = projectService;
         this.userService = userService;
+        this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
     }
 
@@ -47,6 +50,12 @@ public class DataInitializer implements CommandLineRunner {
                         java.util.List.of(new org.springframework.security.core.authority.SimpleGrantedAuthority(
                                 "ROLE_SYSTEM_ADMIN"))));
 
+        // Demo data only goes into an empty database: with a durable one (prod
+        // profile) deleting or renaming a demo account must not bring them all back
+        if (userRepository.count() > 0) {
+            return;
+        }
+
         for (int i = 1; i <= 24; i++) {
             User user = new User();
             user.setName("User " + i);
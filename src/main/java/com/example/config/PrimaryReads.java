@@ -0,0 +1,31 @@
+package com.example.config;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the reads that rebuild authorization state (the directorship index, the
+ * known-UVUS filter, the API token cache) in a read-write transaction of their
+ * own. {@link ReplicaRoutingDataSource} sends them to the primary: a replica that
+ * is behind could bring back a revoked directorship or miss a user just created.
+ * Being a new transaction, they do not see the uncommitted changes of the caller
+ * either.
+ */
+@Component
+public class PrimaryReads {
+
+    private final TransactionTemplate transaction;
+
+    public PrimaryReads(PlatformTransactionManager transactionManager) {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public <T> T read(Supplier<T> query) {
+        return transaction.execute(status -> query.get());
+    }
+}
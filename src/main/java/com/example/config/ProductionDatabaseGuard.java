@@ -0,0 +1,34 @@
+package com.example.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+/**
+ * Refuses to start the {@code prod} profile on an in-memory database, where every
+ * restart would lose all data. Runs before any bean is created, so the in-memory
+ * database is never even opened.
+ */
+public class ProductionDatabaseGuard implements EnvironmentPostProcessor {
+
+    static final String PROFILE = "prod";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.matchesProfiles(PROFILE)) {
+            return;
+        }
+        String url = environment.getProperty("spring.datasource.url");
+        if (url == null || url.isBlank() || isInMemory(url)) {
+            throw new IllegalStateException("The " + PROFILE + " profile needs a durable database, but "
+                    + "spring.datasource.url is " + (url == null || url.isBlank() ? "not set" : url)
+                    + ". Set PMIS_DB_URL to a file or server database.");
+        }
+    }
+
+    static boolean isInMemory(String url) {
+        String lower = url.toLowerCase();
+        return lower.startsWith("jdbc:h2:mem:") || lower.startsWith("jdbc:hsqldb:mem:")
+                || lower.startsWith("jdbc:derby:memory:");
+    }
+}
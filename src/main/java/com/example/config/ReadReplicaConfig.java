@@ -0,0 +1,76 @@
+package com.example.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Read replicas, only when {@code pmis.datasource.replica.urls} lists at least
+ * one. The primary pool is still configured by {@code spring.datasource.*};
+ * read-only transactions ({@code @Transactional(readOnly = true)}) are sent to
+ * the replicas by {@link ReplicaRoutingDataSource}.
+ */
+@Configuration
+@ConditionalOnExpression("!'${pmis.datasource.replica.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+            @Value("${pmis.datasource.replica.urls}") List<String> urls,
+            @Value("${pmis.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${pmis.datasource.replica.password:${spring.datasource.password:}}") String password,
+            @Value("${pmis.datasource.replica.pool-size:10}") int poolSize,
+            @Value("${pmis.datasource.replica.connection-timeout-ms:1000}") long connectionTimeoutMs,
+            @Value("${pmis.datasource.replica.lag-query:}") String lagQuery,
+            @Value("${pmis.datasource.replica.max-lag-seconds:5}") long maxLagSeconds,
+            @Value("${pmis.datasource.replica.check-interval-seconds:5}") long checkIntervalSeconds) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("pmis-replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            replica.setReadOnly(true);
+            // A replica that is down must not stop the application from starting
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource, replicas, lagQuery,
+                Duration.ofSeconds(maxLagSeconds));
+        routing.start(Duration.ofSeconds(checkIntervalSeconds));
+        return routing;
+    }
+
+    /**
+     * The data source used by JPA, Flyway and the transaction manager. The
+     * connection is only fetched on the first statement, once the transaction
+     * is known to be read-only or not.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out connections of a read replica to read-only transactions and of the
+ * primary to everything else.
+ * <p>
+ * Replicas are used round robin. A replica is skipped while it is unreachable or
+ * its lag (the number of seconds returned by the lag query) is above the limit;
+ * when none is usable the read goes to the primary. A replica that fails to give
+ * a connection is skipped until the next check finds it healthy again.
+ * <p>
+ * A replica may be up to the lag limit behind the primary, and the second-level
+ * cache regions do not expire: the Hibernate session of a transaction reading
+ * from a replica is switched to {@link CacheMode#GET}, so it still reads the
+ * cache but never puts the rows it loaded in it.
+ * <p>
+ * Decides on the first statement, not when the transaction begins, so it must be
+ * wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * the read-only flag of the transaction is only set after the transaction
+ * manager asked for the connection.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final long maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService checker;
+
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    /**
+     * @param lagQuery Query run on a replica returning its lag in seconds; blank
+     *                 if only reachability is checked
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, String lagQuery,
+            Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toSeconds();
+    }
+
+    /**
+     * Checks the replicas every {@code interval} in the background. Replicas start
+     * as usable: a check right at startup would set aside a pool still opening its
+     * first connection.
+     */
+    public synchronized void start(Duration interval) {
+        if (checker != null) {
+            return;
+        }
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pmis-replica-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::checkReplicas, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            int start = next.getAndIncrement();
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+                if (!replica.usable) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replicaConnections.increment();
+                    skipCachePuts();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.usable = false;
+                    replicaFailures.increment();
+                    log.warn("Read replica {} unavailable, reading from the next one or the primary: {}",
+                            replica.dataSource, e.getMessage());
+                }
+            }
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryConnections.increment();
+        return primary.getConnection(username, password);
+    }
+
+    // Only the sessions of this transaction, and only until it ends: with the
+    // entity manager open in view the session may run read-write transactions later
+    private static void skipCachePuts() {
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder holder) {
+                Session session = holder.getEntityManager().unwrap(Session.class);
+                CacheMode previous = session.getCacheMode();
+                session.setCacheMode(CacheMode.GET);
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            if (session.isOpen()) {
+                                session.setCacheMode(previous);
+                            }
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks each replica usable if it answers and is not lagging too far behind
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean usable;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                long lag = lag(connection);
+                usable = lag <= maxLagSeconds;
+                if (!usable && replica.usable) {
+                    log.warn("Read replica {} is {} s behind (limit {} s), reading from the primary",
+                            replica.dataSource, lag, maxLagSeconds);
+                }
+            } catch (SQLException e) {
+                usable = false;
+                if (replica.usable) {
+                    log.warn("Read replica {} unavailable: {}", replica.dataSource, e.getMessage());
+                }
+            }
+            if (usable && !replica.usable) {
+                log.info("Read replica {} is back", replica.dataSource);
+            }
+            replica.usable = usable;
+        }
+    }
+
+    private long lag(Connection connection) throws SQLException {
+        if (lagQuery == null || lagQuery.isBlank()) {
+            return 0;
+        }
+        try (Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery(lagQuery)) {
+            // No row (e.g. nothing replayed yet) counts as no lag
+            return result.next() ? (long) Math.ceil(result.getDouble(1)) : 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // ===== Metrics =====
+
+    public long getPrimaryConnectionCount() {
+        return primaryConnections.sum();
+    }
+
+    public long getReplicaConnectionCount() {
+        return replicaConnections.sum();
+    }
+
+    public long getReplicaFailureCount() {
+        return replicaFailures.sum();
+    }
+
+    public long getUsableReplicaCount() {
+        return replicas.stream().filter(replica -> replica.usable).count();
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+        private volatile boolean usable = true;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.config;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate second-level cache for the reference data read on every navigation:
+ * portfolios, programs, PMOs and users, plus users by UVUS (natural id).
+ * <p>
+ * Every region is created here with a maximum number of entries (least recently
+ * used entries are evicted); Hibernate refuses to start if an entity asks for a
+ * region that is not listed. Bulk HQL updates and deletes evict the regions of
+ * the entities they touch.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String PORTFOLIO_REGION = "portfolio";
+    public static final String PROGRAM_REGION = "program";
+    public static final String PMO_REGION = "pmo";
+    public static final String USER_REGION = "user";
+    public static final String USER_BY_UVUS_REGION = "user-by-uvus";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${pmis.cache.reference-data.max-entries:10000}") long referenceDataEntries,
+            @Value("${pmis.cache.users.max-entries:50000}") long userEntries) {
+        Map<String, Long> regions = new LinkedHashMap<>();
+        regions.put(PORTFOLIO_REGION, referenceDataEntries);
+        regions.put(PROGRAM_REGION, referenceDataEntries);
+        regions.put(PMO_REGION, referenceDataEntries);
+        regions.put(USER_REGION, userEntries);
+        regions.put(USER_BY_UVUS_REGION, userEntries);
+
+        ConfigurationBuilder configuration = ConfigurationBuilder.newConfigurationBuilder();
+        for (Map.Entry<String, Long> region : regions.entrySet()) {
+            configuration = configuration.withCache(region.getKey(), CacheConfigurationBuilder
+                    .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(region.getValue())));
+        }
+        // Own manager per application context, so contexts started by tests do not share entries
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching
+                .getCachingProvider(EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:pmis:l2:" + UUID.randomUUID()), configuration.build());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
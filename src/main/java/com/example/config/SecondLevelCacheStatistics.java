@@ -0,0 +1,59 @@
+package com.example.config;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Hit and miss counters of the second-level cache, overall and per region
+ * (see the region names in {@link SecondLevelCacheConfig}). They only count
+ * while Hibernate statistics are on, which {@code pmis.query-budget.enabled}
+ * turns on; otherwise they stay at zero.
+ */
+@Component
+public class SecondLevelCacheStatistics {
+
+    private final Statistics statistics;
+
+    public SecondLevelCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Entity reads served from the cache
+     */
+    public long getHitCount() {
+        return statistics.getSecondLevelCacheHitCount();
+    }
+
+    /**
+     * Entity reads that were not cached and went to the database
+     */
+    public long getMissCount() {
+        return statistics.getSecondLevelCacheMissCount();
+    }
+
+    /**
+     * UVUS lookups served from the natural-id cache
+     */
+    public long getNaturalIdHitCount() {
+        return statistics.getNaturalIdCacheHitCount();
+    }
+
+    public long getNaturalIdMissCount() {
+        return statistics.getNaturalIdCacheMissCount();
+    }
+
+    public long getHitCount(String region) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return regionStatistics != null ? regionStatistics.getHitCount() : 0;
+    }
+
+    public long getMissCount(String region) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return regionStatistics != null ? regionStatistics.getMissCount() : 0;
+    }
+}
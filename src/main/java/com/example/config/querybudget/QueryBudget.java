@@ -0,0 +1,198 @@
+package com.example.config.querybudget;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-request query counts, fed by Hibernate (see {@link QueryBudgetConfig}).
+ * <p>
+ * A request is opened with {@link #begin} and closed with {@link #end} on the
+ * thread serving it; statements run outside a request (startup, scheduled tasks)
+ * are not counted. At the end a warning is logged if the request ran more
+ * statements than the budget, and for every statement shape run at least
+ * {@code nPlusOneThreshold} times, with the application frames that ran it: the
+ * usual sign of a lazy association or a query inside a loop.
+ */
+public class QueryBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryBudget.class);
+
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int STACK_FRAMES = 8;
+    private static final Set<String> OWN_CLASSES = Set.of(QueryBudget.class.getName(),
+            QueryBudgetConfig.class.getName(), RequestQueryStatistics.class.getName());
+
+    private final int maxStatements;
+    private final int nPlusOneThreshold;
+    private final ThreadLocal<RequestQueryStats> current = new ThreadLocal<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder nPlusOne = new LongAdder();
+
+    public QueryBudget(int maxStatements, int nPlusOneThreshold) {
+        this.maxStatements = maxStatements;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    /**
+     * Starts counting for the current thread. Returns false, and changes
+     * nothing, if a request is already being counted (e.g. an error dispatch).
+     */
+    public boolean begin(String name) {
+        if (current.get() != null) {
+            return false;
+        }
+        current.set(new RequestQueryStats(name));
+        return true;
+    }
+
+    /**
+     * Gives the request being counted a more telling name, such as the view it
+     * navigates to
+     */
+    public void rename(String name) {
+        RequestQueryStats stats = current.get();
+        if (stats != null) {
+            stats.setName(name);
+        }
+    }
+
+    /**
+     * Stops counting for the current thread and logs what went over; null if
+     * nothing was being counted
+     */
+    public RequestQueryStats end() {
+        RequestQueryStats stats = current.get();
+        if (stats == null) {
+            return null;
+        }
+        current.remove();
+        requests.increment();
+        if (stats.getStatements() > maxStatements) {
+            overBudget.increment();
+            log.warn("{} ran {} SQL statements (budget {}), {} entities loaded, {} collections fetched, {} ms;"
+                    + " most run:{}", stats.getName(), stats.getStatements(), maxStatements,
+                    stats.getEntitiesLoaded(), stats.getCollectionsFetched(), stats.getElapsedMillis(),
+                    stats.getTopShapes(3).stream()
+                            .map(shape -> "\n  " + shape.getCount() + " x " + shape.getSql())
+                            .collect(Collectors.joining()));
+        }
+        for (RequestQueryStats.Shape shape : stats.getRepeatedShapes()) {
+            nPlusOne.increment();
+            log.warn("Possible N+1 in {}: {} x {}{}", stats.getName(), shape.getCount(), shape.getSql(),
+                    shape.getStack().stream().map(frame -> "\n  at " + frame).collect(Collectors.joining()));
+        }
+        return stats;
+    }
+
+    void statementPrepared() {
+        RequestQueryStats stats = current.get();
+        if (stats != null) {
+            stats.statementPrepared();
+        }
+    }
+
+    void statementInspected(String sql) {
+        RequestQueryStats stats = current.get();
+        if (stats != null) {
+            RequestQueryStats.Shape shape = stats.shapeRun(shapeOf(sql), nPlusOneThreshold);
+            if (shape != null) {
+                shape.setStack(applicationStack());
+            }
+        }
+    }
+
+    void entityLoaded() {
+        RequestQueryStats stats = current.get();
+        if (stats != null) {
+            stats.entityLoaded();
+        }
+    }
+
+    void collectionFetched() {
+        RequestQueryStats stats = current.get();
+        if (stats != null) {
+            stats.collectionFetched();
+        }
+    }
+
+    /**
+     * The statement with its literals and IN lists collapsed, so the runs of one
+     * query in a loop share a shape whatever their arguments
+     */
+    public static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        shape = NUMBER.matcher(shape).replaceAll("?");
+        return collapseParameterLists(shape);
+    }
+
+    // Scanned by hand: a regex repeating a group recurses once per element and
+    // overflows the stack on IN lists of thousands of ids
+    private static String collapseParameterLists(String sql) {
+        StringBuilder shape = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            int end = sql.charAt(i) == '(' ? endOfParameterList(sql, i + 1) : -1;
+            if (end > 0) {
+                shape.append("(?)");
+                i = end + 1;
+            } else {
+                shape.append(sql.charAt(i++));
+            }
+        }
+        return shape.toString();
+    }
+
+    /**
+     * @return Index of the parenthesis closing a list of only parameters, or -1
+     *         if the parenthesis at {@code from - 1} opens anything else
+     */
+    private static int endOfParameterList(String sql, int from) {
+        boolean parameter = false;
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                parameter = true;
+            } else if (c == ')') {
+                return parameter ? i : -1;
+            } else if (c != ',' && !Character.isWhitespace(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    // Only our own code: views, services and repositories, without Spring proxies
+    private static List<String> applicationStack() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("com.example.")
+                        && !frame.getClassName().contains("$$")
+                        && !OWN_CLASSES.contains(frame.getClassName()))
+                .limit(STACK_FRAMES)
+                .map(StackWalker.StackFrame::toStackTraceElement)
+                .map(StackTraceElement::toString)
+                .toList());
+    }
+
+    // ===== Metrics =====
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getOverBudgetCount() {
+        return overBudget.sum();
+    }
+
+    public long getNPlusOneCount() {
+        return nPlusOne.sum();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.config.querybudget;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.vaadin.flow.server.VaadinServiceInitListener;
+
+/**
+ * Per-request query budget and N+1 detection ({@link QueryBudget}), only when
+ * {@code pmis.query-budget.enabled} is true. Turns Hibernate statistics on and
+ * hooks into them and into the statement inspector.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pmis.query-budget.enabled", havingValue = "true")
+public class QueryBudgetConfig {
+
+    @Bean
+    public QueryBudget queryBudget(@Value("${pmis.query-budget.max-statements:30}") int maxStatements,
+            @Value("${pmis.query-budget.n-plus-one-threshold:5}") int nPlusOneThreshold) {
+        return new QueryBudget(maxStatements, nPlusOneThreshold);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryBudgetProperties(QueryBudget queryBudget) {
+        return properties -> {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            properties.put(AvailableSettings.STATS_BUILDER,
+                    (StatisticsFactory) sessionFactory -> new RequestQueryStatistics(sessionFactory, queryBudget));
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+                queryBudget.statementInspected(sql);
+                return sql;
+            });
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryBudgetFilter> queryBudgetFilter(QueryBudget queryBudget) {
+        FilterRegistrationBean<QueryBudgetFilter> registration = new FilterRegistrationBean<>(
+                new QueryBudgetFilter(queryBudget));
+        // Before Spring Security, so the user lookups of authentication count too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public VaadinServiceInitListener queryBudgetNavigationNames(QueryBudget queryBudget) {
+        return event -> event.getSource().addUIInitListener(uiInit -> uiInit.getUI().addBeforeEnterListener(
+                enter -> queryBudget.rename(enter.getNavigationTarget().getSimpleName() + " /"
+                        + enter.getLocation().getPathWithQueryParameters())));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.config.querybudget;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Counts the statements of each HTTP request, security filters included.
+ * Vaadin requests are renamed after the view they navigate to.
+ */
+class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private final QueryBudget budget;
+
+    QueryBudgetFilter(QueryBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean started = budget.begin(request.getMethod() + " " + request.getRequestURI());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (started) {
+                budget.end();
+            }
+        }
+    }
+}
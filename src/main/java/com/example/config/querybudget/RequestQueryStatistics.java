@@ -0,0 +1,40 @@
+package com.example.config.querybudget;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+
+/**
+ * Hibernate statistics that, besides the usual totals, report each statement,
+ * entity load and collection fetch to the request being counted. Hibernate only
+ * calls these while {@code hibernate.generate_statistics} is on.
+ * <p>
+ * Loads include the lazy fetches (proxies and collections initialized on
+ * access), so those are not counted twice.
+ */
+class RequestQueryStatistics extends StatisticsImpl {
+
+    private final QueryBudget budget;
+
+    RequestQueryStatistics(SessionFactoryImplementor sessionFactory, QueryBudget budget) {
+        super(sessionFactory);
+        this.budget = budget;
+    }
+
+    @Override
+    public void prepareStatement() {
+        super.prepareStatement();
+        budget.statementPrepared();
+    }
+
+    @Override
+    public void loadEntity(String entityName) {
+        super.loadEntity(entityName);
+        budget.entityLoaded();
+    }
+
+    @Override
+    public void loadCollection(String role) {
+        super.loadCollection(role);
+        budget.collectionFetched();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.config.querybudget;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one request asked of the database: statements prepared, entities
+ * loaded, collections fetched and how often each statement shape was run.
+ * Only touched by the thread serving the request.
+ */
+public final class RequestQueryStats {
+
+    private String name;
+    private final long startNanos = System.nanoTime();
+    private long statements;
+    private long entitiesLoaded;
+    private long collectionsFetched;
+    private final Map<String, Shape> shapes = new LinkedHashMap<>();
+
+    RequestQueryStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    public long getCollectionsFetched() {
+        return collectionsFetched;
+    }
+
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Shapes run at least the N+1 threshold times, most repeated first
+     */
+    public List<Shape> getRepeatedShapes() {
+        return shapes.values().stream()
+                .filter(shape -> shape.stack != null)
+                .sorted(Comparator.comparingLong(Shape::getCount).reversed())
+                .toList();
+    }
+
+    /**
+     * The {@code limit} shapes run most often
+     */
+    public List<Shape> getTopShapes(int limit) {
+        return shapes.values().stream()
+                .sorted(Comparator.comparingLong(Shape::getCount).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    void statementPrepared() {
+        statements++;
+    }
+
+    void entityLoaded() {
+        entitiesLoaded++;
+    }
+
+    void collectionFetched() {
+        collectionsFetched++;
+    }
+
+    /**
+     * Counts one more run of the shape; returns it when it has just reached
+     * the threshold, so the caller records where it came from
+     */
+    Shape shapeRun(String sql, int threshold) {
+        Shape shape = shapes.computeIfAbsent(sql, Shape::new);
+        shape.count++;
+        return shape.count == threshold ? shape : null;
+    }
+
+    public static final class Shape {
+
+        private final String sql;
+        private long count;
+        private List<String> stack;
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Application frames that ran the shape when it reached the threshold;
+         * null below it
+         */
+        public List<String> getStack() {
+            return stack;
+        }
+
+        void setStack(List<String> stack) {
+            this.stack = stack;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.config.sqltrace;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * {@code /actuator/slowqueries}: the slowest statement shapes of the last
+ * windows and the totals of {@link SqlTrace}
+ */
+@Endpoint(id = "slowqueries")
+public class SlowQueriesEndpoint {
+
+    private final SqlTrace sqlTrace;
+
+    public SlowQueriesEndpoint(SqlTrace sqlTrace) {
+        this.sqlTrace = sqlTrace;
+    }
+
+    @ReadOperation
+    public SlowQueries slowQueries() {
+        return new SlowQueries(sqlTrace.getStatementCount(), sqlTrace.getAverageStatementMillis(),
+                sqlTrace.getSlowCount(), sqlTrace.getDroppedSlowLogCount(), sqlTrace.getUntrackedShapeCount(),
+                sqlTrace.getSlowest());
+    }
+
+    public record SlowQueries(long statements, double averageMillis, long slow, long droppedSlowLogs,
+            long untrackedShapes, List<SqlTrace.ShapeTiming> slowest) {
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.config.sqltrace;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.config.querybudget.QueryBudget;
+
+/**
+ * Timings of every SQL statement, fed by {@link TracingDataSource}.
+ * <p>
+ * Statements slower than the threshold are logged as a warning from a
+ * dedicated thread, so the thread running the statement never waits on the
+ * log; when its queue is full the entry is dropped and counted. Timings are
+ * also kept per statement shape (see {@link QueryBudget#shapeOf}) in windows
+ * of fixed length: {@link #getSlowest} ranks the shapes of the current and the
+ * previous window, so old statements age out. At DEBUG every statement is
+ * logged with its timing, on the calling thread.
+ */
+public class SqlTrace {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlTrace.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_LOGGED_SQL = 1000;
+    private static final int SHAPE_CACHE_SIZE = 4096;
+
+    private final long slowThresholdNanos;
+    private final int topN;
+    private final long windowNanos;
+    private final int maxShapes;
+    private final ThreadPoolExecutor slowLog;
+
+    // Hibernate sends a small set of distinct SQL strings; the shape of each is
+    // computed once
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private volatile Window current;
+    private volatile Window previous;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder statementNanos = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder droppedSlowLogs = new LongAdder();
+    private final LongAdder untrackedShapes = new LongAdder();
+
+    public SqlTrace(Duration slowThreshold, int topN, Duration window, int maxShapes, int slowLogQueueCapacity) {
+        if (topN < 1 || maxShapes < 1 || slowLogQueueCapacity < 1 || window.isZero() || window.isNegative()) {
+            throw new IllegalArgumentException("topN, maxShapes, slowLogQueueCapacity and window must be positive");
+        }
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.topN = topN;
+        this.windowNanos = window.toNanos();
+        this.maxShapes = maxShapes;
+        this.slowLog = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(slowLogQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "sql-slow-log");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.current = new Window(System.nanoTime());
+        this.previous = new Window(current.start - windowNanos);
+    }
+
+    /**
+     * Records an executed statement
+     *
+     * @param binds Parameters bound (for a batch, over all its rows)
+     * @param rows  Rows read, or rows changed by an update or batch
+     * @param nanos Time to execute, not to read the rows of a query
+     */
+    void record(String sql, int binds, long rows, long nanos) {
+        statements.increment();
+        statementNanos.add(nanos);
+        if (log.isDebugEnabled()) {
+            log.debug("{} ms, {} rows, {} binds: {}", millis(nanos), rows, binds, loggable(sql));
+        }
+
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = QueryBudget.shapeOf(sql);
+            if (shapeCache.size() < SHAPE_CACHE_SIZE) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        window(System.nanoTime()).record(shape, rows, nanos);
+
+        if (nanos >= slowThresholdNanos) {
+            slow.increment();
+            try {
+                slowLog.execute(() -> log.warn("Slow SQL: {} ms, {} rows, {} binds: {}", millis(nanos), rows, binds,
+                        loggable(sql)));
+            } catch (RejectedExecutionException e) {
+                droppedSlowLogs.increment();
+            }
+        }
+    }
+
+    /**
+     * @return The slowest statement shapes of the current and previous window,
+     *         by their slowest run
+     */
+    public List<ShapeTiming> getSlowest() {
+        Window now = window(System.nanoTime());
+        Map<String, ShapeTiming> merged = new HashMap<>();
+        for (Window window : List.of(previous, now)) {
+            window.shapes.forEach((shape, timing) -> merged.merge(shape, timing.snapshot(shape), ShapeTiming::plus));
+        }
+        List<ShapeTiming> slowest = new ArrayList<>(merged.values());
+        slowest.sort(Comparator.comparingDouble(ShapeTiming::maxMillis).reversed());
+        return List.copyOf(slowest.subList(0, Math.min(topN, slowest.size())));
+    }
+
+    /**
+     * Stops the slow-log thread. Called by the container on shutdown.
+     */
+    public void shutdown() {
+        slowLog.shutdown();
+    }
+
+    private Window window(long now) {
+        Window window = current;
+        if (now - window.start < windowNanos) {
+            return window;
+        }
+        synchronized (this) {
+            if (now - current.start >= windowNanos) {
+                // After a quiet spell longer than a window the previous one is stale too
+                previous = now - current.start < 2 * windowNanos ? current : new Window(now - windowNanos);
+                current = new Window(now);
+            }
+            return current;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String loggable(String sql) {
+        String oneLine = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return oneLine.length() <= MAX_LOGGED_SQL ? oneLine : oneLine.substring(0, MAX_LOGGED_SQL) + "...";
+    }
+
+    // ===== Metrics =====
+
+    public long getStatementCount() {
+        return statements.sum();
+    }
+
+    /**
+     * @return Mean time to execute a statement, in milliseconds
+     */
+    public double getAverageStatementMillis() {
+        long count = statements.sum();
+        return count == 0 ? 0 : millis(statementNanos.sum()) / count;
+    }
+
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    /**
+     * @return Slow statements not logged because the log queue was full
+     */
+    public long getDroppedSlowLogCount() {
+        return droppedSlowLogs.sum();
+    }
+
+    /**
+     * @return Statements left out of the ranking because their window already
+     *         had {@code maxShapes} shapes
+     */
+    public long getUntrackedShapeCount() {
+        return untrackedShapes.sum();
+    }
+
+    /**
+     * Timings of one statement shape
+     */
+    public record ShapeTiming(String sql, long count, double maxMillis, double averageMillis, double totalMillis,
+            long rows) {
+
+        static ShapeTiming of(String sql, long count, double maxMillis, double totalMillis, long rows) {
+            return new ShapeTiming(sql, count, maxMillis, count == 0 ? 0 : totalMillis / count, totalMillis, rows);
+        }
+
+        ShapeTiming plus(ShapeTiming other) {
+            return of(sql, count + other.count, Math.max(maxMillis, other.maxMillis), totalMillis + other.totalMillis,
+                    rows + other.rows);
+        }
+    }
+
+    private final class Window {
+
+        final long start;
+        final Map<String, Timing> shapes = new ConcurrentHashMap<>();
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        void record(String shape, long rows, long nanos) {
+            Timing timing = shapes.get(shape);
+            if (timing == null) {
+                if (shapes.size() >= maxShapes) {
+                    untrackedShapes.increment();
+                    return;
+                }
+                timing = shapes.computeIfAbsent(shape, key -> new Timing());
+            }
+            timing.count.increment();
+            timing.nanos.add(nanos);
+            timing.rows.add(rows);
+            timing.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    private static final class Timing {
+
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        ShapeTiming snapshot(String shape) {
+            return ShapeTiming.of(shape, count.sum(), millis(maxNanos.get()), millis(nanos.sum()), rows.sum());
+        }
+    }
+}
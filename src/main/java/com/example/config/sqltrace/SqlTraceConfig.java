@@ -0,0 +1,51 @@
+package com.example.config.sqltrace;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * SQL tracing ({@link SqlTrace}), only when {@code pmis.sql-trace.enabled} is
+ * true. Wraps the {@code dataSource} bean used by JPA, Flyway and the
+ * transaction manager; the pools behind it (primary and replicas) are left as
+ * they are, so each statement is timed once.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pmis.sql-trace.enabled", havingValue = "true")
+public class SqlTraceConfig {
+
+    @Bean
+    public SqlTrace sqlTrace(@Value("${pmis.sql-trace.slow-threshold-ms:200}") long slowThresholdMs,
+            @Value("${pmis.sql-trace.top-n:20}") int topN,
+            @Value("${pmis.sql-trace.window-minutes:15}") long windowMinutes,
+            @Value("${pmis.sql-trace.max-shapes:1000}") int maxShapes,
+            @Value("${pmis.sql-trace.slow-log-queue-capacity:1000}") int slowLogQueueCapacity) {
+        return new SqlTrace(Duration.ofMillis(slowThresholdMs), topN, Duration.ofMinutes(windowMinutes), maxShapes,
+                slowLogQueueCapacity);
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlTraceDataSource(ObjectProvider<SqlTrace> sqlTrace) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                    return new TracingDataSource(dataSource, sqlTrace.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public SlowQueriesEndpoint slowQueriesEndpoint(SqlTrace sqlTrace) {
+        return new SlowQueriesEndpoint(sqlTrace);
+    }
+}
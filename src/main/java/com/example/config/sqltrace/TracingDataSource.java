@@ -0,0 +1,286 @@
+package com.example.config.sqltrace;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.BitSet;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Data source that times every statement run through its connections and
+ * reports it to {@link SqlTrace}, with the number of parameters bound and of
+ * rows read or changed. The rows of a query are counted as they are read, and
+ * the statement is reported when its result set (or the statement) is closed.
+ * <p>
+ * Connections, statements and result sets are JDK proxies: no JDBC method is
+ * implemented by hand, so a new driver method goes straight to the target.
+ */
+class TracingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final SqlTrace sqlTrace;
+
+    TracingDataSource(DataSource target, SqlTrace sqlTrace) {
+        super(target);
+        this.sqlTrace = sqlTrace;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return trace(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return trace(super.getConnection(username, password));
+    }
+
+    private Connection trace(Connection connection) {
+        return proxy(Connection.class, new ConnectionHandler(connection));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(), new Class<?>[] { type },
+                handler));
+    }
+
+    private abstract static class Handler implements InvocationHandler {
+
+        final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> handle(proxy, method, args);
+            };
+        }
+
+        abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+
+        Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private final class ConnectionHandler extends Handler {
+
+        ConnectionHandler(Connection connection) {
+            super(connection);
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = call(method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> proxy(Statement.class,
+                        new StatementHandler((Statement) result, (Connection) proxy, null));
+                case "prepareStatement" -> proxy(PreparedStatement.class,
+                        new StatementHandler((Statement) result, (Connection) proxy, (String) args[0]));
+                case "prepareCall" -> proxy(CallableStatement.class,
+                        new StatementHandler((Statement) result, (Connection) proxy, (String) args[0]));
+                default -> result;
+            };
+        }
+    }
+
+    private final class StatementHandler extends Handler {
+
+        private final Connection connection;
+        // Null for a plain statement, whose SQL comes with each call
+        private final String preparedSql;
+        private final BitSet bound = new BitSet();
+        private String batchSql;
+        private int batchBinds;
+        // Execution whose result set is still being read
+        private Execution reading;
+
+        StatementHandler(Statement statement, Connection connection, String preparedSql) {
+            super(statement);
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (EXECUTE.contains(name)) {
+                return execute(proxy, method, args);
+            }
+            switch (name) {
+                case "getConnection":
+                    return connection;
+                case "getResultSet": {
+                    Object resultSet = call(method, args);
+                    return resultSet != null && reading != null ? readingResultSet((ResultSet) resultSet, proxy)
+                            : resultSet;
+                }
+                case "addBatch":
+                    batchSql = args == null ? preparedSql : batchSql != null ? batchSql : (String) args[0];
+                    batchBinds += bound.cardinality();
+                    break;
+                case "clearBatch":
+                    batchSql = null;
+                    batchBinds = 0;
+                    break;
+                case "clearParameters":
+                    bound.clear();
+                    break;
+                case "close":
+                    finishReading();
+                    break;
+                default:
+                    // setInt(1, ...), setString(2, ...): a parameter bound by index
+                    if (name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer index) {
+                        bound.set(index);
+                    }
+            }
+            return call(method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            finishReading();
+            String name = method.getName();
+            boolean batch = name.endsWith("Batch");
+            String sql = batch ? batchSql
+                    : args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            int binds = batch ? batchBinds : bound.cardinality();
+            if (batch) {
+                batchSql = null;
+                batchBinds = 0;
+            }
+
+            long start = System.nanoTime();
+            Object result = call(method, args);
+            long nanos = System.nanoTime() - start;
+            if (sql == null) {
+                return result;
+            }
+
+            Execution execution = new Execution(sql, binds, nanos);
+            if (result instanceof ResultSet resultSet) {
+                reading = execution;
+                return readingResultSet(resultSet, proxy);
+            }
+            if (result instanceof Boolean isQuery && isQuery) {
+                // Rows counted if the caller reads the result set
+                reading = execution;
+                return result;
+            }
+            execution.rows = switch (result) {
+                case Integer count -> count;
+                case Long count -> count;
+                case int[] counts -> rows(counts);
+                case long[] counts -> rows(counts);
+                default -> Math.max(((Statement) target).getUpdateCount(), 0);
+            };
+            execution.finish();
+            return result;
+        }
+
+        private ResultSet readingResultSet(ResultSet resultSet, Object statement) {
+            return proxy(ResultSet.class, new ResultSetHandler(resultSet, reading, statement));
+        }
+
+        private void finishReading() {
+            if (reading != null) {
+                reading.finish();
+                reading = null;
+            }
+        }
+    }
+
+    private static final class ResultSetHandler extends Handler {
+
+        private final Execution execution;
+        private final Object statement;
+
+        ResultSetHandler(ResultSet resultSet, Execution execution, Object statement) {
+            super(resultSet);
+            this.execution = execution;
+            this.statement = statement;
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "next" -> {
+                    Object hasRow = call(method, args);
+                    if ((Boolean) hasRow) {
+                        execution.rows++;
+                    }
+                    yield hasRow;
+                }
+                case "close" -> {
+                    Object result = call(method, args);
+                    execution.finish();
+                    yield result;
+                }
+                case "getStatement" -> statement;
+                default -> call(method, args);
+            };
+        }
+    }
+
+    private final class Execution {
+
+        final String sql;
+        final int binds;
+        final long nanos;
+        long rows;
+        private boolean finished;
+
+        Execution(String sql, int binds, long nanos) {
+            this.sql = sql;
+            this.binds = binds;
+            this.nanos = nanos;
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                sqlTrace.record(sql, binds, rows, nanos);
+            }
+        }
+    }
+
+    // Drivers may answer SUCCESS_NO_INFO (-2) instead of a count
+    private static long rows(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+
+    private static long rows(long[] counts) {
+        long rows = 0;
+        for (long count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.examplefeature.ui;
+
+import com.example.apitoken.ApiTokenRow;
+import com.example.apitoken.ApiTokenService;
+import com.example.base.ui.MainLayout;
+import com.example.user.User;
+import com.example.user.UserService;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.dialog.Dialog;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.router.Menu;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+
+import jakarta.annotation.security.RolesAllowed;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Issues, lists and revokes the API tokens of service accounts. A new token is
+ * shown once, when it is issued.
+ */
+@Route(value = "tokens", layout = MainLayout.class)
+@PageTitle("Tokens de API")
+@Menu(order = 3, icon = "vaadin:key", title = "Tokens de API")
+@RolesAllowed("ADMIN")
+public class ApiTokenView extends VerticalLayout {
+
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final ApiTokenService apiTokenService;
+    private final UserService userService;
+    private final Grid<ApiTokenRow> grid = new Grid<>();
+
+    public ApiTokenView(ApiTokenService apiTokenService, UserService userService) {
+        this.apiTokenService = apiTokenService;
+        this.userService = userService;
+
+        setSizeFull();
+        configureGrid();
+
+        add(new H2("Tokens de API"), createToolbar(), grid);
+        updateList();
+    }
+
+    private void configureGrid() {
+        grid.setSizeFull();
+        grid.addColumn(ApiTokenRow::name).setHeader("Nombre");
+        grid.addColumn(ApiTokenRow::publicId).setHeader("Identificador");
+        grid.addColumn(token -> token.userName() + " (" + token.uvus() + ")").setHeader("Cuenta");
+        grid.addColumn(token -> CREATED_AT.format(token.createdAt())).setHeader("Creado");
+        grid.addComponentColumn(token -> {
+            Button revokeButton = new Button("Revocar", e -> confirmRevoke(token));
+            revokeButton.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_ERROR);
+            return revokeButton;
+        }).setHeader("").setWidth("120px").setFlexGrow(0);
+    }
+
+    private HorizontalLayout createToolbar() {
+        Button issueButton = new Button("Emitir Token", e -> openIssueDialog());
+        issueButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        return new HorizontalLayout(issueButton);
+    }
+
+    private void openIssueDialog() {
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle("Nuevo Token");
+
+        TextField uvusField = new TextField("UVUS de la cuenta");
+        TextField nameField = new TextField("Nombre del token");
+        nameField.setPlaceholder("Por ejemplo: integración continua");
+        dialog.add(new VerticalLayout(uvusField, nameField));
+
+        Button saveButton = new Button("Emitir", e -> {
+            if (uvusField.isEmpty() || nameField.isEmpty()) {
+                Notification.show("Por favor rellene todos los campos obligatorios");
+                return;
+            }
+            User user = userService.findByUvus(uvusField.getValue().trim());
+            if (user == null) {
+                Notification.show("No existe ningún usuario con ese UVUS");
+                return;
+            }
+            try {
+                String token = apiTokenService.issue(user.getId(), nameField.getValue().trim());
+                dialog.close();
+                updateList();
+                showIssuedToken(token);
+            } catch (SecurityException ex) {
+                Notification.show("Error: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
+            }
+        });
+        saveButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+
+        dialog.getFooter().add(new Button("Cancelar", e -> dialog.close()), saveButton);
+        dialog.open();
+    }
+
+    // The raw token cannot be recovered later: shown in a dialog until closed
+    private void showIssuedToken(String token) {
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle("Token emitido");
+
+        TextArea tokenField = new TextArea("Cópielo ahora: no se volverá a mostrar");
+        tokenField.setValue(token);
+        tokenField.setReadOnly(true);
+        tokenField.setWidth("520px");
+        dialog.add(tokenField);
+
+        dialog.getFooter().add(new Button("Cerrar", e -> dialog.close()));
+        dialog.open();
+    }
+
+    private void confirmRevoke(ApiTokenRow token) {
+        Dialog confirmDialog = new Dialog();
+        confirmDialog.setHeaderTitle("Revocar Token");
+        confirmDialog.add("¿Revocar el token \"" + token.name() + "\" de " + token.uvus()
+                + "? Las integraciones que lo usen dejarán de funcionar.");
+
+        Button confirmButton = new Button("Revocar", e -> {
+            try {
+                apiTokenService.revoke(token.id());
+                updateList();
+                confirmDialog.close();
+                Notification.show("Token revocado");
+            } catch (SecurityException ex) {
+                Notification.show("Error: " + ex.getMessage(), 5000, Notification.Position.MIDDLE);
+            }
+        });
+        confirmButton.addThemeVariants(ButtonVariant.LUMO_ERROR);
+
+        confirmDialog.getFooter().add(new Button("Cancelar", e -> confirmDialog.close()), confirmButton);
+        confirmDialog.open();
+    }
+
+    private void updateList() {
+        grid.setItems(apiTokenService.findAll());
+    }
+}
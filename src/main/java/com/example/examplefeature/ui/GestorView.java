@@ -3,8 +3,10 @@ package com.example.examplefeature.ui;
 import com.example.base.ui.MainLayout;
 import com.example.user.Role;
 import com.example.user.User;
+import com.example.user.UserRow;
 import com.example.user.UserService;
 import com.example.security.PasswordGenerator;
+import com.example.security.PasswordHashingBusyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.checkbox.Checkbox;
@@ -21,6 +23,8 @@ import com.vaadin.flow.router.Route;
 
 import jakarta.annotation.security.RolesAllowed;
 
+import java.util.List;
+
 @Route(value = "gestores", layout = MainLayout.class)
 @PageTitle("Registro de Gestores")
 @Menu(order = 1, icon = "vaadin:users", title = "Registro de Gestores")
@@ -28,7 +32,7 @@ import jakarta.annotation.security.RolesAllowed;
 public class GestorView extends VerticalLayout {
 
     private final UserService userService;
-    private final Grid<User> grid = new Grid<>(User.class);
+    private final Grid<UserRow> grid = new Grid<>();
 
     private final PasswordEncoder passwordEncoder;
     private final PasswordGenerator passwordGenerator;
@@ -48,10 +52,10 @@ public class GestorView extends VerticalLayout {
     private void configureGrid() {
         grid.setSizeFull();
         grid.removeAllColumns();
-        grid.addColumn(User::getId).setHeader("ID");
-        grid.addColumn(User::getName).setHeader("Nombre");
-        grid.addColumn(User::getUvus).setHeader("UVUS");
-        grid.addColumn(user -> user.getRole() == Role.ADMIN ? "Sí" : "No").setHeader("Es Admin");
+        grid.addColumn(UserRow::id).setHeader("ID");
+        grid.addColumn(UserRow::name).setHeader("Nombre");
+        grid.addColumn(UserRow::uvus).setHeader("UVUS");
+        grid.addColumn(user -> user.role() == Role.ADMIN ? "Sí" : "No").setHeader("Es Admin");
 
         grid.asSingleSelect().addValueChangeListener(event -> {
             if (event.getValue() != null) {
@@ -67,20 +71,20 @@ public class GestorView extends VerticalLayout {
         return new HorizontalLayout(addManagerButton);
     }
 
-    private void openGestorDetailDialog(User user) {
+    private void openGestorDetailDialog(UserRow user) {
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle("Detalles del Gestor");
 
         TextField nameField = new TextField("Nombre");
-        nameField.setValue(user.getName());
+        nameField.setValue(user.name());
         nameField.setReadOnly(true);
 
         TextField uvusField = new TextField("UVUS");
-        uvusField.setValue(user.getUvus());
+        uvusField.setValue(user.uvus());
         uvusField.setReadOnly(true);
 
         TextField isAdminField = new TextField("Es Admin");
-        isAdminField.setValue(user.getRole() == Role.ADMIN ? "Sí" : "No");
+        isAdminField.setValue(user.role() == Role.ADMIN ? "Sí" : "No");
         isAdminField.setReadOnly(true);
 
         VerticalLayout dialogLayout = new VerticalLayout(nameField, uvusField, isAdminField);
@@ -90,13 +94,13 @@ public class GestorView extends VerticalLayout {
 
         Button deleteButton = new Button("Eliminar", e -> {
             // Check if trying to delete an admin
-            if (user.getRole() == Role.ADMIN) {
+            if (user.role() == Role.ADMIN) {
                 Notification.show("No se puede eliminar un usuario con rol ADMIN", 5000, Notification.Position.MIDDLE);
                 return;
             }
 
             try {
-                if (userService.hasAssignedEntities(user.getId())) {
+                if (userService.hasAssignedEntities(user.id())) {
                     Dialog confirmDialog = new Dialog();
                     confirmDialog.setHeaderTitle("Eliminar Gestor");
                     confirmDialog.add(
@@ -104,7 +108,7 @@ public class GestorView extends VerticalLayout {
 
                     Button confirmDeleteButton = new Button("Eliminar", event -> {
                         try {
-                            userService.deleteSafe(user.getId());
+                            userService.deleteSafe(user.id());
                             updateList();
                             dialog.close();
                             confirmDialog.close();
@@ -121,7 +125,7 @@ public class GestorView extends VerticalLayout {
                     confirmDialog.getFooter().add(confirmDeleteButton);
                     confirmDialog.open();
                 } else {
-                    userService.delete(user.getId());
+                    userService.delete(user.id());
                     updateList();
                     dialog.close();
                     Notification.show("Gestor eliminado exitosamente");
@@ -167,7 +171,13 @@ public class GestorView extends VerticalLayout {
             newManager.setRole(Boolean.TRUE.equals(isAdminCheckbox.getValue()) ? Role.ADMIN : Role.MANAGER);
 
             String generatedPassword = passwordGenerator.generateStrongPassword();
-            newManager.setPassword(passwordEncoder.encode(generatedPassword));
+            try {
+                newManager.setPassword(passwordEncoder.encode(generatedPassword));
+            } catch (PasswordHashingBusyException ex) {
+                // Pool de hashing saturado: el diálogo sigue abierto para reintentar
+                Notification.show(ex.getMessage());
+                return;
+            }
 
             userService.createOrUpdate(newManager);
             updateList();
@@ -186,18 +196,7 @@ public class GestorView extends VerticalLayout {
     }
 
     private void updateList() {
-        // Show both Managers and Admins, or just Managers?
-        // "Gestor" usually implies Manager role. Admin implies Admin role.
-        // I will show both for now since the view allows creating Admins.
-        // Or I can filter. Let's show all for now or filter by Role IN (ADMIN,
-        // MANAGER).
-        // Since findAllByRole takes one role, I might need to fetch all and filter or
-        // add a method.
-        // For simplicity and to match previous behavior (which likely showed all
-        // 'Manager' entities including admins),
-        // I will show Users who are NOT Role.USER (i.e. Managers and Admins).
-        grid.setItems(userService.getAll().stream()
-                .filter(u -> u.getRole() == Role.MANAGER || u.getRole() == Role.ADMIN)
-                .toList());
+        // Managers and admins, the roles this view creates
+        grid.setItems(userService.findRowsByRoles(List.of(Role.MANAGER, Role.ADMIN)));
     }
-}
\ No newline at end of file
+}
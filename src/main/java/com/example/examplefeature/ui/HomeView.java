@@ -1,10 +1,9 @@
 package com.example.examplefeature.ui;
 
 import com.example.base.ui.MainLayout;
-import com.example.portfolio.PortfolioRepository;
-import com.example.program.ProgramRepository;
 import com.example.project.Project;
 import com.example.project.ProjectService;
+import com.example.security.SecurityService;
 import com.example.user.Role;
 import com.example.user.User;
 import com.example.user.UserService;
@@ -38,16 +37,14 @@ public class HomeView extends VerticalLayout {
         private final AuthenticationContext authContext;
         private final UserService userService;
         private final ProjectService projectService;
-        private final PortfolioRepository portfolioRepository;
-        private final ProgramRepository programRepository;
+        private final SecurityService securityService;
 
         public HomeView(AuthenticationContext authContext, UserService userService, ProjectService projectService,
-                        PortfolioRepository portfolioRepository, ProgramRepository programRepository) {
+                        SecurityService securityService) {
                 this.authContext = authContext;
                 this.userService = userService;
                 this.projectService = projectService;
-                this.portfolioRepository = portfolioRepository;
-                this.programRepository = programRepository;
+                this.securityService = securityService;
 
                 setSizeFull();
                 setPadding(true);
@@ -55,34 +52,23 @@ public class HomeView extends VerticalLayout {
 
                 add(new H1("Bienvenido a PMIS"));
 
-                authContext.getAuthenticatedUser(org.springframework.security.core.userdetails.UserDetails.class)
-                                .ifPresent(userDetails -> {
-                                        User currentUser = userService.findByUvusWithProject(userDetails.getUsername());
-                                        if (currentUser != null) {
-                                                if (currentUser.getRole() == Role.ADMIN
-                                                                || currentUser.getRole() == Role.MANAGER) {
-                                                        showManagerAdminView();
-                                                } else {
-                                                        showUserView(currentUser);
-                                                }
-                                        }
-                                });
+                // El rol viene del principal; solo la vista de usuario necesita cargar su proyecto
+                Role role = securityService.getCurrentRole();
+                if (role == Role.ADMIN || role == Role.MANAGER) {
+                        showManagerAdminView(role);
+                } else if (role != null) {
+                        authContext.getAuthenticatedUser(org.springframework.security.core.userdetails.UserDetails.class)
+                                        .map(userDetails -> userService.findByUvusWithProject(userDetails.getUsername()))
+                                        .ifPresent(this::showUserView);
+                }
         }
 
-        private void showManagerAdminView() {
+        private void showManagerAdminView(Role role) {
                 add(new H2("Panel de Gestión"));
 
-                // Get current user to check if ADMIN
-                User currentUser = authContext
-                                .getAuthenticatedUser(org.springframework.security.core.userdetails.UserDetails.class)
-                                .map(userDetails -> userService.findByUvusWithProject(userDetails.getUsername()))
-                                .orElse(null);
-
-                boolean isAdmin = currentUser != null && currentUser.getRole() == Role.ADMIN;
-                boolean isPortfolioDirector = currentUser != null &&
-                                !portfolioRepository.findAllByDirectorIdWithDirector(currentUser.getId()).isEmpty();
-                boolean isProgramDirector = currentUser != null &&
-                                !programRepository.findAllByDirectorIdWithRelations(currentUser.getId()).isEmpty();
+                boolean isAdmin = role == Role.ADMIN;
+                boolean isPortfolioDirector = securityService.directsAnyPortfolio();
+                boolean isProgramDirector = securityService.directsAnyProgram();
 
                 // Container for cards with CSS Grid layout
                 Div cardsContainer = new Div();
@@ -3,6 +3,7 @@ package com.example.examplefeature.ui;
 import java.util.List;
 
 import com.example.base.ui.MainLayout;
+import com.example.base.ui.component.KeysetPager;
 import com.example.user.User;
 import com.example.user.UserService;
 import com.example.user.Role;
@@ -34,7 +35,7 @@ public class PmoView extends VerticalLayout {
     private final PMOService pmoService;
     private final PortfolioService portfolioService;
     private final UserService userService;
-    private final Grid<PMO> grid = new Grid<>(PMO.class);
+    private final Grid<PMO> grid = new Grid<>(PMO.class, false);
 
     public PmoView(PMOService pmoService, PortfolioService portfolioService, UserService userService) {
         this.pmoService = pmoService;
@@ -50,13 +51,13 @@ public class PmoView extends VerticalLayout {
 
     private void configureGrid() {
         grid.setSizeFull();
-        grid.removeAllColumns();
-        grid.addColumn(PMO::getId).setHeader("ID");
-        grid.addColumn(PMO::getName).setHeader("Nombre");
+        // KeysetPager pagina por nombre e id: ordenar una columna solo reordenaría las filas cargadas
+        grid.addColumn(PMO::getId).setHeader("ID").setSortable(false);
+        grid.addColumn(PMO::getName).setHeader("Nombre").setSortable(false);
         grid.addColumn(pmo -> pmo.getPortfolio() != null ? pmo.getPortfolio().getName() : "Sin Portafolio")
-                .setHeader("Portafolio");
+                .setHeader("Portafolio").setSortable(false);
         grid.addColumn(pmo -> pmo.getDirector() != null ? pmo.getDirector().getName() : "Sin Director")
-                .setHeader("Director");
+                .setHeader("Director").setSortable(false);
 
         grid.asSingleSelect().addValueChangeListener(event -> {
             if (event.getValue() != null) {
@@ -148,6 +149,7 @@ public class PmoView extends VerticalLayout {
     }
 
     private void updateList() {
-        grid.setItems(pmoService.getAll());
+        // Only the visible window is loaded
+        KeysetPager.setItems(grid, pmoService::getPage, PMO::getName, PMO::getId);
     }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import com.example.program.ProgramService;
 import com.example.user.User;
 import com.example.user.UserService;
 import com.example.user.Role;
+import com.example.security.Permissions;
 import com.example.security.SecurityService;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
@@ -40,6 +41,8 @@ public class PortfolioDetailView extends VerticalLayout implements HasUrlParamet
     private final SecurityService securityService;
     private Portfolio currentPortfolio;
     private final Grid<Program> programGrid = new Grid<>(Program.class, false);
+    // Permisos por fila, calculados en bloque al refrescar el grid
+    private Permissions permissions = Permissions.none();
 
     private TextField nameField;
     private Select<User> directorSelect;
@@ -83,8 +86,8 @@ public class PortfolioDetailView extends VerticalLayout implements HasUrlParamet
 
         // Only show edit form if user is admin OR the portfolio director
         boolean isPortfolioDirector = currentPortfolio.getDirector() != null &&
-                securityService.getCurrentUser() != null &&
-                currentPortfolio.getDirector().getId().equals(securityService.getCurrentUser().getId());
+                securityService.getCurrentUserId() != null &&
+                currentPortfolio.getDirector().getId().equals(securityService.getCurrentUserId());
 
         if (isPortfolioDirector) {
             nameField = new TextField("Nombre");
@@ -153,10 +156,7 @@ public class PortfolioDetailView extends VerticalLayout implements HasUrlParamet
             editButton.addThemeVariants(com.vaadin.flow.component.button.ButtonVariant.LUMO_SMALL,
                     com.vaadin.flow.component.button.ButtonVariant.LUMO_PRIMARY);
             // Only show button if user is the portfolio director
-            boolean isDirector = currentPortfolio.getDirector() != null &&
-                    securityService.getCurrentUser() != null &&
-                    currentPortfolio.getDirector().getId().equals(securityService.getCurrentUser().getId());
-            editButton.setVisible(isDirector);
+            editButton.setVisible(permissions.canEdit(program.getId()));
             return editButton;
         }).setHeader("").setWidth("80px").setFlexGrow(0);
 
@@ -166,10 +166,7 @@ public class PortfolioDetailView extends VerticalLayout implements HasUrlParamet
             deleteButton.addThemeVariants(com.vaadin.flow.component.button.ButtonVariant.LUMO_SMALL,
                     com.vaadin.flow.component.button.ButtonVariant.LUMO_ERROR);
             // Only show button if user is the portfolio director
-            boolean isDirector = currentPortfolio.getDirector() != null &&
-                    securityService.getCurrentUser() != null &&
-                    currentPortfolio.getDirector().getId().equals(securityService.getCurrentUser().getId());
-            deleteButton.setVisible(isDirector);
+            deleteButton.setVisible(permissions.canDelete(program.getId()));
             return deleteButton;
         }).setHeader("").setWidth("80px").setFlexGrow(0);
 
@@ -239,8 +236,7 @@ public class PortfolioDetailView extends VerticalLayout implements HasUrlParamet
 
         // Filter programs for managers: show only programs where they are director
         if (!securityService.isAdmin()) {
-            Long currentUserId = securityService.getCurrentUser() != null ? securityService.getCurrentUser().getId()
-                    : null;
+            Long currentUserId = securityService.getCurrentUserId();
             if (currentUserId != null) {
                 programs = programs.stream()
                         .filter(p -> p.getDirector() != null && p.getDirector().getId().equals(currentUserId))
@@ -248,6 +244,7 @@ public class PortfolioDetailView extends VerticalLayout implements HasUrlParamet
             }
         }
 
+        permissions = securityService.permissionsForPrograms(programs.stream().map(Program::getId).toList());
         programGrid.setItems(programs);
     }
 
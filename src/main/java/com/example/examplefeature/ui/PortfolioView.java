@@ -3,12 +3,15 @@ package com.example.examplefeature.ui;
 import java.util.List;
 
 import com.example.base.ui.MainLayout;
+import com.example.base.ui.component.KeysetPager;
 
+import com.example.security.Permissions;
 import com.example.security.SecurityService;
 import com.example.user.User;
 import com.example.user.UserService;
 import com.example.user.Role;
 import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioDependencies;
 import com.example.portfolio.PortfolioService;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.select.Select;
@@ -33,7 +36,9 @@ public class PortfolioView extends VerticalLayout {
     private final PortfolioService portfolioService;
     private final UserService userService;
     private final SecurityService securityService;
-    private final Grid<Portfolio> grid = new Grid<>(Portfolio.class);
+    private final Grid<Portfolio> grid = new Grid<>(Portfolio.class, false);
+    // Permisos por fila, calculados en bloque al refrescar el grid
+    private Permissions permissions = Permissions.none();
 
     public PortfolioView(PortfolioService portfolioService, UserService userService, SecurityService securityService) {
         this.portfolioService = portfolioService;
@@ -49,24 +54,16 @@ public class PortfolioView extends VerticalLayout {
 
     private void configureGrid() {
         grid.setSizeFull();
-        grid.removeAllColumns();
-        grid.addColumn(Portfolio::getId).setHeader("ID").setWidth("100px");
-        grid.addColumn(Portfolio::getName).setHeader("Nombre");
+        // KeysetPager pagina por nombre e id: ordenar una columna solo reordenaría las filas cargadas
+        grid.addColumn(Portfolio::getId).setHeader("ID").setWidth("100px").setSortable(false);
+        grid.addColumn(Portfolio::getName).setHeader("Nombre").setSortable(false);
         grid.addColumn(
                 portfolio -> portfolio.getDirector() != null ? portfolio.getDirector().getName() : "Sin Director")
-                .setHeader("Director");
+                .setHeader("Director").setSortable(false);
 
         // Columna de Editar
         grid.addComponentColumn(portfolio -> {
-            boolean canEdit = false;
-            if (securityService.isAdmin()) {
-                canEdit = true;
-            } else if (portfolio.getDirector() != null) {
-                User currentUser = securityService.getCurrentUser();
-                if (currentUser != null && currentUser.getId().equals(portfolio.getDirector().getId())) {
-                    canEdit = true;
-                }
-            }
+            boolean canEdit = permissions.canEdit(portfolio.getId());
 
             if (canEdit) {
                 Button editButton = new Button("Editar", e -> openPortfolioDialog(portfolio));
@@ -81,7 +78,7 @@ public class PortfolioView extends VerticalLayout {
         // Columna de Borrar
         grid.addComponentColumn(portfolio -> {
             // Only Admins can delete portfolios
-            if (securityService.isAdmin()) {
+            if (permissions.canDelete(portfolio.getId())) {
                 Button deleteButton = new Button("Borrar", e -> deletePortfolio(portfolio));
                 deleteButton.addThemeVariants(com.vaadin.flow.component.button.ButtonVariant.LUMO_SMALL,
                         com.vaadin.flow.component.button.ButtonVariant.LUMO_ERROR);
@@ -114,11 +111,14 @@ public class PortfolioView extends VerticalLayout {
 
     private void deletePortfolio(Portfolio portfolio) {
         try {
-            if (portfolioService.hasPrograms(portfolio.getId())) {
+            // Una sola consulta: decide el diálogo y da los recuentos que muestra
+            PortfolioDependencies dependencies = portfolioService.getDependencies(portfolio.getId());
+            if (dependencies != null && dependencies.hasPrograms()) {
                 Dialog confirmDialog = new Dialog();
                 confirmDialog.setHeaderTitle("Eliminar Portfolio");
-                confirmDialog.add(
-                        "Este portfolio tiene programas asociados. ¿Desea eliminarlo junto con todos sus programas y proyectos?");
+                confirmDialog.add("Este portfolio tiene " + dependencies.programs() + " programas, "
+                        + dependencies.projects() + " proyectos y " + dependencies.pmos()
+                        + " PMOs asociados. ¿Desea eliminarlo junto con todos sus programas y proyectos?");
 
                 Button confirmDeleteButton = new Button("Eliminar Todo", event -> {
                     try {
@@ -194,6 +194,10 @@ public class PortfolioView extends VerticalLayout {
     }
 
     private void updateList() {
-        grid.setItems(portfolioService.getAll());
+        // Only the visible window is loaded; permissions are checked page by page
+        permissions = Permissions.none();
+        KeysetPager.setItems(grid, portfolioService::getPage, Portfolio::getName, Portfolio::getId,
+                page -> permissions = permissions.plus(
+                        securityService.permissionsForPortfolios(page.stream().map(Portfolio::getId).toList())));
     }
 }
\ No newline at end of file
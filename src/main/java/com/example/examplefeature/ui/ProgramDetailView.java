@@ -8,6 +8,7 @@ import com.example.project.ProjectService;
 import com.example.user.User;
 import com.example.user.UserService;
 import com.example.user.Role;
+import com.example.security.Permissions;
 import com.example.security.SecurityService;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
@@ -40,6 +41,8 @@ public class ProgramDetailView extends VerticalLayout implements HasUrlParameter
     private final SecurityService securityService;
     private Program currentProgram;
     private final Grid<Project> projectGrid = new Grid<>(Project.class, false);
+    // Permisos por fila, calculados en bloque al refrescar el grid
+    private Permissions permissions = Permissions.none();
 
     private TextField nameField;
     private Select<User> directorSelect;
@@ -123,9 +126,9 @@ public class ProgramDetailView extends VerticalLayout implements HasUrlParameter
         boolean isPortfolioDirector = false;
         if (currentProgram.getPortfolio() != null) {
             // Check if current user is director of the portfolio
-            User currentUser = securityService.getCurrentUser();
-            isPortfolioDirector = currentUser != null && currentProgram.getPortfolio().getDirector() != null &&
-                    currentProgram.getPortfolio().getDirector().getId().equals(currentUser.getId());
+            Long currentUserId = securityService.getCurrentUserId();
+            isPortfolioDirector = currentUserId != null && currentProgram.getPortfolio().getDirector() != null &&
+                    currentProgram.getPortfolio().getDirector().getId().equals(currentUserId);
         }
 
         if (!isPortfolioDirector) {
@@ -140,9 +143,9 @@ public class ProgramDetailView extends VerticalLayout implements HasUrlParameter
         configureGrid();
 
         // Only show Add Project button if current user is the Program Director
-        User currentUser = securityService.getCurrentUser();
-        boolean isProgramDirector = currentUser != null && currentProgram.getDirector() != null &&
-                currentProgram.getDirector().getId().equals(currentUser.getId());
+        Long currentUserId = securityService.getCurrentUserId();
+        boolean isProgramDirector = currentUserId != null && currentProgram.getDirector() != null &&
+                currentProgram.getDirector().getId().equals(currentUserId);
 
         if (isProgramDirector) {
             Button addProjectButton = new Button("Añadir Proyecto", e -> openCreateProjectDialog());
@@ -171,10 +174,7 @@ public class ProgramDetailView extends VerticalLayout implements HasUrlParameter
                     com.vaadin.flow.component.button.ButtonVariant.LUMO_PRIMARY);
 
             // Solo mostrar botón si es el director del programa
-            User currentUser = securityService.getCurrentUser();
-            boolean canEdit = currentUser != null && currentProgram.getDirector() != null &&
-                    currentProgram.getDirector().getId().equals(currentUser.getId());
-            editButton.setVisible(canEdit);
+            editButton.setVisible(permissions.canEdit(project.getId()));
 
             return editButton;
         }).setHeader("").setWidth("80px").setFlexGrow(0);
@@ -186,10 +186,7 @@ public class ProgramDetailView extends VerticalLayout implements HasUrlParameter
                     com.vaadin.flow.component.button.ButtonVariant.LUMO_ERROR);
 
             // Solo mostrar botón si es el director del programa
-            User currentUser = securityService.getCurrentUser();
-            boolean canDelete = currentUser != null && currentProgram.getDirector() != null &&
-                    currentProgram.getDirector().getId().equals(currentUser.getId());
-            deleteButton.setVisible(canDelete);
+            deleteButton.setVisible(permissions.canDelete(project.getId()));
 
             return deleteButton;
         }).setHeader("").setWidth("80px").setFlexGrow(0);
@@ -255,7 +252,9 @@ public class ProgramDetailView extends VerticalLayout implements HasUrlParameter
     }
 
     private void updateProjectList() {
-        projectGrid.setItems(projectService.getByProgramId(currentProgram.getId()));
+        List<Project> projects = projectService.getByProgramId(currentProgram.getId());
+        permissions = securityService.permissionsForProjects(projects.stream().map(Project::getId).toList());
+        projectGrid.setItems(projects);
     }
 
     private void openEditProjectDialog(Project project) {
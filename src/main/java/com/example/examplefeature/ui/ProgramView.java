@@ -3,7 +3,9 @@ package com.example.examplefeature.ui;
 import java.util.List;
 
 import com.example.base.ui.MainLayout;
+import com.example.base.ui.component.KeysetPager;
 
+import com.example.security.Permissions;
 import com.example.security.SecurityService;
 import com.example.user.User;
 import com.example.user.UserService;
@@ -11,6 +13,7 @@ import com.example.user.Role;
 import com.example.portfolio.Portfolio;
 import com.example.portfolio.PortfolioRepository;
 import com.example.program.Program;
+import com.example.program.ProgramDependencies;
 import com.example.program.ProgramService;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.select.Select;
@@ -35,7 +38,9 @@ public class ProgramView extends VerticalLayout {
     private final PortfolioRepository portfolioRepository;
     private final UserService userService;
     private final SecurityService securityService;
-    private final Grid<Program> grid = new Grid<>(Program.class);
+    private final Grid<Program> grid = new Grid<>(Program.class, false);
+    // Permisos por fila, calculados en bloque al refrescar el grid
+    private Permissions permissions = Permissions.none();
 
     public ProgramView(ProgramService programService,
             UserService userService, SecurityService securityService, PortfolioRepository portfolioRepository) {
@@ -53,20 +58,17 @@ public class ProgramView extends VerticalLayout {
 
     private void configureGrid() {
         grid.setSizeFull();
-        grid.removeAllColumns();
-        grid.addColumn(Program::getId).setHeader("ID").setWidth("100px");
-        grid.addColumn(Program::getName).setHeader("Nombre");
+        // KeysetPager pagina por nombre e id: ordenar una columna solo reordenaría las filas cargadas
+        grid.addColumn(Program::getId).setHeader("ID").setWidth("100px").setSortable(false);
+        grid.addColumn(Program::getName).setHeader("Nombre").setSortable(false);
         grid.addColumn(program -> program.getPortfolio() != null ? program.getPortfolio().getName() : "Sin Portafolio")
-                .setHeader("Portafolio");
+                .setHeader("Portafolio").setSortable(false);
         grid.addColumn(program -> program.getDirector() != null ? program.getDirector().getName() : "Sin Director")
-                .setHeader("Director");
+                .setHeader("Director").setSortable(false);
 
         // Columna de Editar
         grid.addComponentColumn(program -> {
-            boolean canEdit = false;
-            if (program.getPortfolio() != null) {
-                canEdit = securityService.isPortfolioDirector(program.getPortfolio().getId());
-            }
+            boolean canEdit = permissions.canEdit(program.getId());
 
             if (canEdit) {
                 Button editButton = new Button("Editar", e -> openProgramDialog(program));
@@ -80,10 +82,7 @@ public class ProgramView extends VerticalLayout {
 
         // Columna de Borrar
         grid.addComponentColumn(program -> {
-            boolean canDelete = false;
-            if (program.getPortfolio() != null) {
-                canDelete = securityService.isPortfolioDirector(program.getPortfolio().getId());
-            }
+            boolean canDelete = permissions.canDelete(program.getId());
 
             if (canDelete) {
                 Button deleteButton = new Button("Borrar", e -> deleteProgram(program));
@@ -107,9 +106,7 @@ public class ProgramView extends VerticalLayout {
         HorizontalLayout toolbar = new HorizontalLayout();
 
         // Only portfolio directors can add new programs
-        boolean isPortfolioDirector = securityService.getCurrentUser() != null &&
-                !portfolioRepository.findAllByDirectorIdWithDirector(securityService.getCurrentUser().getId())
-                        .isEmpty();
+        boolean isPortfolioDirector = securityService.directsAnyPortfolio();
 
         if (isPortfolioDirector) {
             Button addProgramButton = new Button("Añadir Programa");
@@ -121,11 +118,13 @@ public class ProgramView extends VerticalLayout {
     }
 
     private void deleteProgram(Program program) {
-        if (programService.hasProjects(program.getId())) {
+        // Una sola consulta: decide el diálogo y da los recuentos que muestra
+        ProgramDependencies dependencies = programService.getDependencies(program.getId());
+        if (dependencies != null && dependencies.hasProjects()) {
             Dialog confirmDialog = new Dialog();
             confirmDialog.setHeaderTitle("Eliminar Programa");
-            confirmDialog.add(
-                    "Este programa tiene proyectos asociados. ¿Desea eliminarlo junto con todos sus proyectos?");
+            confirmDialog.add("Este programa tiene " + dependencies.projects() + " proyectos con "
+                    + dependencies.members() + " usuarios asignados. ¿Desea eliminarlo junto con todos sus proyectos?");
 
             Button confirmDeleteButton = new Button("Eliminar Todo", event -> {
                 programService.deleteWithCascade(program.getId());
@@ -157,9 +156,9 @@ public class ProgramView extends VerticalLayout {
         portfolioSelect.setLabel("Portafolio");
 
         // Filter portfolios based on role (Only Director's portfolios)
-        User currentUser = securityService.getCurrentUser();
-        if (currentUser != null) {
-            portfolioSelect.setItems(portfolioRepository.findAllByDirectorIdWithDirector(currentUser.getId()));
+        Long currentUserId = securityService.getCurrentUserId();
+        if (currentUserId != null) {
+            portfolioSelect.setItems(portfolioRepository.findAllByDirectorIdWithDirector(currentUserId));
         }
 
         portfolioSelect.setItemLabelGenerator(Portfolio::getName);
@@ -204,6 +203,10 @@ public class ProgramView extends VerticalLayout {
     }
 
     private void updateList() {
-        grid.setItems(programService.getAll());
+        // Only the visible window is loaded; permissions are checked page by page
+        permissions = Permissions.none();
+        KeysetPager.setItems(grid, programService::getPage, Program::getName, Program::getId,
+                page -> permissions = permissions.plus(
+                        securityService.permissionsForPrograms(page.stream().map(Program::getId).toList())));
     }
 }
@@ -1,11 +1,14 @@
 package com.example.examplefeature.ui;
 
 import com.example.base.ui.MainLayout;
+import com.example.base.ui.component.KeysetPager;
 import com.example.program.Program;
 import com.example.project.Project;
 import com.example.project.ProjectService;
 import com.example.security.SecurityService;
+import com.example.user.MembershipChange;
 import com.example.user.User;
+import com.example.user.UserRow;
 import com.example.user.UserService;
 import com.example.user.UserRepository;
 import com.example.user.Role;
@@ -21,6 +24,7 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.select.Select;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.BeforeEvent;
 import com.vaadin.flow.router.HasUrlParameter;
 import com.vaadin.flow.router.PageTitle;
@@ -39,7 +43,8 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
     private final SecurityService securityService;
     private final UserRepository userRepository;
     private Project currentProject;
-    private final Grid<User> userGrid = new Grid<>(User.class, false);
+    private final Grid<UserRow> userGrid = new Grid<>();
+    private final H3 usersHeader = new H3("Usuarios Asignados");
 
     private TextField nameField;
     private Select<User> directorSelect;
@@ -139,8 +144,10 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
 
         directorSelect = new Select<>();
         directorSelect.setLabel("Director");
-        // Director debe ser solo rol USER
-        directorSelect.setItems(userService.findAllByRoles(List.of(Role.USER)));
+        // Only the current director: the project's members are loaded below when the
+        // director can be changed
+        directorSelect.setItems(currentProject.getDirector() != null ? List.of(currentProject.getDirector())
+                : List.of());
         directorSelect.setItemLabelGenerator(User::getName);
         directorSelect.setValue(currentProject.getDirector());
         directorSelect.setWidthFull();
@@ -168,15 +175,15 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
             isProgramDirector = securityService.isProgramDirector(currentProject.getProgram().getId());
         }
 
-        User currentUser = securityService.getCurrentUser();
+        Long currentUserId = securityService.getCurrentUserId();
         boolean isSponsor = false;
-        if (currentProject.getSponsor() != null && currentUser != null) {
-            isSponsor = currentProject.getSponsor().getId().equals(currentUser.getId());
+        if (currentProject.getSponsor() != null && currentUserId != null) {
+            isSponsor = currentProject.getSponsor().getId().equals(currentUserId);
         }
 
         boolean isProjectDirector = false;
-        if (currentProject.getDirector() != null && currentUser != null) {
-            isProjectDirector = currentProject.getDirector().getId().equals(currentUser.getId());
+        if (currentProject.getDirector() != null && currentUserId != null) {
+            isProjectDirector = currentProject.getDirector().getId().equals(currentUserId);
         }
 
         boolean isSystemAdmin = securityService.isAdmin();
@@ -210,7 +217,7 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
         }
 
         // Users Section
-        add(new H3("Usuarios Asignados"));
+        add(usersHeader);
 
         boolean canManageUsers = isSystemAdmin || isSponsor || isProjectDirector;
 
@@ -226,9 +233,9 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
 
     private void configureGrid(boolean canManageUsers) {
         userGrid.setSizeFull();
-        userGrid.addColumn(User::getId).setHeader("ID").setWidth("100px");
-        userGrid.addColumn(User::getName).setHeader("Nombre");
-        userGrid.addColumn(User::getUvus).setHeader("UVUS");
+        userGrid.addColumn(UserRow::id).setHeader("ID").setWidth("100px");
+        userGrid.addColumn(UserRow::name).setHeader("Nombre");
+        userGrid.addColumn(UserRow::uvus).setHeader("UVUS");
 
         // Columna de Eliminar
         if (canManageUsers) {
@@ -262,7 +269,8 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
     }
 
     private void updateUserList() {
-        List<User> assignedUsers = userService.findByProject(currentProject.getId());
+        List<UserRow> assignedUsers = userService.findRowsByProject(currentProject.getId());
+        usersHeader.setText("Usuarios Asignados (" + assignedUsers.size() + ")");
         userGrid.setItems(assignedUsers);
     }
 
@@ -288,36 +296,37 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
         dialog.setHeaderTitle("Asignar Usuarios");
         dialog.setWidth("600px");
 
-        // Search field for UVUS
-        TextField searchField = new TextField("Buscar por UVUS");
-        searchField.setPlaceholder("Escribe UVUS para filtrar...");
+        // Search field for UVUS or name; queries are sent once typing pauses
+        TextField searchField = new TextField("Buscar por UVUS o nombre");
+        searchField.setPlaceholder("Escribe el inicio del UVUS o del nombre...");
         searchField.setWidthFull();
+        searchField.setValueChangeMode(ValueChangeMode.TIMEOUT);
+        searchField.setValueChangeTimeout(300);
 
         // Grid with multi-selection
-        Grid<User> availableUsersGrid = new Grid<>(User.class, false);
-        availableUsersGrid.addColumn(User::getUvus).setHeader("UVUS").setWidth("150px");
-        availableUsersGrid.addColumn(User::getName).setHeader("Nombre");
-        availableUsersGrid.addColumn(user -> user.getRole() != null ? user.getRole().name() : "").setHeader("Rol")
+        Grid<UserRow> availableUsersGrid = new Grid<>();
+        availableUsersGrid.addColumn(UserRow::uvus).setHeader("UVUS").setWidth("150px");
+        availableUsersGrid.addColumn(UserRow::name).setHeader("Nombre");
+        availableUsersGrid.addColumn(user -> user.role() != null ? user.role().name() : "").setHeader("Rol")
                 .setWidth("120px");
 
         availableUsersGrid.setSelectionMode(Grid.SelectionMode.MULTI);
         availableUsersGrid.setHeight("400px");
 
-        // Load available users
-        List<User> availableUsers = userService.findAvailableForProject(currentProject.getId());
-        availableUsersGrid.setItems(availableUsers);
+        // Available users are searched and paged in the database
+        Long projectId = currentProject.getId();
+        KeysetPager.setItems(availableUsersGrid,
+                (afterUvus, afterId, limit) -> userService.searchAvailableForProject(projectId, null, afterUvus,
+                        afterId, limit),
+                UserRow::uvus, UserRow::id);
 
         // Search filter
         searchField.addValueChangeListener(e -> {
-            String filter = e.getValue().toLowerCase().trim();
-            if (filter.isEmpty()) {
-                availableUsersGrid.setItems(availableUsers);
-            } else {
-                List<User> filtered = availableUsers.stream()
-                        .filter(user -> user.getUvus().toLowerCase().contains(filter))
-                        .toList();
-                availableUsersGrid.setItems(filtered);
-            }
+            String search = e.getValue();
+            KeysetPager.setItems(availableUsersGrid,
+                    (afterUvus, afterId, limit) -> userService.searchAvailableForProject(projectId, search,
+                            afterUvus, afterId, limit),
+                    UserRow::uvus, UserRow::id);
         });
 
         VerticalLayout dialogLayout = new VerticalLayout(searchField, availableUsersGrid);
@@ -332,16 +341,18 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
                 return;
             }
 
-            // Assign all selected users to this project
-            for (User user : selectedUsers) {
-                user.setProject(currentProject);
-                userService.createOrUpdate(user);
-            }
+            // Assign all selected users to this project in one call
+            var results = userService.assignUsersToProject(currentProject.getId(),
+                    selectedUsers.stream().map(UserRow::id).toList());
+            long assigned = results.values().stream().filter(r -> r == MembershipChange.CHANGED).count();
+            long skipped = results.values().stream()
+                    .filter(r -> r == MembershipChange.FORBIDDEN || r == MembershipChange.NOT_FOUND).count();
 
             updateUserList();
             updateDirectorList();
             dialog.close();
-            Notification.show(selectedUsers.size() + " usuario(s) asignado(s) exitosamente");
+            Notification.show(assigned + " usuario(s) asignado(s) exitosamente"
+                    + (skipped > 0 ? ", " + skipped + " sin permisos o no encontrado(s)" : ""));
         });
         saveButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
 
@@ -353,9 +364,8 @@ public class ProjectDetailView extends VerticalLayout implements HasUrlParameter
         dialog.open();
     }
 
-    private void unassignUser(User user) {
-        user.setProject(null);
-        userService.createOrUpdate(user);
+    private void unassignUser(UserRow user) {
+        userService.unassignUsersFromProject(currentProject.getId(), List.of(user.id()));
         updateUserList();
         updateDirectorList();
         Notification.show("Usuario desasignado exitosamente");
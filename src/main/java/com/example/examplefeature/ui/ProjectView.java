@@ -3,11 +3,14 @@ package com.example.examplefeature.ui;
 import java.util.List;
 
 import com.example.base.ui.MainLayout;
+import com.example.base.ui.component.KeysetPager;
 
+import com.example.security.Permissions;
 import com.example.security.SecurityService;
 import com.example.program.Program;
 import com.example.program.ProgramRepository;
 import com.example.project.Project;
+import com.example.project.ProjectRow;
 import com.example.project.ProjectService;
 import com.example.user.User;
 import com.example.user.UserService;
@@ -36,7 +39,9 @@ public class ProjectView extends VerticalLayout {
     private final UserService userService;
     private final ProgramRepository programRepository;
 
-    private final Grid<Project> grid = new Grid<>(Project.class);
+    private final Grid<ProjectRow> grid = new Grid<>();
+    // Permisos por fila, calculados en bloque al refrescar el grid
+    private Permissions permissions = Permissions.none();
 
     public ProjectView(ProjectService projectService,
             SecurityService securityService, UserService userService,
@@ -56,26 +61,22 @@ public class ProjectView extends VerticalLayout {
     private void configureGrid() {
         grid.setSizeFull();
         grid.removeAllColumns();
-        grid.addColumn(Project::getId).setHeader("ID").setWidth("100px");
-        grid.addColumn(Project::getName).setHeader("Nombre");
-        grid.addColumn(project -> project.getDirector() != null ? project.getDirector().getName() : "Sin Director")
+        grid.addColumn(ProjectRow::id).setHeader("ID").setWidth("100px");
+        grid.addColumn(ProjectRow::name).setHeader("Nombre");
+        grid.addColumn(project -> project.directorName() != null ? project.directorName() : "Sin Director")
                 .setHeader("Director");
-        grid.addColumn(project -> project.getProgram() != null ? project.getProgram().getName() : "Sin Programa")
+        grid.addColumn(project -> project.programName() != null ? project.programName() : "Sin Programa")
                 .setHeader("Programa");
-        grid.addColumn(project -> project.getSponsor() != null ? project.getSponsor().getName() : "Sin Sponsor")
+        grid.addColumn(project -> project.sponsorName() != null ? project.sponsorName() : "Sin Sponsor")
                 .setHeader("Sponsor");
 
         // Columna de Editar
         grid.addComponentColumn(project -> {
-            boolean canEdit = false;
-            if (project.getProgram() != null) {
-                if (securityService.isProgramDirector(project.getProgram().getId())) {
-                    canEdit = true;
-                }
-            }
+            boolean canEdit = permissions.canEdit(project.id());
 
             if (canEdit) {
-                Button editButton = new Button("Editar", e -> openProjectDialog(project));
+                // The row only has the displayed columns: load the project to edit it
+                Button editButton = new Button("Editar", e -> openProjectDialog(projectService.get(project.id())));
                 editButton.addThemeVariants(com.vaadin.flow.component.button.ButtonVariant.LUMO_SMALL,
                         com.vaadin.flow.component.button.ButtonVariant.LUMO_PRIMARY);
                 return editButton;
@@ -86,15 +87,10 @@ public class ProjectView extends VerticalLayout {
 
         // Columna de Borrar
         grid.addComponentColumn(project -> {
-            boolean canDelete = false;
-            if (project.getProgram() != null) {
-                if (securityService.isProgramDirector(project.getProgram().getId())) {
-                    canDelete = true;
-                }
-            }
+            boolean canDelete = permissions.canDelete(project.id());
 
             if (canDelete) {
-                Button deleteButton = new Button("Borrar", e -> deleteProject(project));
+                Button deleteButton = new Button("Borrar", e -> deleteProject(project.id()));
                 deleteButton.addThemeVariants(com.vaadin.flow.component.button.ButtonVariant.LUMO_SMALL,
                         com.vaadin.flow.component.button.ButtonVariant.LUMO_ERROR);
                 return deleteButton;
@@ -106,7 +102,7 @@ public class ProjectView extends VerticalLayout {
         // Navigate to detail view on row click
         grid.addItemClickListener(event -> {
             if (event.getItem() != null) {
-                com.vaadin.flow.component.UI.getCurrent().navigate("project/" + event.getItem().getId());
+                com.vaadin.flow.component.UI.getCurrent().navigate("project/" + event.getItem().id());
             }
         });
     }
@@ -115,8 +111,7 @@ public class ProjectView extends VerticalLayout {
         HorizontalLayout toolbar = new HorizontalLayout();
 
         // Program directors can add new projects
-        boolean isProgramDirector = securityService.getCurrentUser() != null &&
-                !programRepository.findAllByDirectorIdWithRelations(securityService.getCurrentUser().getId()).isEmpty();
+        boolean isProgramDirector = securityService.directsAnyProgram();
 
         if (isProgramDirector) {
             Button addProjectButton = new Button("Añadir Proyecto");
@@ -127,15 +122,15 @@ public class ProjectView extends VerticalLayout {
         return toolbar;
     }
 
-    private void deleteProject(Project project) {
-        if (projectService.hasAssignedUsers(project.getId())) {
+    private void deleteProject(Long projectId) {
+        if (projectService.hasAssignedUsers(projectId)) {
             Dialog confirmDialog = new Dialog();
             confirmDialog.setHeaderTitle("Eliminar Proyecto");
             confirmDialog.add(
                     "Este proyecto tiene usuarios asignados. ¿Desea desasignar los usuarios y eliminar el proyecto?");
 
             Button confirmDeleteButton = new Button("Eliminar", event -> {
-                projectService.deleteSafe(project.getId());
+                projectService.deleteSafe(projectId);
                 updateList();
                 confirmDialog.close();
                 Notification.show("Proyecto eliminado exitosamente y usuarios desasignados");
@@ -148,7 +143,7 @@ public class ProjectView extends VerticalLayout {
             confirmDialog.getFooter().add(confirmDeleteButton);
             confirmDialog.open();
         } else {
-            projectService.delete(project.getId());
+            projectService.delete(projectId);
             updateList();
             Notification.show("Proyecto eliminado exitosamente");
         }
@@ -165,10 +160,10 @@ public class ProjectView extends VerticalLayout {
 
         // Filter Programs (Only those managed by current user)
         java.util.Set<Program> programs = new java.util.HashSet<>();
-        User currentUser = securityService.getCurrentUser();
-        if (currentUser != null) {
+        Long currentUserId = securityService.getCurrentUserId();
+        if (currentUserId != null) {
             // As Program Director
-            programs.addAll(programRepository.findAllByDirectorIdWithRelations(currentUser.getId()));
+            programs.addAll(programRepository.findAllByDirectorIdWithRelations(currentUserId));
         }
         programSelect.setItems(programs);
 
@@ -216,6 +211,10 @@ public class ProjectView extends VerticalLayout {
     }
 
     private void updateList() {
-        grid.setItems(projectService.getAll());
+        // Only the visible window is loaded; permissions are checked page by page
+        permissions = Permissions.none();
+        KeysetPager.setItems(grid, projectService::getPage, ProjectRow::name, ProjectRow::id,
+                page -> permissions = permissions.plus(
+                        securityService.permissionsForProjects(page.stream().map(ProjectRow::id).toList())));
     }
 }
@@ -1,10 +1,13 @@
 package com.example.examplefeature.ui;
 
 import com.example.base.ui.MainLayout;
+import com.example.base.ui.component.KeysetPager;
 import com.example.user.User;
+import com.example.user.UserRow;
 import com.example.user.UserService;
 import com.example.user.Role;
 import com.example.security.PasswordGenerator;
+import com.example.security.PasswordHashingBusyException;
 import com.example.security.SecurityService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import com.vaadin.flow.component.button.Button;
@@ -29,7 +32,7 @@ public class UserView extends VerticalLayout {
 
     private final UserService userService;
     private final SecurityService securityService;
-    private final Grid<User> grid = new Grid<>(User.class);
+    private final Grid<UserRow> grid = new Grid<>();
 
     private final PasswordEncoder passwordEncoder;
     private final PasswordGenerator passwordGenerator;
@@ -51,10 +54,10 @@ public class UserView extends VerticalLayout {
     private void configureGrid() {
         grid.setSizeFull();
         grid.removeAllColumns();
-        grid.addColumn(User::getId).setHeader("ID");
-        grid.addColumn(User::getName).setHeader("Nombre");
-        grid.addColumn(User::getUvus).setHeader("UVUS");
-        grid.addColumn(user -> user.getProject() != null ? user.getProject().getName() : "Sin Proyecto")
+        grid.addColumn(UserRow::id).setHeader("ID");
+        grid.addColumn(UserRow::name).setHeader("Nombre");
+        grid.addColumn(UserRow::uvus).setHeader("UVUS");
+        grid.addColumn(user -> user.projectName() != null ? user.projectName() : "Sin Proyecto")
                 .setHeader("Proyecto");
 
         grid.asSingleSelect().addValueChangeListener(event -> {
@@ -78,20 +81,20 @@ public class UserView extends VerticalLayout {
         return toolbar;
     }
 
-    private void openUserDetailDialog(User user) {
+    private void openUserDetailDialog(UserRow user) {
         Dialog dialog = new Dialog();
         dialog.setHeaderTitle("Detalles del Usuario");
 
         TextField nameField = new TextField("Nombre");
-        nameField.setValue(user.getName());
+        nameField.setValue(user.name());
         nameField.setReadOnly(true);
 
         TextField uvusField = new TextField("UVUS");
-        uvusField.setValue(user.getUvus());
+        uvusField.setValue(user.uvus());
         uvusField.setReadOnly(true);
 
         TextField projectField = new TextField("Proyecto");
-        projectField.setValue(user.getProject() != null ? user.getProject().getName() : "Sin Proyecto");
+        projectField.setValue(user.projectName() != null ? user.projectName() : "Sin Proyecto");
         projectField.setReadOnly(true);
 
         VerticalLayout dialogLayout = new VerticalLayout(nameField, uvusField, projectField);
@@ -104,7 +107,7 @@ public class UserView extends VerticalLayout {
         if (securityService.isPmoDirector()) {
             Button deleteButton = new Button("Eliminar", e -> {
                 try {
-                    if (userService.hasAssignedEntities(user.getId())) {
+                    if (userService.hasAssignedEntities(user.id())) {
                         Dialog confirmDialog = new Dialog();
                         confirmDialog.setHeaderTitle("Eliminar Usuario");
                         confirmDialog.add(
@@ -112,7 +115,7 @@ public class UserView extends VerticalLayout {
 
                         Button confirmDeleteButton = new Button("Eliminar", event -> {
                             try {
-                                userService.deleteSafe(user.getId());
+                                userService.deleteSafe(user.id());
                                 updateList();
                                 dialog.close();
                                 confirmDialog.close();
@@ -129,7 +132,7 @@ public class UserView extends VerticalLayout {
                         confirmDialog.getFooter().add(confirmDeleteButton);
                         confirmDialog.open();
                     } else {
-                        userService.delete(user.getId());
+                        userService.delete(user.id());
                         updateList();
                         dialog.close();
                         Notification.show("Usuario eliminado exitosamente");
@@ -173,7 +176,13 @@ public class UserView extends VerticalLayout {
             newUser.setRole(Role.USER); // Explicitly set Role.USER
 
             String generatedPassword = passwordGenerator.generateStrongPassword();
-            newUser.setPassword(passwordEncoder.encode(generatedPassword));
+            try {
+                newUser.setPassword(passwordEncoder.encode(generatedPassword));
+            } catch (PasswordHashingBusyException ex) {
+                // Pool de hashing saturado: el diálogo sigue abierto para reintentar
+                Notification.show(ex.getMessage());
+                return;
+            }
 
             userService.createOrUpdate(newUser);
             updateList();
@@ -192,6 +201,7 @@ public class UserView extends VerticalLayout {
     }
 
     private void updateList() {
-        grid.setItems(userService.getAll());
+        // Only the visible window is loaded
+        KeysetPager.setItems(grid, userService::getPage, UserRow::name, UserRow::id);
     }
 }
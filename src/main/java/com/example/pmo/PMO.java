@@ -6,12 +6,17 @@ import com.example.portfolio.Portfolio;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
 @Table(name = "pmo")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "pmo")
 public class PMO {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pmo_seq")
+    @SequenceGenerator(name = "pmo_seq", sequenceName = "pmo_seq", allocationSize = 100)
     @Column(name = "pmo_id", nullable = false)
     @NotNull
     private Long id;
@@ -1,5 +1,6 @@
 package com.example.pmo;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -12,14 +13,24 @@ public interface PMORepository extends JpaRepository<PMO, Long> {
     @Query("SELECT p FROM PMO p LEFT JOIN FETCH p.portfolio LEFT JOIN FETCH p.director")
     List<PMO> findAllWithRelations();
 
-    long countByDirectorId(Long directorId);
-
     @org.springframework.data.jpa.repository.Modifying
     @Query("UPDATE PMO p SET p.director = null WHERE p.director.id = :directorId")
     void unassignDirector(@org.springframework.data.repository.query.Param("directorId") Long directorId);
 
-    @org.springframework.data.jpa.repository.Modifying
+    // Last bulk statement of a portfolio delete: drops the entities it left stale
+    @org.springframework.data.jpa.repository.Modifying(flushAutomatically = true, clearAutomatically = true)
     @Query("DELETE FROM PMO p WHERE p.portfolio.id = :portfolioId")
     void deleteByPortfolioId(@org.springframework.data.repository.query.Param("portfolioId") Long portfolioId);
 
+    @Query("SELECT new com.example.security.DirectorAssignment(p.id, d.id, p.portfolio.id) FROM PMO p LEFT JOIN p.director d")
+    List<com.example.security.DirectorAssignment> findAllDirectorAssignments();
+
+    // Keyset page for the lazy grid: PMOs after (afterName, afterId) ordered by
+    // name and id; a null afterName starts from the first row
+    @Query("SELECT p FROM PMO p LEFT JOIN FETCH p.portfolio LEFT JOIN FETCH p.director " +
+            "WHERE (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+            "ORDER BY p.name, p.id")
+    List<PMO> findPageWithRelations(@org.springframework.data.repository.query.Param("afterName") String afterName,
+            @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
 }
@@ -2,8 +2,10 @@ package com.example.pmo;
 
 import java.util.List;
 
+import com.example.security.DirectorshipIndex;
 import com.example.security.SecurityService;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,33 +15,44 @@ public class PMOService {
 
     private final PMORepository pmoRepository;
     private final SecurityService securityService;
+    private final DirectorshipIndex directorshipIndex;
 
-    public PMOService(PMORepository pmoRepository, SecurityService securityService) {
+    public PMOService(PMORepository pmoRepository, SecurityService securityService,
+            DirectorshipIndex directorshipIndex) {
         this.pmoRepository = pmoRepository;
         this.securityService = securityService;
+        this.directorshipIndex = directorshipIndex;
     }
 
     public PMO createOrUpdate(PMO pmo) {
         // Allow system initialization (no user) or System Admin bypass
-        if (securityService.getCurrentUser() == null || securityService.isSystemAdmin()) {
-            return pmoRepository.save(pmo);
+        if (securityService.getCurrentUserId() == null || securityService.isSystemAdmin()) {
+            return save(pmo);
         }
 
         // Solo admins pueden crear o editar PMOs
         if (!securityService.isAdmin()) {
             throw new SecurityException("Solo los administradores pueden crear o editar PMOs");
         }
-        return pmoRepository.save(pmo);
+        return save(pmo);
     }
 
+    private PMO save(PMO pmo) {
+        PMO saved = pmoRepository.save(pmo);
+        directorshipIndex.pmoSaved(saved);
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
     public PMO get(Long id) {
         return pmoRepository.findById(id).orElse(null);
     }
 
     public void delete(Long id) {
         // Allow system initialization (no user) or System Admin bypass
-        if (securityService.getCurrentUser() == null || securityService.isSystemAdmin()) {
+        if (securityService.getCurrentUserId() == null || securityService.isSystemAdmin()) {
             pmoRepository.deleteById(id);
+            directorshipIndex.pmoRemoved(id);
             return;
         }
 
@@ -48,10 +61,20 @@ public class PMOService {
             throw new SecurityException("Solo los administradores pueden eliminar PMOs");
         }
         pmoRepository.deleteById(id);
+        directorshipIndex.pmoRemoved(id);
     }
 
+    @Transactional(readOnly = true)
     public List<PMO> getAll() {
         List<PMO> pmos = pmoRepository.findAllWithRelations();
         return pmos;
     }
+
+    /**
+     * Page of {@link #getAll()} ordered by name and id, after the given row
+     */
+    @Transactional(readOnly = true)
+    public List<PMO> getPage(String afterName, Long afterId, int limit) {
+        return pmoRepository.findPageWithRelations(afterName, afterId, Limit.of(limit));
+    }
 }
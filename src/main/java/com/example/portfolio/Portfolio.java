@@ -5,12 +5,17 @@ import com.example.user.User;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
 @Table(name = "portfolio")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "portfolio")
 public class Portfolio {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "portfolio_seq")
+    @SequenceGenerator(name = "portfolio_seq", sequenceName = "portfolio_seq", allocationSize = 100)
     @Column(name = "portfolio_id", nullable = false)
     @NotNull
     private Long id;
@@ -0,0 +1,11 @@
+package com.example.portfolio;
+
+/**
+ * What a cascade delete of the portfolio would remove, read in one statement
+ */
+public record PortfolioDependencies(Long id, long programs, long projects, long pmos) {
+
+    public boolean hasPrograms() {
+        return programs > 0;
+    }
+}
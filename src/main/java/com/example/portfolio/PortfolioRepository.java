@@ -1,11 +1,11 @@
 package com.example.portfolio;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface PortfolioRepository extends JpaRepository<Portfolio, Long> {
@@ -13,14 +13,23 @@ public interface PortfolioRepository extends JpaRepository<Portfolio, Long> {
         @Query("SELECT p FROM Portfolio p LEFT JOIN FETCH p.director")
         List<Portfolio> findAllWithDirector();
 
-        @Query("SELECT p FROM Portfolio p LEFT JOIN FETCH p.director WHERE p.id = :id")
-        Optional<Portfolio> findByIdWithDirector(@org.springframework.data.repository.query.Param("id") Long id);
-
         @Query("SELECT p FROM Portfolio p LEFT JOIN FETCH p.director WHERE p.director.id = :directorId")
         List<Portfolio> findAllByDirectorIdWithDirector(
                         @org.springframework.data.repository.query.Param("directorId") Long directorId);
 
-        long countByDirectorId(Long directorId);
+        // What a cascade delete would remove, one row per portfolio
+        @Query("SELECT new com.example.portfolio.PortfolioDependencies(pf.id, "
+                        + "(SELECT COUNT(prog) FROM Program prog WHERE prog.portfolio.id = pf.id), "
+                        + "(SELECT COUNT(p) FROM Project p WHERE p.program.portfolio.id = pf.id), "
+                        + "(SELECT COUNT(pmo) FROM PMO pmo WHERE pmo.portfolio.id = pf.id)) "
+                        + "FROM Portfolio pf WHERE pf.id IN :ids")
+        List<PortfolioDependencies> findDependenciesByIdIn(
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
+        @Query("SELECT pf.id FROM Portfolio pf WHERE pf.id IN :ids "
+                        + "AND EXISTS (SELECT 1 FROM Program prog WHERE prog.portfolio.id = pf.id)")
+        List<Long> findIdsWithProgramsIn(
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
 
         @org.springframework.data.jpa.repository.Modifying
         @Query("UPDATE Portfolio p SET p.director = null WHERE p.director.id = :directorId")
@@ -33,4 +42,52 @@ public interface PortfolioRepository extends JpaRepository<Portfolio, Long> {
         List<Portfolio> findByDirectorIdOrProgramDirectorId(
                         @org.springframework.data.repository.query.Param("userId") Long userId);
 
+        // Listing for Role.USER: portfolios the user directs or that hold one of their projects
+        @Query("SELECT p FROM Portfolio p " +
+                        "LEFT JOIN FETCH p.director " +
+                        "WHERE p.director.id = :userId " +
+                        "OR p.id IN (SELECT prog.portfolio.id FROM Program prog WHERE prog.director.id = :userId " +
+                        "OR prog.id IN (SELECT pr.program.id FROM Project pr " +
+                        "WHERE pr.director.id = :userId OR pr.sponsor.id = :userId " +
+                        "OR pr.id IN (SELECT u.project.id FROM User u WHERE u.id = :userId)))")
+        List<Portfolio> findAllVisibleToUserWithDirector(
+                        @org.springframework.data.repository.query.Param("userId") Long userId);
+
+        @Query("SELECT new com.example.security.DirectorAssignment(p.id, d.id) FROM Portfolio p LEFT JOIN p.director d")
+        List<com.example.security.DirectorAssignment> findAllDirectorAssignments();
+
+        // Keyset pages for the lazy grids: rows after (afterName, afterId) ordered by
+        // name and id; a null afterName starts from the first row
+        @Query("SELECT p FROM Portfolio p LEFT JOIN FETCH p.director " +
+                        "WHERE (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+                        "ORDER BY p.name, p.id")
+        List<Portfolio> findPageWithDirector(
+                        @org.springframework.data.repository.query.Param("afterName") String afterName,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
+        @Query("SELECT p FROM Portfolio p " +
+                        "LEFT JOIN FETCH p.director " +
+                        "WHERE (p.director.id = :userId " +
+                        "OR p.id IN (SELECT prog.portfolio.id FROM Program prog WHERE prog.director.id = :userId)) " +
+                        "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+                        "ORDER BY p.name, p.id")
+        List<Portfolio> findPageByDirectorIdOrProgramDirectorId(
+                        @org.springframework.data.repository.query.Param("userId") Long userId,
+                        @org.springframework.data.repository.query.Param("afterName") String afterName,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
+        @Query("SELECT p FROM Portfolio p " +
+                        "LEFT JOIN FETCH p.director " +
+                        "WHERE (p.director.id = :userId " +
+                        "OR p.id IN (SELECT prog.portfolio.id FROM Program prog WHERE prog.director.id = :userId " +
+                        "OR prog.id IN (SELECT pr.program.id FROM Project pr " +
+                        "WHERE pr.director.id = :userId OR pr.sponsor.id = :userId " +
+                        "OR pr.id IN (SELECT u.project.id FROM User u WHERE u.id = :userId)))) " +
+                        "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+                        "ORDER BY p.name, p.id")
+        List<Portfolio> findPageVisibleToUserWithDirector(
+                        @org.springframework.data.repository.query.Param("userId") Long userId,
+                        @org.springframework.data.repository.query.Param("afterName") String afterName,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
 }
@@ -1,13 +1,24 @@
 package com.example.portfolio;
 
-import com.example.program.Program;
 import com.example.program.ProgramRepository;
-import com.example.program.ProgramService;
+import com.example.project.ProjectRepository;
 import com.example.pmo.PMORepository;
+import com.example.security.CurrentIdentity;
+import com.example.security.DirectorshipIndex;
 import com.example.security.SecurityService;
+import com.example.security.ratelimit.RateLimitBucket;
+import com.example.security.ratelimit.RateLimiter;
+import com.example.user.UserRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,74 +28,157 @@ public class PortfolioService {
 
     private final PortfolioRepository portfolioRepository;
     private final ProgramRepository programRepository;
-    private final ProgramService programService;
+    private final ProjectRepository projectRepository;
+    private final UserRepository userRepository;
     private final PMORepository pmoRepository;
     private final SecurityService securityService;
+    private final DirectorshipIndex directorshipIndex;
+    private final RateLimiter rateLimiter;
 
     public PortfolioService(PortfolioRepository portfolioRepository, ProgramRepository programRepository,
-            ProgramService programService, PMORepository pmoRepository, SecurityService securityService) {
+            ProjectRepository projectRepository, UserRepository userRepository, PMORepository pmoRepository,
+            SecurityService securityService, DirectorshipIndex directorshipIndex, RateLimiter rateLimiter) {
         this.portfolioRepository = portfolioRepository;
         this.programRepository = programRepository;
-        this.programService = programService;
+        this.projectRepository = projectRepository;
+        this.userRepository = userRepository;
         this.pmoRepository = pmoRepository;
         this.securityService = securityService;
+        this.directorshipIndex = directorshipIndex;
+        this.rateLimiter = rateLimiter;
     }
 
     public Portfolio createOrUpdate(Portfolio portfolio) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
         // Solo admins pueden crear portfolios nuevos
         // Managers solo pueden editar portfolios donde son directores
         // Only admins can create or update portfolios
-        if (securityService.getCurrentUser() != null && !securityService.isAdmin()
+        if (securityService.getCurrentUserId() != null && !securityService.isAdmin()
                 && !securityService.isSystemAdmin()) {
             throw new SecurityException("Solo los administradores pueden crear o editar portfolios");
         }
-        return portfolioRepository.save(portfolio);
+        Portfolio saved = portfolioRepository.save(portfolio);
+        directorshipIndex.portfolioSaved(saved);
+        return saved;
     }
 
+    /**
+     * Portfolio with its director, both read through the second-level cache
+     */
+    @Transactional(readOnly = true)
     public Portfolio get(Long id) {
-        return portfolioRepository.findByIdWithDirector(id).orElse(null);
+        Portfolio portfolio = portfolioRepository.findById(id).orElse(null);
+        if (portfolio != null) {
+            Hibernate.initialize(portfolio.getDirector());
+        }
+        return portfolio;
     }
 
     public void delete(Long id) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
         // Solo admins y managers (de sus propios portfolios) pueden eliminar
         // Only admins can delete portfolios
-        if (securityService.getCurrentUser() != null && !securityService.isAdmin()
+        if (securityService.getCurrentUserId() != null && !securityService.isAdmin()
                 && !securityService.isSystemAdmin()) {
             throw new SecurityException("Solo los administradores pueden eliminar portfolios");
         }
         pmoRepository.deleteByPortfolioId(id);
         portfolioRepository.deleteById(id);
+        directorshipIndex.portfolioRemoved(id);
     }
 
+    @Transactional(readOnly = true)
     public List<Portfolio> getAll() {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        // Cada rol tiene su propia consulta, que solo devuelve las filas que puede ver
         // Admins ven todos los portfolios
         // Managers solo ven portfolios donde son directores O directores de programas
-        if (securityService.isAdmin()) {
+        // Users solo ven portfolios que dirigen o que contienen alguno de sus proyectos
+        // Sin usuario (sistema) se ven todos
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
             return portfolioRepository.findAllWithDirector();
-        } else if (securityService.isManager()) {
-            // Managers see portfolios where they are director OR where they direct a
-            // program
-            return portfolioRepository.findByDirectorIdOrProgramDirectorId(securityService.getCurrentUser().getId());
         }
-        return portfolioRepository.findAllWithDirector();
+        return switch (identity.role()) {
+            case ADMIN -> portfolioRepository.findAllWithDirector();
+            case MANAGER -> portfolioRepository.findByDirectorIdOrProgramDirectorId(identity.id());
+            case USER -> portfolioRepository.findAllVisibleToUserWithDirector(identity.id());
+        };
+    }
+
+    /**
+     * Page of {@link #getAll()} ordered by name and id, after the given row
+     */
+    @Transactional(readOnly = true)
+    public List<Portfolio> getPage(String afterName, Long afterId, int limit) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
+            return portfolioRepository.findPageWithDirector(afterName, afterId, Limit.of(limit));
+        }
+        return switch (identity.role()) {
+            case ADMIN -> portfolioRepository.findPageWithDirector(afterName, afterId, Limit.of(limit));
+            case MANAGER -> portfolioRepository.findPageByDirectorIdOrProgramDirectorId(identity.id(), afterName,
+                    afterId, Limit.of(limit));
+            case USER -> portfolioRepository.findPageVisibleToUserWithDirector(identity.id(), afterName, afterId,
+                    Limit.of(limit));
+        };
     }
 
+    @Transactional(readOnly = true)
     public boolean hasPrograms(Long id) {
-        return programRepository.countByPortfolioId(id) > 0;
+        return !portfolioRepository.findIdsWithProgramsIn(List.of(id)).isEmpty();
+    }
+
+    /**
+     * Portfolios of the batch that have programs, in one EXISTS query
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> withPrograms(Collection<Long> ids) {
+        return ids.isEmpty() ? Set.of() : Set.copyOf(portfolioRepository.findIdsWithProgramsIn(ids));
     }
 
+    /**
+     * Programs, projects and PMOs a cascade delete would remove, counted in one
+     * statement
+     *
+     * @return The counts, or null if the portfolio does not exist
+     */
+    @Transactional(readOnly = true)
+    public PortfolioDependencies getDependencies(Long id) {
+        return getDependencies(List.of(id)).get(id);
+    }
+
+    /**
+     * Dependency counts of a batch of portfolios (a grid page, say) in one statement
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, PortfolioDependencies> getDependencies(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return portfolioRepository.findDependenciesByIdIn(ids).stream()
+                .collect(Collectors.toMap(PortfolioDependencies::id, Function.identity()));
+    }
+
+    /**
+     * Deletes the portfolio with its whole subtree: users are taken out of its
+     * projects, then its projects, programs and PMOs are deleted. One permission
+     * check and one statement per table, however many programs it has.
+     */
     public void deleteWithCascade(Long id) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
         // Solo admins y managers (de sus propios portfolios) pueden eliminar
         // Only admins can delete portfolios
-        if (securityService.getCurrentUser() != null && !securityService.isAdmin()
+        if (securityService.getCurrentUserId() != null && !securityService.isAdmin()
                 && !securityService.isSystemAdmin()) {
             throw new SecurityException("Solo los administradores pueden eliminar portfolios");
         }
-        List<Program> programs = programRepository.findAllByPortfolioId(id);
-        for (Program program : programs) {
-            programService.deleteWithCascade(program.getId());
-        }
+        userRepository.unassignUsersFromProjectsInPortfolio(id);
+        projectRepository.deleteByPortfolioId(id);
+        programRepository.deleteByPortfolioId(id);
         pmoRepository.deleteByPortfolioId(id);
         portfolioRepository.deleteById(id);
+        directorshipIndex.portfolioRemoved(id);
     }
 }
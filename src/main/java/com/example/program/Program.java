@@ -6,12 +6,17 @@ import com.example.user.User;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
 @Table(name = "program")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "program")
 public class Program {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "program_seq")
+    @SequenceGenerator(name = "program_seq", sequenceName = "program_seq", allocationSize = 100)
     @Column(name = "program_id", nullable = false)
     @NotNull
     private Long id;
@@ -0,0 +1,12 @@
+package com.example.program;
+
+/**
+ * What a cascade delete of the program would remove or unassign, read in one
+ * statement
+ */
+public record ProgramDependencies(Long id, long projects, long members) {
+
+    public boolean hasProjects() {
+        return projects > 0;
+    }
+}
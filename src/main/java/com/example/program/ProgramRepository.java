@@ -1,11 +1,13 @@
 package com.example.program;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,19 +17,27 @@ public interface ProgramRepository extends JpaRepository<Program, Long> {
     @Query("SELECT p FROM Program p LEFT JOIN FETCH p.director LEFT JOIN FETCH p.portfolio")
     List<Program> findAllWithRelations();
 
-    @Query("SELECT p FROM Program p LEFT JOIN FETCH p.director LEFT JOIN FETCH p.portfolio WHERE p.id = :id")
-    Optional<Program> findByIdWithRelations(@Param("id") Long id);
-
     @Query("SELECT p FROM Program p LEFT JOIN FETCH p.portfolio LEFT JOIN FETCH p.director WHERE p.director.id = :directorId")
     List<Program> findAllByDirectorIdWithRelations(@Param("directorId") Long directorId);
 
-    long countByPortfolioId(Long portfolioId);
+    // What a cascade delete would remove or unassign, one row per program
+    @Query("SELECT new com.example.program.ProgramDependencies(prog.id, "
+            + "(SELECT COUNT(p) FROM Project p WHERE p.program.id = prog.id), "
+            + "(SELECT COUNT(u) FROM User u WHERE u.project.program.id = prog.id)) "
+            + "FROM Program prog WHERE prog.id IN :ids")
+    List<ProgramDependencies> findDependenciesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT prog.id FROM Program prog WHERE prog.id IN :ids "
+            + "AND EXISTS (SELECT 1 FROM Project p WHERE p.program.id = prog.id)")
+    List<Long> findIdsWithProjectsIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Program p WHERE p.portfolio.id = :portfolioId")
+    void deleteByPortfolioId(@Param("portfolioId") Long portfolioId);
 
     @Query("SELECT p FROM Program p LEFT JOIN FETCH p.portfolio LEFT JOIN FETCH p.director WHERE p.portfolio.id = :portfolioId")
     List<Program> findAllByPortfolioId(@Param("portfolioId") Long portfolioId);
 
-    long countByDirectorId(Long directorId);
-
     @Modifying
     @Query("UPDATE Program p SET p.director = null WHERE p.director.id = :directorId")
     void unassignDirector(@Param("directorId") Long directorId);
@@ -35,4 +45,43 @@ public interface ProgramRepository extends JpaRepository<Program, Long> {
     @Query("SELECT p FROM Program p LEFT JOIN FETCH p.portfolio LEFT JOIN FETCH p.director WHERE p.portfolio.director.id = :directorId")
     List<Program> findAllByPortfolioDirectorId(@Param("directorId") Long directorId);
 
+    // Listing for Role.USER: programs the user directs or that hold one of their projects
+    @Query("SELECT p FROM Program p LEFT JOIN FETCH p.director LEFT JOIN FETCH p.portfolio " +
+            "WHERE p.director.id = :userId " +
+            "OR p.id IN (SELECT pr.program.id FROM Project pr " +
+            "WHERE pr.director.id = :userId OR pr.sponsor.id = :userId " +
+            "OR pr.id IN (SELECT u.project.id FROM User u WHERE u.id = :userId))")
+    List<Program> findAllVisibleToUserWithRelations(@Param("userId") Long userId);
+
+    @Query("SELECT new com.example.security.DirectorAssignment(p.id, d.id, p.portfolio.id) FROM Program p LEFT JOIN p.director d")
+    List<com.example.security.DirectorAssignment> findAllDirectorAssignments();
+
+    @Query("SELECT new com.example.security.DirectorAssignment(p.id, d.id, p.portfolio.id) FROM Program p LEFT JOIN p.director d WHERE p.id = :id")
+    Optional<com.example.security.DirectorAssignment> findDirectorAssignmentById(@Param("id") Long id);
+
+    // Keyset pages for the lazy grids: rows after (afterName, afterId) ordered by
+    // name and id; a null afterName starts from the first row
+    @Query("SELECT p FROM Program p LEFT JOIN FETCH p.director LEFT JOIN FETCH p.portfolio " +
+            "WHERE (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+            "ORDER BY p.name, p.id")
+    List<Program> findPageWithRelations(@Param("afterName") String afterName, @Param("afterId") Long afterId,
+            Limit limit);
+
+    @Query("SELECT p FROM Program p LEFT JOIN FETCH p.portfolio LEFT JOIN FETCH p.director " +
+            "WHERE p.director.id = :directorId " +
+            "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+            "ORDER BY p.name, p.id")
+    List<Program> findPageByDirectorIdWithRelations(@Param("directorId") Long directorId,
+            @Param("afterName") String afterName, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT p FROM Program p LEFT JOIN FETCH p.director LEFT JOIN FETCH p.portfolio " +
+            "WHERE (p.director.id = :userId " +
+            "OR p.id IN (SELECT pr.program.id FROM Project pr " +
+            "WHERE pr.director.id = :userId OR pr.sponsor.id = :userId " +
+            "OR pr.id IN (SELECT u.project.id FROM User u WHERE u.id = :userId))) " +
+            "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+            "ORDER BY p.name, p.id")
+    List<Program> findPageVisibleToUserWithRelations(@Param("userId") Long userId,
+            @Param("afterName") String afterName, @Param("afterId") Long afterId, Limit limit);
+
 }
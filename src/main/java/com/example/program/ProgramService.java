@@ -1,11 +1,24 @@
 package com.example.program;
 
 import com.example.project.ProjectRepository;
+import com.example.security.CurrentIdentity;
+import com.example.security.DirectorshipIndex;
 import com.example.security.SecurityService;
+import com.example.security.policy.PolicyAction;
+import com.example.security.policy.PolicyEngine;
+import com.example.security.ratelimit.RateLimitBucket;
+import com.example.security.ratelimit.RateLimiter;
 import com.example.user.UserRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,103 +30,156 @@ public class ProgramService {
     private final ProjectRepository projectRepository;
     private final UserRepository userRepository;
     private final SecurityService securityService;
+    private final DirectorshipIndex directorshipIndex;
+    private final PolicyEngine policyEngine;
+    private final RateLimiter rateLimiter;
 
     public ProgramService(ProgramRepository programRepository, ProjectRepository projectRepository,
-            UserRepository userRepository, SecurityService securityService) {
+            UserRepository userRepository, SecurityService securityService, DirectorshipIndex directorshipIndex,
+            PolicyEngine policyEngine, RateLimiter rateLimiter) {
         this.programRepository = programRepository;
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
         this.securityService = securityService;
+        this.directorshipIndex = directorshipIndex;
+        this.policyEngine = policyEngine;
+        this.rateLimiter = rateLimiter;
     }
 
     public Program createOrUpdate(Program program) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
         if (securityService.isSystemAdmin()) {
-            return programRepository.save(program);
+            return save(program);
         }
 
         // Only Portfolio Directors can manage Programs
         if (program.getPortfolio() != null) {
             if (securityService.isPortfolioDirector(program.getPortfolio().getId())) {
-                return programRepository.save(program);
+                return save(program);
             }
         }
 
         throw new SecurityException("No tienes permisos para realizar esta acción");
     }
 
+    private Program save(Program program) {
+        Program saved = programRepository.save(program);
+        directorshipIndex.programSaved(saved);
+        return saved;
+    }
+
+    /**
+     * Program with its director and portfolio, all read through the second-level
+     * cache
+     */
+    @Transactional(readOnly = true)
     public Program get(Long id) {
-        return programRepository.findByIdWithRelations(id).orElse(null);
+        Program program = programRepository.findById(id).orElse(null);
+        if (program != null) {
+            Hibernate.initialize(program.getDirector());
+            Hibernate.initialize(program.getPortfolio());
+        }
+        return program;
     }
 
     public void delete(Long id) {
-        // Admins pueden eliminar cualquier programa
-        // Managers pueden eliminar programas donde son directores O de portfolios donde
-        // son directores
-        // Admins pueden eliminar cualquier programa
-        // Portfolio Directors pueden eliminar programas de sus portfolios
-        if (!securityService.isAdmin()) {
-            Program program = programRepository.findById(id).orElse(null);
-            if (program == null) {
-                // Let repository handle not found or just return
-                return;
-            }
-            // Check if user is director of the portfolio
-            boolean isPortfolioDirector = false;
-            if (program.getPortfolio() != null) {
-                isPortfolioDirector = securityService.isPortfolioDirector(program.getPortfolio().getId());
-            }
-
-            if (!isPortfolioDirector) {
-                throw new SecurityException(
-                        "Solo los administradores y directores de portfolio pueden eliminar programas");
-            }
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        // Admins, or portfolio directors for the programs of their portfolio (PmisPolicies)
+        if (!policyEngine.enforce(PolicyAction.PROGRAM_DELETE, id)) {
+            return;
         }
         programRepository.deleteById(id);
+        directorshipIndex.programRemoved(id);
     }
 
+    @Transactional(readOnly = true)
     public List<Program> getAll() {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        // Cada rol tiene su propia consulta, que solo devuelve las filas que puede ver
         // Admins ven todos los programas
         // Managers solo ven programas donde son directores
-        if (securityService.isAdmin()) {
+        // Users solo ven programas que dirigen o que contienen alguno de sus proyectos
+        // Sin usuario (sistema) se ven todos
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
             return programRepository.findAllWithRelations();
-        } else if (securityService.isManager()) {
-            return programRepository.findAllByDirectorIdWithRelations(securityService.getCurrentUser().getId());
         }
-        return programRepository.findAllWithRelations();
+        return switch (identity.role()) {
+            case ADMIN -> programRepository.findAllWithRelations();
+            case MANAGER -> programRepository.findAllByDirectorIdWithRelations(identity.id());
+            case USER -> programRepository.findAllVisibleToUserWithRelations(identity.id());
+        };
+    }
+
+    /**
+     * Page of {@link #getAll()} ordered by name and id, after the given row
+     */
+    @Transactional(readOnly = true)
+    public List<Program> getPage(String afterName, Long afterId, int limit) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
+            return programRepository.findPageWithRelations(afterName, afterId, Limit.of(limit));
+        }
+        return switch (identity.role()) {
+            case ADMIN -> programRepository.findPageWithRelations(afterName, afterId, Limit.of(limit));
+            case MANAGER -> programRepository.findPageByDirectorIdWithRelations(identity.id(), afterName, afterId,
+                    Limit.of(limit));
+            case USER -> programRepository.findPageVisibleToUserWithRelations(identity.id(), afterName, afterId,
+                    Limit.of(limit));
+        };
     }
 
+    @Transactional(readOnly = true)
     public List<Program> getByPortfolioId(Long portfolioId) {
         return programRepository.findAllByPortfolioId(portfolioId);
     }
 
+    @Transactional(readOnly = true)
     public boolean hasProjects(Long id) {
-        return projectRepository.countByProgramId(id) > 0;
+        return !programRepository.findIdsWithProjectsIn(List.of(id)).isEmpty();
     }
 
-    public void deleteWithCascade(Long id) {
-        // Admins pueden eliminar cualquier programa
-        // Managers pueden eliminar programas donde son directores O de portfolios donde
-        // son directores
-        // Admins pueden eliminar cualquier programa
-        // Portfolio Directors pueden eliminar programas de sus portfolios
-        if (!securityService.isAdmin()) {
-            Program program = programRepository.findById(id).orElse(null);
-            if (program == null) {
-                return;
-            }
+    /**
+     * Programs of the batch that have projects, in one EXISTS query
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> withProjects(Collection<Long> ids) {
+        return ids.isEmpty() ? Set.of() : Set.copyOf(programRepository.findIdsWithProjectsIn(ids));
+    }
 
-            boolean isPortfolioDirector = false;
-            if (program.getPortfolio() != null) {
-                isPortfolioDirector = securityService.isPortfolioDirector(program.getPortfolio().getId());
-            }
+    /**
+     * Projects a cascade delete would remove and members it would unassign,
+     * counted in one statement
+     *
+     * @return The counts, or null if the program does not exist
+     */
+    @Transactional(readOnly = true)
+    public ProgramDependencies getDependencies(Long id) {
+        return getDependencies(List.of(id)).get(id);
+    }
 
-            if (!isPortfolioDirector) {
-                throw new SecurityException(
-                        "Solo los administradores y directores de portfolio pueden eliminar programas");
-            }
+    /**
+     * Dependency counts of a batch of programs in one statement
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, ProgramDependencies> getDependencies(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return programRepository.findDependenciesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProgramDependencies::id, Function.identity()));
+    }
+
+    public void deleteWithCascade(Long id) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        // Admins, or portfolio directors for the programs of their portfolio (PmisPolicies)
+        if (!policyEngine.enforce(PolicyAction.PROGRAM_DELETE, id)) {
+            return;
         }
         userRepository.unassignUsersFromProjectsInProgram(id);
         projectRepository.deleteByProgramId(id);
         programRepository.deleteById(id);
+        directorshipIndex.programRemoved(id);
     }
 }
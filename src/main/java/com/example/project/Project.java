@@ -11,7 +11,8 @@ import jakarta.validation.constraints.*;
 public class Project {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "project_seq")
+    @SequenceGenerator(name = "project_seq", sequenceName = "project_seq", allocationSize = 500)
     @Column(name = "project_id", nullable = false)
     @NotNull
     private Long id;
@@ -0,0 +1,11 @@
+package com.example.project;
+
+/**
+ * Users a delete of the project would unassign
+ */
+public record ProjectDependencies(Long id, long members) {
+
+    public boolean hasAssignedUsers() {
+        return members > 0;
+    }
+}
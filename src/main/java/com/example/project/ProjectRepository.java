@@ -1,10 +1,12 @@
 package com.example.project;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,28 +16,27 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
         @Query("SELECT DISTINCT p FROM Project p LEFT JOIN FETCH p.director LEFT JOIN FETCH p.program LEFT JOIN FETCH p.sponsor")
         List<Project> findAllWithRelations();
 
-        @Query("SELECT DISTINCT p FROM Project p " +
-                        "LEFT JOIN FETCH p.director " +
-                        "LEFT JOIN FETCH p.program prog " +
-                        "LEFT JOIN FETCH prog.portfolio " +
-                        "LEFT JOIN FETCH p.sponsor " +
-                        "WHERE p.id = :id")
-        Optional<Project> findByIdWithRelations(@org.springframework.data.repository.query.Param("id") Long id);
+        @Query("SELECT new com.example.project.ProjectDependencies(p.id, "
+                        + "(SELECT COUNT(u) FROM User u WHERE u.project.id = p.id)) "
+                        + "FROM Project p WHERE p.id IN :ids")
+        List<ProjectDependencies> findDependenciesByIdIn(@Param("ids") Collection<Long> ids);
 
-        long countByProgramId(Long programId);
+        @Query("SELECT p.id FROM Project p WHERE p.id IN :ids "
+                        + "AND EXISTS (SELECT 1 FROM User u WHERE u.project.id = p.id)")
+        List<Long> findIdsWithMembersIn(@Param("ids") Collection<Long> ids);
 
         @org.springframework.data.jpa.repository.Modifying
         @Query("DELETE FROM Project p WHERE p.program.id = :programId")
         void deleteByProgramId(@org.springframework.data.repository.query.Param("programId") Long programId);
 
-        long countByDirectorId(Long directorId);
+        @org.springframework.data.jpa.repository.Modifying
+        @Query("DELETE FROM Project p WHERE p.program.id IN (SELECT prog.id FROM Program prog WHERE prog.portfolio.id = :portfolioId)")
+        void deleteByPortfolioId(@org.springframework.data.repository.query.Param("portfolioId") Long portfolioId);
 
         @org.springframework.data.jpa.repository.Modifying
         @Query("UPDATE Project p SET p.director = null WHERE p.director.id = :directorId")
         void unassignDirector(@org.springframework.data.repository.query.Param("directorId") Long directorId);
 
-        long countBySponsorId(Long sponsorId);
-
         @org.springframework.data.jpa.repository.Modifying
         @Query("UPDATE Project p SET p.sponsor = null WHERE p.sponsor.id = :sponsorId")
         void unassignSponsor(@org.springframework.data.repository.query.Param("sponsorId") Long sponsorId);
@@ -54,4 +55,45 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
                         "WHERE prog.director.id = :programDirectorId")
         List<Project> findAllByProgramDirectorIdWithRelations(@Param("programDirectorId") Long programDirectorId);
 
+        // Listing for Role.USER: projects the user is assigned to, directs or sponsors
+        @Query("SELECT DISTINCT p FROM Project p " +
+                        "LEFT JOIN FETCH p.director " +
+                        "LEFT JOIN FETCH p.program " +
+                        "LEFT JOIN FETCH p.sponsor " +
+                        "WHERE p.director.id = :userId " +
+                        "OR p.sponsor.id = :userId " +
+                        "OR p.id IN (SELECT u.project.id FROM User u WHERE u.id = :userId)")
+        List<Project> findAllVisibleToUserWithRelations(@Param("userId") Long userId);
+
+        @Query("SELECT new com.example.security.DirectorAssignment(p.id, d.id, p.program.id) FROM Project p LEFT JOIN p.director d")
+        List<com.example.security.DirectorAssignment> findAllDirectorAssignments();
+
+        @Query("SELECT new com.example.security.DirectorAssignment(p.id, d.id, p.program.id) FROM Project p LEFT JOIN p.director d WHERE p.id = :id")
+        Optional<com.example.security.DirectorAssignment> findDirectorAssignmentById(@Param("id") Long id);
+
+        // Grid row: joins for the names only, no entity is loaded
+        String ROW = "SELECT new com.example.project.ProjectRow(p.id, p.name, prog.id, prog.name, d.name, s.name) " +
+                        "FROM Project p LEFT JOIN p.program prog LEFT JOIN p.director d LEFT JOIN p.sponsor s ";
+
+        // Keyset pages for the lazy grids: rows after (afterName, afterId) ordered by
+        // name and id; a null afterName starts from the first row
+        @Query(ROW + "WHERE (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+                        "ORDER BY p.name, p.id")
+        List<ProjectRow> findRowPage(@Param("afterName") String afterName, @Param("afterId") Long afterId,
+                        Limit limit);
+
+        @Query(ROW + "WHERE prog.director.id = :programDirectorId " +
+                        "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+                        "ORDER BY p.name, p.id")
+        List<ProjectRow> findRowPageByProgramDirectorId(@Param("programDirectorId") Long programDirectorId,
+                        @Param("afterName") String afterName, @Param("afterId") Long afterId, Limit limit);
+
+        @Query(ROW + "WHERE (d.id = :userId " +
+                        "OR s.id = :userId " +
+                        "OR p.id IN (SELECT u.project.id FROM User u WHERE u.id = :userId)) " +
+                        "AND (:afterName IS NULL OR p.name > :afterName OR (p.name = :afterName AND p.id > :afterId)) " +
+                        "ORDER BY p.name, p.id")
+        List<ProjectRow> findRowPageVisibleToUser(@Param("userId") Long userId,
+                        @Param("afterName") String afterName, @Param("afterId") Long afterId, Limit limit);
+
 }
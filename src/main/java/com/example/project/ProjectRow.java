@@ -0,0 +1,9 @@
+package com.example.project;
+
+/**
+ * Grid row of a project: the displayed columns only, with the names of its
+ * program, director and sponsor instead of the entities
+ */
+public record ProjectRow(Long id, String name, Long programId, String programName, String directorName,
+        String sponsorName) {
+}
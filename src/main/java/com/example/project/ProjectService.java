@@ -1,10 +1,23 @@
 package com.example.project;
 
 import com.example.user.UserRepository;
+import com.example.security.CurrentIdentity;
+import com.example.security.DirectorshipIndex;
 import com.example.security.SecurityService;
+import com.example.security.policy.PolicyAction;
+import com.example.security.policy.PolicyEngine;
+import com.example.security.ratelimit.RateLimitBucket;
+import com.example.security.ratelimit.RateLimiter;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,116 +28,161 @@ public class ProjectService {
     private final ProjectRepository projectRepository;
     private final UserRepository userRepository;
     private final SecurityService securityService;
+    private final DirectorshipIndex directorshipIndex;
+    private final PolicyEngine policyEngine;
+    private final RateLimiter rateLimiter;
 
     public ProjectService(ProjectRepository projectRepository, UserRepository userRepository,
-            SecurityService securityService) {
+            SecurityService securityService, DirectorshipIndex directorshipIndex, PolicyEngine policyEngine, RateLimiter rateLimiter) {
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
         this.securityService = securityService;
+        this.directorshipIndex = directorshipIndex;
+        this.policyEngine = policyEngine;
+        this.rateLimiter = rateLimiter;
     }
 
     public Project createOrUpdate(Project project) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
         if (securityService.isSystemAdmin()) {
-            return projectRepository.save(project);
+            return save(project);
         }
 
         // Only Program Directors can manage Projects
         if (project.getProgram() != null) {
             if (securityService.isProgramDirector(project.getProgram().getId())) {
-                return projectRepository.save(project);
+                return save(project);
             }
         }
 
         // Allow Sponsor to update the project (e.g. assign director)
-        var currentUser = securityService.getCurrentUser();
-        if (currentUser != null && project.getSponsor() != null
-                && project.getSponsor().getId().equals(currentUser.getId())) {
-            return projectRepository.save(project);
+        Long currentUserId = securityService.getCurrentUserId();
+        if (currentUserId != null && project.getSponsor() != null
+                && project.getSponsor().getId().equals(currentUserId)) {
+            return save(project);
         }
 
         throw new SecurityException("No tienes permisos para realizar esta acción");
     }
 
-    public Project get(Long id) {
-        return projectRepository.findByIdWithRelations(id).orElse(null);
+    private Project save(Project project) {
+        Project saved = projectRepository.save(project);
+        directorshipIndex.projectSaved(saved);
+        return saved;
     }
 
-    public void delete(Long id) {
-        // Admins pueden eliminar cualquier proyecto
-        // Managers pueden eliminar proyectos donde son directores del programa O
-        // directores del portfolio
-        // Admins can delete any project
-        // Portfolio Directors can delete projects in their portfolio
-        // Program Directors can delete projects in their program
-        if (!securityService.isAdmin()) {
-            Project project = projectRepository.findById(id).orElse(null);
-            if (project == null)
-                return;
-
-            boolean allowed = false;
+    /**
+     * Project with its director, sponsor, program and portfolio. Only the project
+     * row is queried; the rest comes from the second-level cache once warm.
+     */
+    @Transactional(readOnly = true)
+    public Project get(Long id) {
+        Project project = projectRepository.findById(id).orElse(null);
+        if (project != null) {
+            Hibernate.initialize(project.getDirector());
+            Hibernate.initialize(project.getSponsor());
+            Hibernate.initialize(project.getProgram());
             if (project.getProgram() != null) {
-                if (securityService.isProgramDirector(project.getProgram().getId())) {
-                    allowed = true;
-                }
-            }
-            if (!allowed) {
-                throw new SecurityException(
-                        "Solo los administradores, directores de portfolio y directores de programa pueden eliminar proyectos");
+                Hibernate.initialize(project.getProgram().getPortfolio());
             }
         }
+        return project;
+    }
+
+    public void delete(Long id) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        // Admins, or program directors for the projects of their program (PmisPolicies)
+        if (!policyEngine.enforce(PolicyAction.PROJECT_DELETE, id)) {
+            return;
+        }
         // Smart delete: desasignar todos los usuarios del proyecto antes de eliminarlo
         // para evitar violación de integridad referencial
         userRepository.unassignUsersFromProject(id);
         projectRepository.deleteById(id);
+        directorshipIndex.projectRemoved(id);
     }
 
+    @Transactional(readOnly = true)
     public List<Project> getAll() {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        // Cada rol tiene su propia consulta, que solo devuelve las filas que puede ver
         // Admins ven todos los proyectos
         // Managers solo ven proyectos de programas donde son directores
-        if (securityService.isAdmin()) {
+        // Users solo ven proyectos a los que están asignados, que dirigen o patrocinan
+        // Sin usuario (sistema) se ven todos
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
             return projectRepository.findAllWithRelations();
-        } else if (securityService.isManager()) {
-            return projectRepository.findAllByProgramDirectorIdWithRelations(securityService.getCurrentUser().getId());
         }
-        return projectRepository.findAllWithRelations();
+        return switch (identity.role()) {
+            case ADMIN -> projectRepository.findAllWithRelations();
+            case MANAGER -> projectRepository.findAllByProgramDirectorIdWithRelations(identity.id());
+            case USER -> projectRepository.findAllVisibleToUserWithRelations(identity.id());
+        };
     }
 
+    /**
+     * Grid rows of {@link #getAll()} ordered by name and id, after the given row
+     */
+    @Transactional(readOnly = true)
+    public List<ProjectRow> getPage(String afterName, Long afterId, int limit) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
+            return projectRepository.findRowPage(afterName, afterId, Limit.of(limit));
+        }
+        return switch (identity.role()) {
+            case ADMIN -> projectRepository.findRowPage(afterName, afterId, Limit.of(limit));
+            case MANAGER -> projectRepository.findRowPageByProgramDirectorId(identity.id(), afterName,
+                    afterId, Limit.of(limit));
+            case USER -> projectRepository.findRowPageVisibleToUser(identity.id(), afterName, afterId,
+                    Limit.of(limit));
+        };
+    }
+
+    @Transactional(readOnly = true)
     public List<Project> getByProgramId(Long programId) {
         return projectRepository.findAllByProgramId(programId);
     }
 
+    @Transactional(readOnly = true)
     public List<Project> getByUserId(Long userId) {
         return projectRepository.findAllByUserId(userId);
     }
 
+    @Transactional(readOnly = true)
     public boolean hasAssignedUsers(Long id) {
-        return userRepository.countByProjectId(id) > 0;
+        return !projectRepository.findIdsWithMembersIn(List.of(id)).isEmpty();
+    }
+
+    /**
+     * Projects of the batch that have members, in one EXISTS query
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> withAssignedUsers(Collection<Long> ids) {
+        return ids.isEmpty() ? Set.of() : Set.copyOf(projectRepository.findIdsWithMembersIn(ids));
+    }
+
+    /**
+     * Member counts of a batch of projects in one statement
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, ProjectDependencies> getDependencies(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return projectRepository.findDependenciesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProjectDependencies::id, Function.identity()));
     }
 
     public void deleteSafe(Long id) {
-        // Admins pueden eliminar cualquier proyecto
-        // Managers pueden eliminar proyectos donde son directores del programa O
-        // directores del portfolio
-        // Admins can delete any project
-        // Portfolio Directors can delete projects in their portfolio
-        // Program Directors can delete projects in their program
-        if (!securityService.isAdmin()) {
-            Project project = projectRepository.findById(id).orElse(null);
-            if (project == null)
-                return;
-
-            boolean allowed = false;
-            if (project.getProgram() != null) {
-                if (securityService.isProgramDirector(project.getProgram().getId())) {
-                    allowed = true;
-                }
-            }
-            if (!allowed) {
-                throw new SecurityException(
-                        "Solo los administradores, directores de portfolio y directores de programa pueden eliminar proyectos");
-            }
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        // Admins, or program directors for the projects of their program (PmisPolicies)
+        if (!policyEngine.enforce(PolicyAction.PROJECT_DELETE, id)) {
+            return;
         }
         userRepository.unassignUsersFromProject(id);
         projectRepository.deleteById(id);
+        directorshipIndex.projectRemoved(id);
     }
 }
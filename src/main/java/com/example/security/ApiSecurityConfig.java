@@ -0,0 +1,44 @@
+package com.example.security;
+
+import com.example.apitoken.ApiTokenAuthenticationFilter;
+import com.example.apitoken.ApiTokenService;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+/**
+ * Stateless chain for the service API under {@code /api/**} and the actuator
+ * endpoints under {@code /actuator/**}, evaluated before the Vaadin chain of
+ * {@link SecurityConfig}. Only API tokens are accepted: no login form, no
+ * session, no CSRF and no BCrypt per request. Health is public; the other
+ * actuator endpoints are for ADMIN accounts.
+ */
+@Configuration
+public class ApiSecurityConfig {
+
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http, ApiTokenService apiTokenService)
+            throws Exception {
+        http.securityMatcher("/api/**", "/actuator/**")
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .requestCache(cache -> cache.disable())
+                .securityContext(context -> context.requireExplicitSave(true))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        .anyRequest().authenticated())
+                .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .addFilterBefore(new ApiTokenAuthenticationFilter(apiTokenService),
+                        UsernamePasswordAuthenticationFilter.class);
+        return http.build();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.security;
+
+import com.example.user.Role;
+
+/**
+ * Id and role of the authenticated user, as resolved by
+ * {@link SecurityService#getCurrentIdentity()}
+ */
+public record CurrentIdentity(Long id, Role role) {
+}
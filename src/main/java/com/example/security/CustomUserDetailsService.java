@@ -6,28 +6,35 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.security.core.userdetails.User.UserBuilder;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserVersions userVersions;
+    private final KnownUvusFilter knownUvusFilter;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, UserVersions userVersions,
+            KnownUvusFilter knownUvusFilter) {
         this.userRepository = userRepository;
+        this.userVersions = userVersions;
+        this.knownUvusFilter = knownUvusFilter;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // Unknown UVUS are rejected without querying the database
+        if (!knownUvusFilter.mightExist(username)) {
+            throw new UsernameNotFoundException("User not found: " + username);
+        }
+
         User user = userRepository.findByUvus(username);
         if (user == null) {
+            knownUvusFilter.recordFalsePositive();
             throw new UsernameNotFoundException("User not found: " + username);
         }
 
-        UserBuilder builder = org.springframework.security.core.userdetails.User.withUsername(username);
-        builder.password(user.getPassword());
-        builder.roles(user.getRole().name()); // Assign role (USER, MANAGER, ADMIN)
-
-        return builder.build();
+        // Principal with id, name and role (USER, MANAGER, ADMIN) so later checks need no lookup
+        return PmisUserDetails.of(user, userVersions.current(user.getId()));
     }
 }
@@ -0,0 +1,13 @@
+package com.example.security;
+
+/**
+ * Row used to (re)build the {@link DirectorshipIndex}: an entity, its director
+ * and, for nested entities, the id of the entity it belongs to (the program of a
+ * project, the portfolio of a program or PMO).
+ */
+public record DirectorAssignment(Long entityId, Long directorId, Long parentId) {
+
+    public DirectorAssignment(Long entityId, Long directorId) {
+        this(entityId, directorId, null);
+    }
+}
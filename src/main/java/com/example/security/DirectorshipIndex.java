@@ -0,0 +1,441 @@
+package com.example.security;
+
+import com.example.config.PrimaryReads;
+import com.example.pmo.PMO;
+import com.example.pmo.PMORepository;
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioRepository;
+import com.example.program.Program;
+import com.example.program.ProgramRepository;
+import com.example.project.Project;
+import com.example.project.ProjectRepository;
+import com.example.user.User;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory index of who directs what, so that the {@code is*Director} checks in
+ * {@link SecurityService} are map lookups instead of queries.
+ * <p>
+ * The index is built from the repositories at startup and then kept up to date by
+ * the save, delete and unassign paths of the services. A change is kept with the
+ * transaction that made it, which sees it in its own lookups, and is only applied
+ * to the shared index after that transaction commits: other requests never see a
+ * grant that may still roll back. A change made with no transaction to wait for
+ * marks the index stale, and it is rebuilt on the next read. Reads never lock;
+ * writes (which are rare) are serialized on the index.
+ */
+@Component
+public class DirectorshipIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectorshipIndex.class);
+
+    private final PortfolioRepository portfolioRepository;
+    private final ProgramRepository programRepository;
+    private final ProjectRepository projectRepository;
+    private final PMORepository pmoRepository;
+    private final PrimaryReads primaryReads;
+
+    private final Assignments portfolios = new Assignments();
+    private final Assignments programs = new Assignments();
+    private final Assignments projects = new Assignments();
+    private final Assignments pmos = new Assignments();
+
+    private volatile boolean stale = true;
+
+    public DirectorshipIndex(PortfolioRepository portfolioRepository, ProgramRepository programRepository,
+            ProjectRepository projectRepository, PMORepository pmoRepository, PrimaryReads primaryReads) {
+        this.portfolioRepository = portfolioRepository;
+        this.programRepository = programRepository;
+        this.projectRepository = projectRepository;
+        this.pmoRepository = pmoRepository;
+        this.primaryReads = primaryReads;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Reloads the whole index from the primary database (see {@link PrimaryReads})
+     */
+    public synchronized void rebuild() {
+        // Read in one transaction, and loaded only once every query succeeded
+        List<List<DirectorAssignment>> loaded = primaryReads.read(() -> List.of(
+                portfolioRepository.findAllDirectorAssignments(), programRepository.findAllDirectorAssignments(),
+                projectRepository.findAllDirectorAssignments(), pmoRepository.findAllDirectorAssignments()));
+        portfolios.load(loaded.get(0));
+        programs.load(loaded.get(1));
+        projects.load(loaded.get(2));
+        pmos.load(loaded.get(3));
+        stale = false;
+        log.debug("Directorship index rebuilt: {} portfolios, {} programs, {} projects, {} PMOs",
+                portfolios.size(), programs.size(), projects.size(), pmos.size());
+    }
+
+    // ===== Lookups =====
+
+    public boolean isPortfolioDirector(Long userId, Long portfolioId) {
+        return fresh().portfolios.isDirector(userId, portfolioId, changes().portfolios);
+    }
+
+    public boolean isProgramDirector(Long userId, Long programId) {
+        return fresh().programs.isDirector(userId, programId, changes().programs);
+    }
+
+    public boolean isProjectDirector(Long userId, Long projectId) {
+        return fresh().projects.isDirector(userId, projectId, changes().projects);
+    }
+
+    public boolean isPmoDirector(Long userId, Long pmoId) {
+        return fresh().pmos.isDirector(userId, pmoId, changes().pmos);
+    }
+
+    public Set<Long> portfoliosDirectedBy(Long userId) {
+        return fresh().portfolios.directedBy(userId, changes().portfolios);
+    }
+
+    public Set<Long> programsDirectedBy(Long userId) {
+        return fresh().programs.directedBy(userId, changes().programs);
+    }
+
+    public Set<Long> projectsDirectedBy(Long userId) {
+        return fresh().projects.directedBy(userId, changes().projects);
+    }
+
+    public Set<Long> pmosDirectedBy(Long userId) {
+        return fresh().pmos.directedBy(userId, changes().pmos);
+    }
+
+    /**
+     * @return Id of the portfolio the program belongs to, or null if unknown
+     */
+    public Long portfolioOfProgram(Long programId) {
+        return fresh().programs.parentOf(programId, changes().programs);
+    }
+
+    /**
+     * @return Id of the program the project belongs to, or null if unknown
+     */
+    public Long programOfProject(Long projectId) {
+        return fresh().projects.parentOf(projectId, changes().projects);
+    }
+
+    // ===== Maintenance =====
+
+    public void portfolioSaved(Portfolio portfolio) {
+        Long portfolioId = portfolio.getId();
+        Long directorId = idOf(portfolio.getDirector());
+        change(changes -> portfolios.put(changes.portfolios, portfolioId, directorId, null));
+    }
+
+    /**
+     * Removes the portfolio with its PMOs, programs and their projects
+     */
+    public void portfolioRemoved(Long portfolioId) {
+        change(changes -> {
+            portfolios.remove(changes.portfolios, portfolioId);
+            pmos.removeChildrenOf(changes.pmos, Set.of(portfolioId));
+            projects.removeChildrenOf(changes.projects,
+                    programs.removeChildrenOf(changes.programs, Set.of(portfolioId)));
+        });
+    }
+
+    public void programSaved(Program program) {
+        Long programId = program.getId();
+        Long directorId = idOf(program.getDirector());
+        Long portfolioId = program.getPortfolio() != null ? program.getPortfolio().getId() : null;
+        change(changes -> programs.put(changes.programs, programId, directorId, portfolioId));
+    }
+
+    public void programRemoved(Long programId) {
+        change(changes -> {
+            programs.remove(changes.programs, programId);
+            projects.removeChildrenOf(changes.projects, Set.of(programId));
+        });
+    }
+
+    public void projectSaved(Project project) {
+        Long projectId = project.getId();
+        Long directorId = idOf(project.getDirector());
+        Long programId = project.getProgram() != null ? project.getProgram().getId() : null;
+        change(changes -> projects.put(changes.projects, projectId, directorId, programId));
+    }
+
+    public void projectRemoved(Long projectId) {
+        change(changes -> projects.remove(changes.projects, projectId));
+    }
+
+    public void pmoSaved(PMO pmo) {
+        Long pmoId = pmo.getId();
+        Long directorId = idOf(pmo.getDirector());
+        Long portfolioId = pmo.getPortfolio() != null ? pmo.getPortfolio().getId() : null;
+        change(changes -> pmos.put(changes.pmos, pmoId, directorId, portfolioId));
+    }
+
+    public void pmoRemoved(Long pmoId) {
+        change(changes -> pmos.remove(changes.pmos, pmoId));
+    }
+
+    /**
+     * Mirrors the {@code unassignDirector} bulk updates run when a user is deleted
+     */
+    public void directorRemoved(Long userId) {
+        change(changes -> {
+            portfolios.unassign(changes.portfolios, userId);
+            programs.unassign(changes.programs, userId);
+            projects.unassign(changes.projects, userId);
+            pmos.unassign(changes.pmos, userId);
+        });
+    }
+
+    private DirectorshipIndex fresh() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    rebuild();
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Records a change in the current transaction, to be applied when it
+     * commits. Without a transaction there is no commit to wait for, nor a
+     * rollback to hear about: the index is reloaded from the database instead.
+     */
+    private void change(Consumer<PendingChanges> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stale = true;
+            return;
+        }
+        PendingChanges changes = pending();
+        if (changes == null) {
+            changes = new PendingChanges(this);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        change.accept(changes);
+    }
+
+    /**
+     * @return Changes of the current transaction, or none
+     */
+    private PendingChanges changes() {
+        PendingChanges changes = pending();
+        return changes != null ? changes : PendingChanges.NONE;
+    }
+
+    // Looked up among the synchronizations, not bound as a resource, so a
+    // REQUIRES_NEW transaction keeps its changes apart from the suspended one
+    private PendingChanges pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges changes && changes.index == this) {
+                return changes;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A stale index is left alone: the next read rebuilds it from the database,
+     * committed changes included
+     */
+    private synchronized void apply(PendingChanges changes) {
+        if (stale) {
+            return;
+        }
+        portfolios.apply(changes.portfolios);
+        programs.apply(changes.programs);
+        projects.apply(changes.projects);
+        pmos.apply(changes.pmos);
+    }
+
+    private static Long idOf(User user) {
+        return user != null ? user.getId() : null;
+    }
+
+    /**
+     * Changes of one transaction by entity type: the new assignment of each
+     * entity it touched, or null if it removed the entity
+     */
+    private static final class PendingChanges implements TransactionSynchronization {
+
+        static final PendingChanges NONE = new PendingChanges(null);
+
+        final DirectorshipIndex index;
+        final Map<Long, DirectorAssignment> portfolios = new HashMap<>();
+        final Map<Long, DirectorAssignment> programs = new HashMap<>();
+        final Map<Long, DirectorAssignment> projects = new HashMap<>();
+        final Map<Long, DirectorAssignment> pmos = new HashMap<>();
+
+        PendingChanges(DirectorshipIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public void afterCommit() {
+            index.apply(this);
+        }
+    }
+
+    /**
+     * Director assignments of one entity type, indexed both ways. Lookups and
+     * changes go through the pending changes of a transaction.
+     */
+    private static final class Assignments {
+
+        private volatile Map<Long, DirectorAssignment> byEntity = new ConcurrentHashMap<>();
+        private volatile Map<Long, Set<Long>> byDirector = new ConcurrentHashMap<>();
+
+        boolean isDirector(Long userId, Long entityId, Map<Long, DirectorAssignment> changes) {
+            if (userId == null || entityId == null) {
+                return false;
+            }
+            DirectorAssignment assignment = get(entityId, changes);
+            return assignment != null && userId.equals(assignment.directorId());
+        }
+
+        Set<Long> directedBy(Long userId, Map<Long, DirectorAssignment> changes) {
+            if (userId == null) {
+                return Set.of();
+            }
+            Set<Long> ids = byDirector.getOrDefault(userId, Set.of());
+            if (changes.isEmpty()) {
+                return Collections.unmodifiableSet(ids);
+            }
+            Set<Long> changed = new HashSet<>(ids);
+            changes.forEach((entityId, assignment) -> {
+                if (assignment != null && userId.equals(assignment.directorId())) {
+                    changed.add(entityId);
+                } else {
+                    changed.remove(entityId);
+                }
+            });
+            return Collections.unmodifiableSet(changed);
+        }
+
+        Long parentOf(Long entityId, Map<Long, DirectorAssignment> changes) {
+            DirectorAssignment assignment = entityId != null ? get(entityId, changes) : null;
+            return assignment != null ? assignment.parentId() : null;
+        }
+
+        int size() {
+            return byEntity.size();
+        }
+
+        void put(Map<Long, DirectorAssignment> changes, Long entityId, Long directorId, Long parentId) {
+            changes.put(entityId, new DirectorAssignment(entityId, directorId, parentId));
+        }
+
+        void remove(Map<Long, DirectorAssignment> changes, Long entityId) {
+            changes.put(entityId, null);
+        }
+
+        /**
+         * Removes the entities whose parent is any of the given ids, in one pass
+         *
+         * @return Ids of the removed entities
+         */
+        Set<Long> removeChildrenOf(Map<Long, DirectorAssignment> changes, Set<Long> parentIds) {
+            if (parentIds.isEmpty()) {
+                return Set.of();
+            }
+            Set<Long> removed = new HashSet<>();
+            for (DirectorAssignment assignment : byEntity.values()) {
+                if (!changes.containsKey(assignment.entityId()) && parentIds.contains(assignment.parentId())) {
+                    removed.add(assignment.entityId());
+                }
+            }
+            for (DirectorAssignment assignment : changes.values()) {
+                if (assignment != null && parentIds.contains(assignment.parentId())) {
+                    removed.add(assignment.entityId());
+                }
+            }
+            removed.forEach(entityId -> changes.put(entityId, null));
+            return removed;
+        }
+
+        void unassign(Map<Long, DirectorAssignment> changes, Long directorId) {
+            for (Long entityId : directedBy(directorId, changes)) {
+                put(changes, entityId, null, get(entityId, changes).parentId());
+            }
+        }
+
+        /**
+         * Applies the changes of a committed transaction to the shared maps
+         */
+        void apply(Map<Long, DirectorAssignment> changes) {
+            changes.forEach((entityId, assignment) -> {
+                if (assignment != null) {
+                    put(entityId, assignment.directorId(), assignment.parentId());
+                } else {
+                    remove(entityId);
+                }
+            });
+        }
+
+        /**
+         * Builds the new maps aside and swaps them in, so concurrent readers never
+         * see a half-loaded index
+         */
+        void load(List<DirectorAssignment> assignments) {
+            Assignments loaded = new Assignments();
+            for (DirectorAssignment assignment : assignments) {
+                loaded.put(assignment.entityId(), assignment.directorId(), assignment.parentId());
+            }
+            byDirector = loaded.byDirector;
+            byEntity = loaded.byEntity;
+        }
+
+        private DirectorAssignment get(Long entityId, Map<Long, DirectorAssignment> changes) {
+            return changes.containsKey(entityId) ? changes.get(entityId) : byEntity.get(entityId);
+        }
+
+        private void put(Long entityId, Long directorId, Long parentId) {
+            DirectorAssignment previous = byEntity.put(entityId, new DirectorAssignment(entityId, directorId, parentId));
+            if (previous != null) {
+                unlink(previous.directorId(), entityId);
+            }
+            if (directorId != null) {
+                byDirector.computeIfAbsent(directorId, id -> ConcurrentHashMap.newKeySet()).add(entityId);
+            }
+        }
+
+        private void remove(Long entityId) {
+            DirectorAssignment previous = byEntity.remove(entityId);
+            if (previous != null) {
+                unlink(previous.directorId(), entityId);
+            }
+        }
+
+        private void unlink(Long directorId, Long entityId) {
+            if (directorId == null) {
+                return;
+            }
+            byDirector.computeIfPresent(directorId, (id, ids) -> {
+                ids.remove(entityId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+}
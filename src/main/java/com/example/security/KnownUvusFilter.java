@@ -0,0 +1,293 @@
+package com.example.security;
+
+import com.example.config.PrimaryReads;
+import com.example.user.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Bloom filter of the existing UVUS values, so logins with unknown usernames are
+ * rejected without querying the database.
+ * <p>
+ * The filter may answer "maybe" for a UVUS that does not exist (a false positive,
+ * which just costs the usual query) but never "no" for one that does. Users are
+ * added once their transaction commits; deletions cannot be removed from a Bloom
+ * filter, so they are counted and the filter is rebuilt from the database once
+ * enough of its entries are stale or it grows past its capacity. Until the first
+ * build every UVUS is a "maybe".
+ */
+@Component
+public class KnownUvusFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(KnownUvusFilter.class);
+
+    private final UserRepository userRepository;
+    private final PrimaryReads primaryReads;
+    private final double targetFalsePositiveRate;
+
+    private volatile Bits bits;
+    // UVUS committed while a rebuild is reading the database; null when not rebuilding
+    private List<String> addedDuringRebuild;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public KnownUvusFilter(UserRepository userRepository, PrimaryReads primaryReads,
+            @Value("${pmis.security.uvus-filter.false-positive-rate:0.01}") double targetFalsePositiveRate) {
+        this.userRepository = userRepository;
+        this.primaryReads = primaryReads;
+        this.targetFalsePositiveRate = targetFalsePositiveRate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Reloads the filter from the primary database (see {@link PrimaryReads}),
+     * sized for twice the current number of users
+     */
+    public void rebuild() {
+        synchronized (this) {
+            if (addedDuringRebuild != null) {
+                return; // Another rebuild is already running
+            }
+            addedDuringRebuild = new ArrayList<>();
+        }
+
+        Bits rebuilt;
+        try {
+            List<String> uvusList = primaryReads.read(userRepository::findAllUvus);
+            rebuilt = new Bits(Math.max(1024, uvusList.size() * 2), targetFalsePositiveRate);
+            uvusList.forEach(rebuilt::put);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                addedDuringRebuild = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            addedDuringRebuild.forEach(rebuilt::put);
+            addedDuringRebuild = null;
+            bits = rebuilt;
+        }
+        rebuilds.incrementAndGet();
+        log.debug("UVUS filter rebuilt: {} entries, {} bits", rebuilt.entries(), rebuilt.size());
+    }
+
+    /**
+     * @return false if no user has this UVUS for sure; true if it may exist
+     */
+    public boolean mightExist(String uvus) {
+        Bits current = bits;
+        if (current == null || uvus == null || current.mightContain(uvus)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Records that a UVUS the filter let through was not found in the database
+     */
+    public void recordFalsePositive() {
+        if (bits != null) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Adds the UVUS of a saved user once the surrounding transaction commits
+     */
+    public void userSaved(String uvus) {
+        if (uvus == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(uvus);
+                }
+            });
+        } else {
+            add(uvus);
+        }
+    }
+
+    /**
+     * Counts a deleted user as a stale entry; rebuilds when too many accumulate
+     */
+    public void userRemoved() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markStale();
+                }
+            });
+        } else {
+            markStale();
+        }
+    }
+
+    private void add(String uvus) {
+        boolean full;
+        synchronized (this) {
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(uvus);
+            }
+            Bits current = bits;
+            if (current == null) {
+                return;
+            }
+            current.put(uvus);
+            full = current.entries() > current.capacity();
+        }
+        if (full) {
+            rebuild();
+        }
+    }
+
+    private void markStale() {
+        Bits current = bits;
+        if (current != null && current.markStale() > Math.max(64, current.entries() / 4)) {
+            rebuild();
+        }
+    }
+
+    // ===== Metrics =====
+
+    /**
+     * @return False positive rate the filter should have with its current entries
+     */
+    public double getExpectedFalsePositiveRate() {
+        Bits current = bits;
+        return current != null ? current.expectedFalsePositiveRate() : 1.0;
+    }
+
+    /**
+     * @return Share of unknown UVUS that got through the filter and hit the
+     *         database
+     */
+    public double getObservedFalsePositiveRate() {
+        long passed = falsePositives.sum();
+        long total = passed + rejected.sum();
+        return total == 0 ? 0 : (double) passed / total;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    public long getRebuildCount() {
+        return rebuilds.get();
+    }
+
+    /**
+     * Fixed-size bit set with k probes derived from two 64-bit hashes
+     */
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+        private final int capacity;
+        private final AtomicLong entries = new AtomicLong();
+        private final AtomicLong stale = new AtomicLong();
+
+        Bits(int capacity, double falsePositiveRate) {
+            // m = -n ln p / (ln 2)^2, k = m/n ln 2
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+            this.size = words.length() * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        void put(String value) {
+            long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+            long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, size);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+            }
+            entries.incrementAndGet();
+        }
+
+        boolean mightContain(String value) {
+            long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+            long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long markStale() {
+            return stale.incrementAndGet();
+        }
+
+        long entries() {
+            return entries.get();
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        long size() {
+            return size;
+        }
+
+        double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashes * entries.get() / size), hashes);
+        }
+
+        /**
+         * FNV-1a over the UTF-8 bytes followed by a 64-bit finalizer
+         */
+        private static long hash(String value, long seed) {
+            long h = 0xCBF29CE484222325L ^ seed;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b;
+                h *= 0x100000001B3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
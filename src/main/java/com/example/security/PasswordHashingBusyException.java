@@ -0,0 +1,16 @@
+package com.example.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when the password hashing pool is saturated. It is an authentication
+ * exception so a login attempt fails like any other and the user can retry.
+ */
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException() {
+        super("El servidor está ocupado, inténtalo de nuevo en unos segundos");
+    }
+}
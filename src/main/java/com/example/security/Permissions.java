@@ -0,0 +1,72 @@
+package com.example.security;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Permissions of the current user over a batch of entities, as a bitmap per id.
+ * Built once per grid refresh by {@link SecurityService} so the per-row edit and
+ * delete columns are plain lookups.
+ */
+public final class Permissions {
+
+    public static final int EDIT = 1;
+    public static final int DELETE = 1 << 1;
+
+    private static final Permissions NONE = new Permissions(Map.of());
+
+    // Only ids with at least one permission are stored
+    private final Map<Long, Integer> bits;
+
+    private Permissions(Map<Long, Integer> bits) {
+        this.bits = bits;
+    }
+
+    public static Permissions none() {
+        return NONE;
+    }
+
+    public boolean has(Long id, int permission) {
+        Integer granted = id != null ? bits.get(id) : null;
+        return granted != null && (granted & permission) == permission;
+    }
+
+    public boolean canEdit(Long id) {
+        return has(id, EDIT);
+    }
+
+    public boolean canDelete(Long id) {
+        return has(id, DELETE);
+    }
+
+    /**
+     * Permissions of both batches, for grids that load their rows page by page
+     */
+    public Permissions plus(Permissions other) {
+        if (other.bits.isEmpty()) {
+            return this;
+        }
+        if (bits.isEmpty()) {
+            return other;
+        }
+        Map<Long, Integer> merged = new HashMap<>(bits);
+        other.bits.forEach((id, granted) -> merged.merge(id, granted, (a, b) -> a | b));
+        return new Permissions(merged);
+    }
+
+    static final class Builder {
+
+        private final Map<Long, Integer> bits = new HashMap<>();
+
+        Builder grant(Long id, int permissions) {
+            if (id != null && permissions != 0) {
+                bits.merge(id, permissions, (a, b) -> a | b);
+            }
+            return this;
+        }
+
+        Permissions build() {
+            return bits.isEmpty() ? NONE : new Permissions(bits);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.security;
+
+import com.example.user.Role;
+import com.example.user.User;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Authenticated principal. Besides the credentials it carries the identity the
+ * application needs on every request (id, name, role), so views and services can
+ * read it from the security context instead of reloading the user by UVUS.
+ * <p>
+ * The {@link #getVersion() version} is the {@link UserVersions} stamp of the user
+ * row the snapshot was taken from. {@link SecurityService} compares it with the
+ * current stamp and refreshes the snapshot when the row has changed.
+ */
+public class PmisUserDetails implements UserDetails, CredentialsContainer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private volatile Snapshot snapshot;
+    private String password;
+
+    private PmisUserDetails(Long id, Snapshot snapshot, String password) {
+        this.id = id;
+        this.snapshot = snapshot;
+        this.password = password;
+    }
+
+    public static PmisUserDetails of(User user, long version) {
+        return new PmisUserDetails(user.getId(), Snapshot.of(user, version), user.getPassword());
+    }
+
+    /**
+     * Replaces the identity snapshot with the current state of the user row
+     */
+    void refresh(User user, long version) {
+        this.snapshot = Snapshot.of(user, version);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return snapshot.name();
+    }
+
+    public Role getRole() {
+        return snapshot.role();
+    }
+
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    @Override
+    public String getUsername() {
+        return snapshot.uvus();
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + snapshot.role().name()));
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PmisUserDetails))
+            return false;
+        return id.equals(((PmisUserDetails) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PmisUserDetails[id=" + id + ", uvus=" + getUsername() + ", role=" + getRole() + "]";
+    }
+
+    private record Snapshot(String uvus, String name, Role role, long version) implements java.io.Serializable {
+
+        static Snapshot of(User user, long version) {
+            return new Snapshot(user.getUvus(), user.getName(), user.getRole(), version);
+        }
+    }
+}
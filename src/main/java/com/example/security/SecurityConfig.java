@@ -1,21 +1,34 @@
 package com.example.security;
 
 import com.example.examplefeature.ui.LoginView;
+import com.example.security.ratelimit.LoginRateLimitFilter;
+import com.example.security.ratelimit.RateLimiter;
 import com.vaadin.flow.spring.security.VaadinWebSecurity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 @EnableWebSecurity
 @Configuration
 public class SecurityConfig extends VaadinWebSecurity {
 
+    private final RateLimiter rateLimiter;
+
+    public SecurityConfig(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
+        // Throttle login attempts before they reach the password check
+        http.addFilterBefore(new LoginRateLimitFilter(rateLimiter, "/login"),
+                UsernamePasswordAuthenticationFilter.class);
+
         http.authorizeHttpRequests(
                 auth -> auth.requestMatchers(new AntPathRequestMatcher("/images/*.png")).permitAll());
 
@@ -28,8 +41,18 @@ public class SecurityConfig extends VaadinWebSecurity {
         setLoginView(http, LoginView.class);
     }
 
+    /**
+     * BCrypt on a bounded pool, shared by login verification and by every place
+     * that encodes a new password
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${pmis.security.password-hashing.threads:0}") int threads,
+            @Value("${pmis.security.password-hashing.queue-capacity:64}") int queueCapacity) {
+        if (threads <= 0) {
+            // Leave at least half of the cores to the rest of the application
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity);
     }
 }
@@ -3,33 +3,115 @@ package com.example.security;
 import com.example.user.Role;
 import com.example.user.User;
 import com.example.user.UserRepository;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Service
 public class SecurityService {
 
+    private static final String CURRENT_USER_ATTRIBUTE = SecurityService.class.getName() + ".CURRENT_USER";
+
     private final UserRepository userRepository;
-    private final com.example.portfolio.PortfolioRepository portfolioRepository;
-    private final com.example.program.ProgramRepository programRepository;
-    private final com.example.project.ProjectRepository projectRepository;
-    private final com.example.pmo.PMORepository pmoRepository;
-
-    public SecurityService(UserRepository userRepository,
-            com.example.portfolio.PortfolioRepository portfolioRepository,
-            com.example.program.ProgramRepository programRepository,
-            com.example.project.ProjectRepository projectRepository,
-            com.example.pmo.PMORepository pmoRepository) {
+    private final DirectorshipIndex directorshipIndex;
+    private final UserVersions userVersions;
+
+    private final LongAdder currentUserLookups = new LongAdder();
+    private final LongAdder savedCurrentUserLookups = new LongAdder();
+
+    public SecurityService(UserRepository userRepository, DirectorshipIndex directorshipIndex,
+            UserVersions userVersions) {
         this.userRepository = userRepository;
-        this.portfolioRepository = portfolioRepository;
-        this.programRepository = programRepository;
-        this.projectRepository = projectRepository;
-        this.pmoRepository = pmoRepository;
+        this.directorshipIndex = directorshipIndex;
+        this.userVersions = userVersions;
+    }
+
+    /**
+     * Gets the principal of the current interactive login. If the user row has
+     * changed since the principal was built, the principal is refreshed first
+     * (one lookup by id) and the authentication is replaced so its authorities
+     * follow a role change.
+     *
+     * @return Current principal, or null if not authenticated through the login
+     *         form or if the user no longer exists
+     */
+    public PmisUserDetails getCurrentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof PmisUserDetails principal)) {
+            return null;
+        }
+
+        long version = userVersions.current(principal.getId());
+        if (principal.getVersion() != version) {
+            User user = userRepository.findById(principal.getId()).orElse(null);
+            if (user == null) {
+                return null;
+            }
+            principal.refresh(user, version);
+            if (!authentication.getAuthorities().equals(principal.getAuthorities())) {
+                UsernamePasswordAuthenticationToken refreshed = UsernamePasswordAuthenticationToken
+                        .authenticated(principal, null, principal.getAuthorities());
+                refreshed.setDetails(authentication.getDetails());
+                SecurityContextHolder.getContext().setAuthentication(refreshed);
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Gets the id of the currently authenticated user, from the principal when
+     * available
+     *
+     * @return Current user id or null if not authenticated
+     */
+    public Long getCurrentUserId() {
+        CurrentIdentity identity = getCurrentIdentity();
+        return identity != null ? identity.id() : null;
+    }
+
+    /**
+     * Gets the role of the currently authenticated user, from the principal when
+     * available
+     *
+     * @return Current user role or null if not authenticated
+     */
+    public Role getCurrentRole() {
+        CurrentIdentity identity = getCurrentIdentity();
+        return identity != null ? identity.role() : null;
+    }
+
+    /**
+     * Identity of the current user. Form logins carry it in their principal;
+     * other authentications (tests, programmatic logins) fall back to the
+     * memoized user row.
+     *
+     * @return Current user id and role, or null if not authenticated
+     */
+    public CurrentIdentity getCurrentIdentity() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof PmisUserDetails) {
+            PmisUserDetails principal = getCurrentPrincipal();
+            return principal != null ? new CurrentIdentity(principal.getId(), principal.getRole()) : null;
+        }
+        User currentUser = getCurrentUser();
+        return currentUser != null ? new CurrentIdentity(currentUser.getId(), currentUser.getRole()) : null;
     }
 
     /**
      * Gets the currently authenticated user
+     * <p>
+     * The user is resolved at most once per HTTP request and kept as a request
+     * attribute. Vaadin UI round trips are plain servlet requests as well, so every
+     * permission check made while handling one of them shares the same lookup.
+     * Outside a request (startup, background threads) the user is always read
+     * from the repository.
      * 
      * @return Current user or null if not authenticated
      */
@@ -41,7 +123,58 @@ public class SecurityService {
         }
 
         String uvus = authentication.getName();
-        return userRepository.findByUvus(uvus);
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            currentUserLookups.increment();
+            return userRepository.findByUvus(uvus);
+        }
+
+        CurrentUserMemo memo = (CurrentUserMemo) requestAttributes.getAttribute(CURRENT_USER_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (memo != null && memo.uvus().equals(uvus)) {
+            savedCurrentUserLookups.increment();
+            return memo.user();
+        }
+
+        currentUserLookups.increment();
+        User user = userRepository.findByUvus(uvus);
+        requestAttributes.setAttribute(CURRENT_USER_ATTRIBUTE, new CurrentUserMemo(uvus, user),
+                RequestAttributes.SCOPE_REQUEST);
+        return user;
+    }
+
+    /**
+     * Bumps the version stamp of the user, so principals built from the old row
+     * are refreshed, and drops the memoized current user of this request if it
+     * refers to that user. Must be called whenever a user is saved or deleted.
+     */
+    public void onUserChanged(Long userId) {
+        userVersions.bump(userId);
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return;
+        }
+        CurrentUserMemo memo = (CurrentUserMemo) requestAttributes.getAttribute(CURRENT_USER_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        // A memoized "not found" may be the user that has just been created
+        if (memo != null && (memo.user() == null || memo.user().getId().equals(userId))) {
+            requestAttributes.removeAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * Number of times the current user had to be read from the database
+     */
+    public long getCurrentUserLookupCount() {
+        return currentUserLookups.sum();
+    }
+
+    /**
+     * Number of current user lookups answered by the per-request memo instead of
+     * a query
+     */
+    public long getSavedCurrentUserLookupCount() {
+        return savedCurrentUserLookups.sum();
     }
 
     /**
@@ -57,112 +190,152 @@ public class SecurityService {
      * Checks if the current user has ADMIN role (Business Admin)
      */
     public boolean isAdmin() {
-        User currentUser = getCurrentUser();
-        return currentUser != null && currentUser.getRole() == Role.ADMIN;
+        return getCurrentRole() == Role.ADMIN;
     }
 
     /**
      * Checks if the current user has MANAGER role
      */
     public boolean isManager() {
-        User currentUser = getCurrentUser();
-        return currentUser != null && currentUser.getRole() == Role.MANAGER;
+        return getCurrentRole() == Role.MANAGER;
     }
 
     /**
      * Checks if the current user has ADMIN or MANAGER role
      */
     public boolean isAdminOrManager() {
-        User currentUser = getCurrentUser();
-        return currentUser != null &&
-                (currentUser.getRole() == Role.ADMIN || currentUser.getRole() == Role.MANAGER);
+        Role role = getCurrentRole();
+        return role == Role.ADMIN || role == Role.MANAGER;
     }
 
     /**
      * Checks if the current user is the same as the given user ID
      */
     public boolean isCurrentUser(Long userId) {
-        User currentUser = getCurrentUser();
-        return currentUser != null && currentUser.getId().equals(userId);
+        Long currentUserId = getCurrentUserId();
+        return currentUserId != null && currentUserId.equals(userId);
     }
 
     /**
-     * Checks if deletion is allowed for the given user
-     * - Cannot delete yourself
-     * - Only admins can delete managers or admins
-     * - Cannot delete any admin
+     * Checks if the current user can modify (create/edit) managers or admins
+     * Only admins can do this
      */
-    public boolean canDeleteUser(Long userId) {
-        if (isSystemAdmin()) {
-            return true;
-        }
-
-        User currentUser = getCurrentUser();
-        if (currentUser == null) {
-            return false;
-        }
-
-        // Cannot delete yourself
-        if (currentUser.getId().equals(userId)) {
-            return false;
-        }
-
-        User targetUser = userRepository.findById(userId).orElse(null);
-        if (targetUser == null) {
-            return false;
-        }
-
-        // Cannot delete an admin under any circumstances
-        if (targetUser.getRole() == Role.ADMIN) {
-            return false;
-        }
+    public boolean canModifyManagerOrAdmin() {
+        return isAdmin();
+    }
 
-        // Only admins can delete managers
-        if (targetUser.getRole() == Role.MANAGER) {
-            return currentUser.getRole() == Role.ADMIN;
-        }
+    // The is*Director checks are answered by the DirectorshipIndex, without queries
 
-        // Admins and Managers can delete regular users
-        return currentUser.getRole() == Role.ADMIN || currentUser.getRole() == Role.MANAGER;
+    public boolean isPmoDirector() {
+        Long currentUserId = getCurrentUserId();
+        return currentUserId != null && !directorshipIndex.pmosDirectedBy(currentUserId).isEmpty();
     }
 
     /**
-     * Checks if the current user can modify (create/edit) managers or admins
-     * Only admins can do this
+     * Checks if the current user directs at least one portfolio
      */
-    public boolean canModifyManagerOrAdmin() {
-        return isAdmin();
+    public boolean directsAnyPortfolio() {
+        Long currentUserId = getCurrentUserId();
+        return currentUserId != null && !directorshipIndex.portfoliosDirectedBy(currentUserId).isEmpty();
     }
 
-    public boolean isPmoDirector() {
-        User currentUser = getCurrentUser();
-        return currentUser != null && pmoRepository.countByDirectorId(currentUser.getId()) > 0;
+    /**
+     * Checks if the current user directs at least one program
+     */
+    public boolean directsAnyProgram() {
+        Long currentUserId = getCurrentUserId();
+        return currentUserId != null && !directorshipIndex.programsDirectedBy(currentUserId).isEmpty();
     }
 
     public boolean isPortfolioDirector(Long portfolioId) {
-        User currentUser = getCurrentUser();
-        if (currentUser == null || portfolioId == null)
+        Long currentUserId = getCurrentUserId();
+        if (currentUserId == null || portfolioId == null)
             return false;
-        return portfolioRepository.findById(portfolioId)
-                .map(p -> p.getDirector() != null && p.getDirector().getId().equals(currentUser.getId()))
-                .orElse(false);
+        return directorshipIndex.isPortfolioDirector(currentUserId, portfolioId);
     }
 
     public boolean isProgramDirector(Long programId) {
-        User currentUser = getCurrentUser();
-        if (currentUser == null || programId == null)
+        Long currentUserId = getCurrentUserId();
+        if (currentUserId == null || programId == null)
             return false;
-        return programRepository.findById(programId)
-                .map(p -> p.getDirector() != null && p.getDirector().getId().equals(currentUser.getId()))
-                .orElse(false);
+        return directorshipIndex.isProgramDirector(currentUserId, programId);
     }
 
     public boolean isProjectDirector(Long projectId) {
-        User currentUser = getCurrentUser();
-        if (currentUser == null || projectId == null)
+        Long currentUserId = getCurrentUserId();
+        if (currentUserId == null || projectId == null)
             return false;
-        return projectRepository.findById(projectId)
-                .map(p -> (p.getDirector() != null && p.getDirector().getId().equals(currentUser.getId())))
-                .orElse(false);
+        return directorshipIndex.isProjectDirector(currentUserId, projectId);
+    }
+
+    // ===== Batch permissions for grids =====
+
+    /**
+     * Edit and delete permissions over a batch of portfolios: admins may edit and
+     * delete any portfolio, directors may edit their own
+     */
+    public Permissions permissionsForPortfolios(Collection<Long> portfolioIds) {
+        CurrentIdentity identity = getCurrentIdentity();
+        if (identity == null) {
+            return Permissions.none();
+        }
+        Permissions.Builder permissions = new Permissions.Builder();
+        boolean admin = identity.role() == Role.ADMIN;
+        for (Long portfolioId : portfolioIds) {
+            if (admin) {
+                permissions.grant(portfolioId, Permissions.EDIT | Permissions.DELETE);
+            } else if (directorshipIndex.isPortfolioDirector(identity.id(), portfolioId)) {
+                permissions.grant(portfolioId, Permissions.EDIT);
+            }
+        }
+        return permissions.build();
+    }
+
+    /**
+     * Edit and delete permissions over a batch of programs: granted to the
+     * director of the portfolio each program belongs to
+     */
+    public Permissions permissionsForPrograms(Collection<Long> programIds) {
+        Long currentUserId = getCurrentUserId();
+        if (currentUserId == null) {
+            return Permissions.none();
+        }
+        Set<Long> portfolios = directorshipIndex.portfoliosDirectedBy(currentUserId);
+        Permissions.Builder permissions = new Permissions.Builder();
+        if (!portfolios.isEmpty()) {
+            for (Long programId : programIds) {
+                // Unknown to the index (e.g. not committed yet): no permission
+                Long portfolioId = directorshipIndex.portfolioOfProgram(programId);
+                if (portfolioId != null && portfolios.contains(portfolioId)) {
+                    permissions.grant(programId, Permissions.EDIT | Permissions.DELETE);
+                }
+            }
+        }
+        return permissions.build();
+    }
+
+    /**
+     * Edit and delete permissions over a batch of projects: granted to the
+     * director of the program each project belongs to
+     */
+    public Permissions permissionsForProjects(Collection<Long> projectIds) {
+        Long currentUserId = getCurrentUserId();
+        if (currentUserId == null) {
+            return Permissions.none();
+        }
+        Set<Long> programs = directorshipIndex.programsDirectedBy(currentUserId);
+        Permissions.Builder permissions = new Permissions.Builder();
+        if (!programs.isEmpty()) {
+            for (Long projectId : projectIds) {
+                Long programId = directorshipIndex.programOfProject(projectId);
+                if (programId != null && programs.contains(programId)) {
+                    permissions.grant(projectId, Permissions.EDIT | Permissions.DELETE);
+                }
+            }
+        }
+        return permissions.build();
+    }
+
+    private record CurrentUserMemo(String uvus, User user) {
     }
 }
@@ -0,0 +1,29 @@
+package com.example.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Version stamps of user rows, bumped whenever a user is saved or deleted.
+ * Authenticated principals remember the stamp they were built with, which tells
+ * {@link SecurityService} whether a principal still reflects its user row.
+ */
+@Component
+public class UserVersions {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public long current(Long userId) {
+        return userId != null ? versions.getOrDefault(userId, 0L) : 0L;
+    }
+
+    public void bump(Long userId) {
+        if (userId != null) {
+            versions.put(userId, clock.incrementAndGet());
+        }
+    }
+}
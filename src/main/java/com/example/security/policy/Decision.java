@@ -0,0 +1,26 @@
+package com.example.security.policy;
+
+import java.util.List;
+
+/**
+ * Outcome of a policy evaluation: the effect, the rule that produced it and the
+ * reason shown to the user when denied. The trace lists every rule evaluated
+ * and is only filled in trace mode.
+ */
+public record Decision(Effect effect, String rule, String reason, List<String> trace) {
+
+    public enum Effect {
+        PERMIT,
+        DENY,
+        /** The resource does not exist; callers treat the action as a no-op */
+        NOT_FOUND
+    }
+
+    public boolean isPermitted() {
+        return effect == Effect.PERMIT;
+    }
+
+    Decision withTrace(List<String> trace) {
+        return new Decision(effect, rule, reason, List.copyOf(trace));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.security.policy;
+
+import com.example.user.Role;
+
+import java.util.List;
+
+/**
+ * Rule sets of the application, one per {@link PolicyAction}
+ */
+final class PmisPolicies {
+
+    private static final String CANNOT_DELETE_USER = "No tiene permisos para eliminar este usuario";
+
+    private PmisPolicies() {
+    }
+
+    static List<Policy> all() {
+        return List.of(projectDelete(), programDelete(), userDelete());
+    }
+
+    // Admins can delete any project; program directors the projects of their program
+    static Policy projectDelete() {
+        return Policy.forAction(PolicyAction.PROJECT_DELETE)
+                .permitIf("admin", c -> c.role() == Role.ADMIN)
+                .notFoundIf("missing", c -> !c.resource().exists())
+                .permitIf("program-director", c -> c.directsProgram(c.resource().parentId()))
+                .denyOtherwise(
+                        "Solo los administradores, directores de portfolio y directores de programa pueden eliminar proyectos");
+    }
+
+    // Admins can delete any program; portfolio directors the programs of their portfolio
+    static Policy programDelete() {
+        return Policy.forAction(PolicyAction.PROGRAM_DELETE)
+                .permitIf("admin", c -> c.role() == Role.ADMIN)
+                .notFoundIf("missing", c -> !c.resource().exists())
+                .permitIf("portfolio-director", c -> c.directsPortfolio(c.resource().parentId()))
+                .denyOtherwise("Solo los administradores y directores de portfolio pueden eliminar programas");
+    }
+
+    // Nobody deletes an admin or themselves; admins delete managers and users,
+    // managers and PMO directors delete users
+    static Policy userDelete() {
+        return Policy.forAction(PolicyAction.USER_DELETE)
+                .denyIf("anonymous", c -> !c.isSystemAdmin() && !c.isAuthenticated(), CANNOT_DELETE_USER)
+                .denyIf("unknown-target", c -> !c.isSystemAdmin() && !c.resource().exists(), CANNOT_DELETE_USER)
+                .notFoundIf("missing", c -> !c.resource().exists())
+                .denyIf("admin-target", c -> c.resource().role() == Role.ADMIN,
+                        "No se puede eliminar un usuario con rol ADMIN")
+                .permitIf("system-admin", PolicyContext::isSystemAdmin)
+                .denyIf("self", PolicyContext::isSelf, "No puede eliminarse a sí mismo")
+                .permitIf("admin", c -> c.role() == Role.ADMIN)
+                .permitIf("manager-deletes-user", c -> c.role() == Role.MANAGER && c.resource().role() == Role.USER)
+                .permitIf("pmo-director-deletes-user",
+                        c -> c.resource().role() == Role.USER && c.directsAnyPmo())
+                .denyOtherwise(CANNOT_DELETE_USER);
+    }
+}
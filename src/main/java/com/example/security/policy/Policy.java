@@ -0,0 +1,105 @@
+package com.example.security.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Ordered rule set for one {@link PolicyAction}. Rules are evaluated top to
+ * bottom and the first one whose condition holds decides; if none holds, the
+ * default decision applies.
+ *
+ * <pre>
+ * Policy.forAction(PolicyAction.PROGRAM_DELETE)
+ *         .permitIf("admin", c -&gt; c.role() == Role.ADMIN)
+ *         .notFoundIf("missing", c -&gt; !c.resource().exists())
+ *         .permitIf("portfolio-director", c -&gt; c.directsPortfolio(c.resource().parentId()))
+ *         .denyOtherwise("...");
+ * </pre>
+ */
+public final class Policy {
+
+    private final PolicyAction action;
+    private final List<Rule> rules = new ArrayList<>();
+    private Decision otherwise;
+
+    private Policy(PolicyAction action) {
+        this.action = action;
+    }
+
+    public static Policy forAction(PolicyAction action) {
+        return new Policy(action);
+    }
+
+    public PolicyAction action() {
+        return action;
+    }
+
+    public Policy permitIf(String name, Predicate<PolicyContext> condition) {
+        return add(name, condition, new Decision(Decision.Effect.PERMIT, name, null, List.of()));
+    }
+
+    public Policy denyIf(String name, Predicate<PolicyContext> condition, String reason) {
+        return add(name, condition, new Decision(Decision.Effect.DENY, name, reason, List.of()));
+    }
+
+    public Policy notFoundIf(String name, Predicate<PolicyContext> condition) {
+        return add(name, condition, new Decision(Decision.Effect.NOT_FOUND, name, null, List.of()));
+    }
+
+    public Policy denyOtherwise(String reason) {
+        this.otherwise = new Decision(Decision.Effect.DENY, "default", reason, List.of());
+        return this;
+    }
+
+    private Policy add(String name, Predicate<PolicyContext> condition, Decision decision) {
+        rules.add(new Rule(name, condition, decision));
+        return this;
+    }
+
+    /**
+     * Folds the rules into a single decision function. Decisions are built once
+     * here, so evaluating the policy allocates nothing.
+     */
+    Function<PolicyContext, Decision> compile() {
+        Decision fallback = requireDefault();
+        Function<PolicyContext, Decision> compiled = context -> fallback;
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            Function<PolicyContext, Decision> next = compiled;
+            compiled = context -> rule.condition().test(context) ? rule.decision() : next.apply(context);
+        }
+        return compiled;
+    }
+
+    /**
+     * Same as {@link #compile()} but records every rule evaluated, for debugging
+     */
+    Function<PolicyContext, Decision> compileTracing() {
+        Decision fallback = requireDefault();
+        List<Rule> ordered = List.copyOf(rules);
+        return context -> {
+            List<String> trace = new ArrayList<>();
+            for (Rule rule : ordered) {
+                boolean matched = rule.condition().test(context);
+                trace.add(rule.name() + (matched ? " -> " + rule.decision().effect() : " -> no match"));
+                if (matched) {
+                    return rule.decision().withTrace(trace);
+                }
+            }
+            trace.add("default -> " + fallback.effect());
+            return fallback.withTrace(trace);
+        };
+    }
+
+    private Decision requireDefault() {
+        if (otherwise == null) {
+            throw new IllegalStateException("Policy for " + action + " has no default decision");
+        }
+        return otherwise;
+    }
+
+    private record Rule(String name, Predicate<PolicyContext> condition, Decision decision) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.security.policy;
+
+/**
+ * Actions guarded by the {@link PolicyEngine}. The resource id passed along
+ * with the action identifies the entity it applies to.
+ */
+public enum PolicyAction {
+    PROJECT_DELETE,
+    PROGRAM_DELETE,
+    USER_DELETE
+}
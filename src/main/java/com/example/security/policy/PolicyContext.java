@@ -0,0 +1,93 @@
+package com.example.security.policy;
+
+import com.example.security.DirectorshipIndex;
+import com.example.user.Role;
+
+import java.util.function.Function;
+
+/**
+ * Attributes a policy decides on. Subject attributes come from the principal and
+ * the {@link DirectorshipIndex}; resource attributes are fetched with a single
+ * query the first time a rule needs them, and only then.
+ */
+public final class PolicyContext {
+
+    private final Long userId;
+    private final Role role;
+    private final boolean systemAdmin;
+    private final Long resourceId;
+    private final DirectorshipIndex directorshipIndex;
+    private final Function<Long, Resource> resourceLoader;
+    private Resource resource;
+
+    PolicyContext(Long userId, Role role, boolean systemAdmin, Long resourceId,
+            DirectorshipIndex directorshipIndex, Function<Long, Resource> resourceLoader) {
+        this.userId = userId;
+        this.role = role;
+        this.systemAdmin = systemAdmin;
+        this.resourceId = resourceId;
+        this.directorshipIndex = directorshipIndex;
+        this.resourceLoader = resourceLoader;
+    }
+
+    public Long userId() {
+        return userId;
+    }
+
+    public Role role() {
+        return role;
+    }
+
+    public boolean isAuthenticated() {
+        return userId != null;
+    }
+
+    public boolean isSystemAdmin() {
+        return systemAdmin;
+    }
+
+    public Long resourceId() {
+        return resourceId;
+    }
+
+    public boolean isSelf() {
+        return userId != null && userId.equals(resourceId);
+    }
+
+    public Resource resource() {
+        if (resource == null) {
+            resource = resourceLoader.apply(resourceId);
+        }
+        return resource;
+    }
+
+    public boolean directsPortfolio(Long portfolioId) {
+        return userId != null && directorshipIndex.isPortfolioDirector(userId, portfolioId);
+    }
+
+    public boolean directsProgram(Long programId) {
+        return userId != null && directorshipIndex.isProgramDirector(userId, programId);
+    }
+
+    public boolean directsAnyPmo() {
+        return userId != null && !directorshipIndex.pmosDirectedBy(userId).isEmpty();
+    }
+
+    /**
+     * Attributes of the target entity: whether it exists, the id of the entity
+     * it belongs to (program of a project, portfolio of a program) and, for
+     * users, their role
+     */
+    public record Resource(boolean exists, Long parentId, Role role) {
+
+        public static final Resource MISSING = new Resource(false, null, null);
+
+        public static Resource child(Long parentId) {
+            return new Resource(true, parentId, null);
+        }
+
+        public static Resource user(Role role) {
+            return new Resource(true, null, role);
+        }
+    }
+}
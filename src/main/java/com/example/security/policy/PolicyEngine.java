@@ -0,0 +1,124 @@
+package com.example.security.policy;
+
+import com.example.program.ProgramRepository;
+import com.example.project.ProjectRepository;
+import com.example.security.CurrentIdentity;
+import com.example.security.DirectorAssignment;
+import com.example.security.DirectorshipIndex;
+import com.example.security.SecurityService;
+import com.example.user.UserRepository;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides the actions in {@link PolicyAction} from the rule sets in
+ * {@link PmisPolicies}, compiled once at startup.
+ * <p>
+ * With {@code pmis.security.policy.trace=true} (or the logger of this class at
+ * DEBUG) every decision records the rules it went through and is logged.
+ */
+@Component
+public class PolicyEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PolicyEngine.class);
+
+    private final SecurityService securityService;
+    private final DirectorshipIndex directorshipIndex;
+
+    private final Map<PolicyAction, Function<PolicyContext, Decision>> policies = new EnumMap<>(PolicyAction.class);
+    private final Map<PolicyAction, Function<PolicyContext, Decision>> tracingPolicies = new EnumMap<>(
+            PolicyAction.class);
+    private final Map<PolicyAction, Function<Long, PolicyContext.Resource>> resourceLoaders = new EnumMap<>(
+            PolicyAction.class);
+    private final boolean trace;
+
+    public PolicyEngine(SecurityService securityService, DirectorshipIndex directorshipIndex,
+            ProjectRepository projectRepository, ProgramRepository programRepository, UserRepository userRepository,
+            @Value("${pmis.security.policy.trace:false}") boolean trace) {
+        this.securityService = securityService;
+        this.directorshipIndex = directorshipIndex;
+        this.trace = trace;
+
+        for (Policy policy : PmisPolicies.all()) {
+            policies.put(policy.action(), policy.compile());
+            tracingPolicies.put(policy.action(), policy.compileTracing());
+        }
+
+        // One query per decision at most, and only if a rule reads the resource
+        resourceLoaders.put(PolicyAction.PROJECT_DELETE, id -> projectRepository.findDirectorAssignmentById(id)
+                .map(PolicyEngine::asChild).orElse(PolicyContext.Resource.MISSING));
+        resourceLoaders.put(PolicyAction.PROGRAM_DELETE, id -> programRepository.findDirectorAssignmentById(id)
+                .map(PolicyEngine::asChild).orElse(PolicyContext.Resource.MISSING));
+        resourceLoaders.put(PolicyAction.USER_DELETE, id -> userRepository.findRoleById(id)
+                .map(PolicyContext.Resource::user).orElse(PolicyContext.Resource.MISSING));
+    }
+
+    /**
+     * Evaluates the policy of the action for the current user
+     */
+    public Decision decide(PolicyAction action, Long resourceId) {
+        return decide(action, resourceId, trace || log.isDebugEnabled());
+    }
+
+    /**
+     * Evaluates the policy recording the rules it went through
+     */
+    public Decision explain(PolicyAction action, Long resourceId) {
+        return decide(action, resourceId, true);
+    }
+
+    /**
+     * Evaluates the policy and throws if it denies
+     *
+     * @return true if permitted, false if the resource does not exist
+     * @throws SecurityException with the reason of the denial
+     */
+    public boolean enforce(PolicyAction action, Long resourceId) {
+        Decision decision = decide(action, resourceId);
+        if (decision.effect() == Decision.Effect.DENY) {
+            throw new SecurityException(decision.reason());
+        }
+        return decision.isPermitted();
+    }
+
+    private Decision decide(PolicyAction action, Long resourceId, boolean traced) {
+        PolicyContext context = context(action, resourceId);
+        if (!traced) {
+            return policies.get(action).apply(context);
+        }
+        Decision decision = tracingPolicies.get(action).apply(context);
+        if (trace) {
+            log.info("{} on {} by user {}: {} ({})", action, resourceId, context.userId(), decision.effect(),
+                    String.join(", ", decision.trace()));
+        } else {
+            log.debug("{} on {} by user {}: {} ({})", action, resourceId, context.userId(), decision.effect(),
+                    String.join(", ", decision.trace()));
+        }
+        return decision;
+    }
+
+    PolicyContext context(PolicyAction action, Long resourceId) {
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        return new PolicyContext(identity != null ? identity.id() : null, identity != null ? identity.role() : null,
+                securityService.isSystemAdmin(), resourceId, directorshipIndex, resourceLoaders.get(action));
+    }
+
+    /**
+     * Decision function of the action, without attribute resolution. Used by the
+     * benchmark to time the rules alone.
+     */
+    Function<PolicyContext, Decision> compiled(PolicyAction action) {
+        return policies.get(action);
+    }
+
+    private static PolicyContext.Resource asChild(DirectorAssignment assignment) {
+        return PolicyContext.Resource.child(assignment.parentId());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.security.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Limits login form submissions per client IP and per UVUS before any password is
+ * checked. A rejected attempt goes back to the login view with the error flag and
+ * a {@code Retry-After} header.
+ * <p>
+ * The client IP is {@link HttpServletRequest#getRemoteAddr()}: behind a reverse
+ * proxy the container resolves it from {@code X-Forwarded-For}, but only for the
+ * proxies trusted by {@code server.tomcat.remoteip.internal-proxies}. The per-IP
+ * budget ({@link RateLimitBucket#LOGIN_IP}) is much larger than the per-UVUS one,
+ * so the users behind a shared address do not lock each other out.
+ * <p>
+ * Not a bean on purpose: it is added to the Vaadin chain by {@code SecurityConfig}.
+ */
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final String loginPath;
+
+    public LoginRateLimitFilter(RateLimiter rateLimiter, String loginPath) {
+        this.rateLimiter = rateLimiter;
+        this.loginPath = loginPath;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !request.getRequestURI().equals(request.getContextPath() + loginPath);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long retryAfter = rateLimiter.tryAcquire(RateLimitBucket.LOGIN_IP, "ip:" + request.getRemoteAddr());
+        String username = request.getParameter("username");
+        if (retryAfter == 0 && username != null && !username.isBlank()) {
+            retryAfter = rateLimiter.tryAcquire(RateLimitBucket.LOGIN,
+                    "uvus:" + username.trim().toLowerCase(Locale.ROOT));
+        }
+        if (retryAfter > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+            response.sendRedirect(request.getContextPath() + loginPath + "?error");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
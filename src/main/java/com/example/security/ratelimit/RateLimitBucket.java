@@ -0,0 +1,30 @@
+package com.example.security.ratelimit;
+
+/**
+ * Independent limits of {@link RateLimiter}, each with its own configuration
+ * under {@code pmis.security.rate-limit.<name>}
+ */
+public enum RateLimitBucket {
+
+    /** Login attempts, per UVUS */
+    LOGIN("login"),
+    /**
+     * Login attempts, per client IP. Far larger than {@link #LOGIN}: many users may
+     * share one address (a NAT or a proxy whose clients cannot be told apart).
+     */
+    LOGIN_IP("login-ip"),
+    /** Listings, per user */
+    READ("read"),
+    /** Creations, updates and deletions, per user */
+    WRITE("write");
+
+    private final String property;
+
+    RateLimitBucket(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.security.ratelimit;
+
+/**
+ * Thrown when a user exceeds the rate of a {@link RateLimitBucket}. Extends
+ * {@link SecurityException} so the views show it like any other denial.
+ */
+public class RateLimitExceededException extends SecurityException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RateLimitBucket bucket;
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(RateLimitBucket bucket, long retryAfterSeconds) {
+        super("Demasiadas peticiones seguidas. Inténtelo de nuevo en " + retryAfterSeconds + " s");
+        this.bucket = bucket;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public RateLimitBucket getBucket() {
+        return bucket;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
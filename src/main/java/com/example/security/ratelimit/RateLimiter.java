@@ -0,0 +1,168 @@
+package com.example.security.ratelimit;
+
+import com.example.security.CurrentIdentity;
+import com.example.security.SecurityService;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Per-key token buckets for login attempts, reads and writes.
+ * <p>
+ * Each key holds a single {@link AtomicLong}: the time at which its bucket will
+ * be full again (GCRA). Acquiring a token is one read and one CAS, so there are
+ * no locks and keys never contend with each other; the {@link ConcurrentHashMap}
+ * already stripes the lookups. A bucket of {@code burst} tokens refills at
+ * {@code per-minute} tokens per minute.
+ * <p>
+ * Service calls are charged to the current user once per transaction, so a
+ * cascade that goes through several services costs a single token. The system
+ * user (initialization, tests) is not limited.
+ */
+@Component
+public class RateLimiter {
+
+    private final SecurityService securityService;
+    private final boolean enabled;
+    private final int maxKeys;
+    private final Map<RateLimitBucket, Limit> limits = new EnumMap<>(RateLimitBucket.class);
+
+    public RateLimiter(SecurityService securityService, Environment environment) {
+        this.securityService = securityService;
+        this.enabled = environment.getProperty("pmis.security.rate-limit.enabled", Boolean.class, true);
+        this.maxKeys = environment.getProperty("pmis.security.rate-limit.max-keys", Integer.class, 10_000);
+        limits.put(RateLimitBucket.LOGIN, limit(environment, RateLimitBucket.LOGIN, 10, 10));
+        limits.put(RateLimitBucket.LOGIN_IP, limit(environment, RateLimitBucket.LOGIN_IP, 300, 300));
+        limits.put(RateLimitBucket.READ, limit(environment, RateLimitBucket.READ, 100, 600));
+        limits.put(RateLimitBucket.WRITE, limit(environment, RateLimitBucket.WRITE, 30, 120));
+    }
+
+    private static Limit limit(Environment environment, RateLimitBucket bucket, int burst, int perMinute) {
+        String prefix = "pmis.security.rate-limit." + bucket.property();
+        return new Limit(environment.getProperty(prefix + ".burst", Integer.class, burst),
+                environment.getProperty(prefix + ".per-minute", Integer.class, perMinute));
+    }
+
+    /**
+     * Takes a token of the bucket for the key
+     *
+     * @return 0 if allowed, otherwise the seconds until a token is available
+     */
+    public long tryAcquire(RateLimitBucket bucket, String key) {
+        if (!enabled) {
+            return 0;
+        }
+        Limit limit = limits.get(bucket);
+        long now = System.nanoTime();
+        AtomicLong full = limit.keys.get(key);
+        if (full == null) {
+            if (limit.keys.size() >= maxKeys) {
+                limit.evictFull(now);
+            }
+            full = limit.keys.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = full.get();
+            long next = Math.max(current, now) + limit.interval;
+            long wait = next - now - limit.tolerance;
+            if (wait > 0) {
+                limit.rejected.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+            }
+            if (full.compareAndSet(current, next)) {
+                limit.allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes a token of the bucket for the key
+     *
+     * @throws RateLimitExceededException if the bucket is empty
+     */
+    public void acquire(RateLimitBucket bucket, String key) {
+        long retryAfter = tryAcquire(bucket, key);
+        if (retryAfter > 0) {
+            throw new RateLimitExceededException(bucket, retryAfter);
+        }
+    }
+
+    /**
+     * Charges the current service call to the current user. Nested calls in the
+     * same transaction are not charged again.
+     *
+     * @throws RateLimitExceededException if the bucket is empty
+     */
+    public void acquireForCurrentUser(RateLimitBucket bucket) {
+        if (!enabled || securityService.isSystemAdmin()) {
+            return;
+        }
+        CurrentIdentity identity = securityService.getCurrentIdentity();
+        if (identity == null) {
+            return;
+        }
+        Limit limit = limits.get(bucket);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (TransactionSynchronizationManager.hasResource(limit)) {
+                return;
+            }
+            TransactionSynchronizationManager.bindResource(limit, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(limit);
+                }
+            });
+        }
+        acquire(bucket, "user:" + identity.id());
+    }
+
+    // ===== Metrics =====
+
+    public long getAllowedCount(RateLimitBucket bucket) {
+        return limits.get(bucket).allowed.sum();
+    }
+
+    public long getRejectedCount(RateLimitBucket bucket) {
+        return limits.get(bucket).rejected.sum();
+    }
+
+    public int getTrackedKeys(RateLimitBucket bucket) {
+        return limits.get(bucket).keys.size();
+    }
+
+    private static final class Limit {
+
+        private final long interval;
+        private final long tolerance;
+        private final Map<String, AtomicLong> keys = new ConcurrentHashMap<>();
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Limit(int burst, int perMinute) {
+            if (burst < 1 || perMinute < 1) {
+                throw new IllegalArgumentException("Rate limit burst and per-minute must be positive");
+            }
+            this.interval = TimeUnit.MINUTES.toNanos(1) / perMinute;
+            this.tolerance = interval * burst;
+        }
+
+        /**
+         * Drops the keys whose bucket is full again: they behave like new keys.
+         * A thread still holding a dropped counter gets at most one extra token.
+         */
+        void evictFull(long now) {
+            keys.values().removeIf(full -> full.get() - now <= 0);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.user;
+
+/**
+ * Outcome of a bulk project assignment or unassignment for one user
+ */
+public enum MembershipChange {
+    /** The user was moved into or out of the project */
+    CHANGED,
+    /** The user was already in the requested state */
+    UNCHANGED,
+    /** The current user may not change the membership of this user */
+    FORBIDDEN,
+    /** There is no user with that id */
+    NOT_FOUND;
+}
@@ -5,12 +5,20 @@ import com.example.project.Project;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@NaturalIdCache(region = "user-by-uvus")
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 500)
     @Column(name = "user_id", nullable = false)
     @NotNull
     private Long id;
@@ -19,10 +27,20 @@ public class User {
     @NotBlank
     private String name;
 
+    @NaturalId
     @Column(name = "user_uvus", unique = true, nullable = false)
     @NotBlank
     private String uvus;
 
+    // lower(user_uvus), computed by the database: only read by queries, never
+    // written or reloaded by Hibernate
+    @Column(name = "user_uvus_lower", insertable = false, updatable = false)
+    private String uvusLower;
+
+    // lower(user_name), computed by the database like uvusLower
+    @Column(name = "user_name_lower", insertable = false, updatable = false)
+    private String nameLower;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "project_id")
     private Project project;
@@ -0,0 +1,13 @@
+package com.example.user;
+
+/**
+ * What a user is assigned to: the entities it directs and the projects it
+ * sponsors. Read in one statement before deleting the user.
+ */
+public record UserDependencies(Long id, long portfolios, long programs, long directedProjects,
+        long sponsoredProjects, long pmos) {
+
+    public boolean isAssigned() {
+        return portfolios + programs + directedProjects + sponsoredProjects + pmos > 0;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.user;
+
+/**
+ * What a bulk assignment needs from a user: its role and current project
+ */
+public record UserMembership(Long id, Role role, Long projectId) {
+}
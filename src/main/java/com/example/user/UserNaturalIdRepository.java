@@ -0,0 +1,13 @@
+package com.example.user;
+
+/**
+ * Lookups of users by UVUS, their natural id
+ */
+public interface UserNaturalIdRepository {
+
+    /**
+     * User with the given UVUS (exact match), or null. Served from the
+     * natural-id cache when the UVUS has been resolved before.
+     */
+    User findByUvus(String uvus);
+}
@@ -0,0 +1,20 @@
+package com.example.user;
+
+import org.hibernate.Session;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public User findByUvus(String uvus) {
+        if (uvus == null) {
+            return null;
+        }
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).load(uvus);
+    }
+}
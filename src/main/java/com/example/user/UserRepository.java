@@ -1,5 +1,6 @@
 package com.example.user;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -7,12 +8,13 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository {
 
         @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.project")
         List<User> findAllWithProject();
 
-        User findByUvus(String uvus);
+        @Query("SELECT u.uvus FROM User u")
+        List<String> findAllUvus();
 
         @Query("SELECT DISTINCT u FROM User u " +
                         "LEFT JOIN FETCH u.project p " +
@@ -24,6 +26,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
         List<User> findAllByRole(Role role);
 
+        @Query("SELECT u.role FROM User u WHERE u.id = :id")
+        java.util.Optional<Role> findRoleById(@org.springframework.data.repository.query.Param("id") Long id);
+
         List<User> findAllByRoleIn(List<Role> roles);
 
         @org.springframework.data.jpa.repository.Modifying
@@ -31,10 +36,102 @@ public interface UserRepository extends JpaRepository<User, Long> {
         void unassignUsersFromProjectsInProgram(
                         @org.springframework.data.repository.query.Param("programId") Long programId);
 
+        @org.springframework.data.jpa.repository.Modifying(flushAutomatically = true)
+        @Query("UPDATE User u SET u.project = null WHERE u.project.id IN " +
+                        "(SELECT p.id FROM Project p WHERE p.program.portfolio.id = :portfolioId)")
+        void unassignUsersFromProjectsInPortfolio(
+                        @org.springframework.data.repository.query.Param("portfolioId") Long portfolioId);
+
+        // Members of a project, through the index on users.project_id
+        @Query("SELECT u FROM User u LEFT JOIN FETCH u.project p WHERE p.id = :projectId ORDER BY u.name, u.id")
+        List<User> findAllByProjectIdWithProject(
+                        @org.springframework.data.repository.query.Param("projectId") Long projectId);
+
+        @Query(ROW + "WHERE p.id = :projectId ORDER BY u.name, u.id")
+        List<UserRow> findRowsByProjectId(@org.springframework.data.repository.query.Param("projectId") Long projectId);
+
+        @Query(ROW + "WHERE u.role IN :roles ORDER BY u.name, u.id")
+        List<UserRow> findRowsByRoleIn(@org.springframework.data.repository.query.Param("roles") List<Role> roles);
+
         long countByProjectId(Long projectId);
 
+        // Everything a user is assigned to, one row per user and one statement per batch
+        @Query("SELECT new com.example.user.UserDependencies(u.id, "
+                        + "(SELECT COUNT(pf) FROM Portfolio pf WHERE pf.director.id = u.id), "
+                        + "(SELECT COUNT(prog) FROM Program prog WHERE prog.director.id = u.id), "
+                        + "(SELECT COUNT(p) FROM Project p WHERE p.director.id = u.id), "
+                        + "(SELECT COUNT(p) FROM Project p WHERE p.sponsor.id = u.id), "
+                        + "(SELECT COUNT(pmo) FROM PMO pmo WHERE pmo.director.id = u.id)) "
+                        + "FROM User u WHERE u.id IN :ids")
+        List<UserDependencies> findDependenciesByIdIn(
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
+        // Same check as a yes/no: each EXISTS stops at the first assignment it finds
+        @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND ("
+                        + "EXISTS (SELECT 1 FROM Portfolio pf WHERE pf.director.id = u.id) "
+                        + "OR EXISTS (SELECT 1 FROM Program prog WHERE prog.director.id = u.id) "
+                        + "OR EXISTS (SELECT 1 FROM Project p WHERE p.director.id = u.id OR p.sponsor.id = u.id) "
+                        + "OR EXISTS (SELECT 1 FROM PMO pmo WHERE pmo.director.id = u.id))")
+        List<Long> findAssignedIdsIn(
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
+        @Query("SELECT new com.example.user.UserMembership(u.id, u.role, p.id) FROM User u LEFT JOIN u.project p "
+                        + "WHERE u.id IN :ids")
+        List<UserMembership> findMembershipsByIdIn(
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
+        @org.springframework.data.jpa.repository.Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE User u SET u.project = :project WHERE u.id IN :ids")
+        int assignProject(@org.springframework.data.repository.query.Param("project") com.example.project.Project project,
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
+        @org.springframework.data.jpa.repository.Modifying(flushAutomatically = true, clearAutomatically = true)
+        @Query("UPDATE User u SET u.project = null WHERE u.project.id = :projectId AND u.id IN :ids")
+        int unassignProject(@org.springframework.data.repository.query.Param("projectId") Long projectId,
+                        @org.springframework.data.repository.query.Param("ids") java.util.Collection<Long> ids);
+
         @org.springframework.data.jpa.repository.Modifying
         @Query("UPDATE User u SET u.project = null WHERE u.project.id = :projectId")
         void unassignUsersFromProject(@org.springframework.data.repository.query.Param("projectId") Long projectId);
 
+        // Grid row: the project name only, no entity is loaded
+        String ROW = "SELECT new com.example.user.UserRow(u.id, u.name, u.uvus, u.role, p.name) " +
+                        "FROM User u LEFT JOIN u.project p ";
+
+        // Keyset page for the lazy grid: users after (afterName, afterId) ordered by
+        // name and id; a null afterName starts from the first row
+        @Query(ROW + "WHERE (:afterName IS NULL OR u.name > :afterName OR (u.name = :afterName AND u.id > :afterId)) " +
+                        "ORDER BY u.name, u.id")
+        List<UserRow> findRowPage(@org.springframework.data.repository.query.Param("afterName") String afterName,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
+        // Candidates for a project, keyset paged on the lowercased UVUS (unique, see
+        // user_uvus_lower); the search text is already lowercased, escaped and ends in %.
+        // The UVUS and name searches are separate queries so each can use its own index
+        @Query(ROW + "WHERE (p IS NULL OR p.id <> :projectId) " +
+                        "AND (:afterUvus IS NULL OR u.uvusLower > :afterUvus OR (u.uvusLower = :afterUvus AND u.id > :afterId)) " +
+                        "ORDER BY u.uvusLower, u.id")
+        List<UserRow> findRowPageAvailableForProject(
+                        @org.springframework.data.repository.query.Param("projectId") Long projectId,
+                        @org.springframework.data.repository.query.Param("afterUvus") String afterUvus,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
+        @Query(ROW + "WHERE (p IS NULL OR p.id <> :projectId) AND u.uvusLower LIKE :prefix ESCAPE '\\' " +
+                        "AND (:afterUvus IS NULL OR u.uvusLower > :afterUvus OR (u.uvusLower = :afterUvus AND u.id > :afterId)) " +
+                        "ORDER BY u.uvusLower, u.id")
+        List<UserRow> findRowPageAvailableForProjectByUvus(
+                        @org.springframework.data.repository.query.Param("projectId") Long projectId,
+                        @org.springframework.data.repository.query.Param("prefix") String prefix,
+                        @org.springframework.data.repository.query.Param("afterUvus") String afterUvus,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
+        @Query(ROW + "WHERE (p IS NULL OR p.id <> :projectId) AND u.nameLower LIKE :prefix ESCAPE '\\' " +
+                        "AND (:afterUvus IS NULL OR u.uvusLower > :afterUvus OR (u.uvusLower = :afterUvus AND u.id > :afterId)) " +
+                        "ORDER BY u.uvusLower, u.id")
+        List<UserRow> findRowPageAvailableForProjectByName(
+                        @org.springframework.data.repository.query.Param("projectId") Long projectId,
+                        @org.springframework.data.repository.query.Param("prefix") String prefix,
+                        @org.springframework.data.repository.query.Param("afterUvus") String afterUvus,
+                        @org.springframework.data.repository.query.Param("afterId") Long afterId, Limit limit);
+
 }
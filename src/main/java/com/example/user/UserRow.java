@@ -0,0 +1,8 @@
+package com.example.user;
+
+/**
+ * Grid row of a user: the displayed columns only, without the password hash or
+ * the project entity
+ */
+public record UserRow(Long id, String name, String uvus, Role role, String projectName) {
+}
@@ -1,13 +1,28 @@
 package com.example.user;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.example.apitoken.ApiTokenService;
 import com.example.portfolio.PortfolioRepository;
 import com.example.program.ProgramRepository;
 import com.example.project.ProjectRepository;
 import com.example.pmo.PMORepository;
+import com.example.security.DirectorshipIndex;
+import com.example.security.KnownUvusFilter;
 import com.example.security.SecurityService;
+import com.example.security.policy.PolicyAction;
+import com.example.security.policy.PolicyEngine;
+import com.example.security.ratelimit.RateLimitBucket;
+import com.example.security.ratelimit.RateLimiter;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,38 +30,53 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class UserService {
 
+    // Ids per UPDATE ... IN (...) statement
+    static final int ASSIGNMENT_BATCH_SIZE = 500;
+
     private final UserRepository userRepository;
     private final PortfolioRepository portfolioRepository;
     private final ProgramRepository programRepository;
     private final ProjectRepository projectRepository;
     private final PMORepository pmoRepository;
     private final SecurityService securityService;
+    private final DirectorshipIndex directorshipIndex;
+    private final KnownUvusFilter knownUvusFilter;
+    private final PolicyEngine policyEngine;
+    private final ApiTokenService apiTokenService;
+    private final RateLimiter rateLimiter;
 
     public UserService(UserRepository userRepository, PortfolioRepository portfolioRepository,
             ProgramRepository programRepository, ProjectRepository projectRepository, PMORepository pmoRepository,
-            SecurityService securityService) {
+            SecurityService securityService, DirectorshipIndex directorshipIndex, KnownUvusFilter knownUvusFilter,
+            PolicyEngine policyEngine, ApiTokenService apiTokenService, RateLimiter rateLimiter) {
         this.userRepository = userRepository;
         this.portfolioRepository = portfolioRepository;
         this.programRepository = programRepository;
         this.projectRepository = projectRepository;
         this.pmoRepository = pmoRepository;
         this.securityService = securityService;
+        this.directorshipIndex = directorshipIndex;
+        this.knownUvusFilter = knownUvusFilter;
+        this.policyEngine = policyEngine;
+        this.apiTokenService = apiTokenService;
+        this.rateLimiter = rateLimiter;
     }
 
     public User createOrUpdate(User user) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
         if (securityService.isSystemAdmin()) {
-            return userRepository.save(user);
+            return save(user);
         }
 
         // Admin can manage Managers and Admins
         if ((user.getRole() == Role.MANAGER || user.getRole() == Role.ADMIN) && securityService.isAdmin()) {
-            return userRepository.save(user);
+            return save(user);
         }
 
         // PMO Directors can manage Users (create/update)
         if (user.getRole() == Role.USER && securityService.isPmoDirector()) {
             // Basic validation or just allow
-            return userRepository.save(user);
+            return save(user);
         }
 
         // Project Directors can assign users to their project
@@ -61,7 +91,7 @@ public class UserService {
                     if (user.getRole() != Role.USER) {
                         throw new SecurityException("No puedes cambiar el rol del usuario");
                     }
-                    return userRepository.save(user);
+                    return save(user);
                 }
             }
         }
@@ -69,56 +99,199 @@ public class UserService {
         throw new SecurityException("No tienes permisos para realizar esta acción");
     }
 
-    public User get(Long userId) {
-        return userRepository.findById(userId).orElse(null);
+    private User save(User user) {
+        User saved = userRepository.save(user);
+        securityService.onUserChanged(saved.getId());
+        knownUvusFilter.userSaved(saved.getUvus());
+        return saved;
     }
 
-    public void delete(Long userId) {
-        // Validate deletion permissions
-        if (!securityService.canDeleteUser(userId)) {
-            // Check if PMO Director deleted a USER
-            if (securityService.isPmoDirector()) {
-                User target = userRepository.findById(userId).orElse(null);
-                if (target != null && target.getRole() == Role.USER) {
-                    // Allow PMO Director to delete USER
+    /**
+     * Moves users into a project with one permission check and one UPDATE per
+     * batch of ids. System admins move anyone; admins move managers and admins;
+     * PMO directors and the director of the project move users.
+     *
+     * @return Outcome per requested id, in the order given
+     * @throws SecurityException if the current user cannot assign to the project
+     */
+    public Map<Long, MembershipChange> assignUsersToProject(Long projectId, Collection<Long> userIds) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        if (!projectRepository.existsById(projectId)) {
+            throw new IllegalArgumentException("Proyecto no encontrado: " + projectId);
+        }
+        MembershipPermission permission = membershipPermission(projectId);
+
+        Map<Long, MembershipChange> results = new LinkedHashMap<>();
+        List<Long> toAssign = new ArrayList<>();
+        for (List<Long> batch : batches(userIds)) {
+            for (UserMembership membership : userRepository.findMembershipsByIdIn(batch)) {
+                if (!permission.allows(membership.role())) {
+                    results.put(membership.id(), MembershipChange.FORBIDDEN);
+                } else if (projectId.equals(membership.projectId())) {
+                    results.put(membership.id(), MembershipChange.UNCHANGED);
+                } else {
+                    results.put(membership.id(), MembershipChange.CHANGED);
+                    toAssign.add(membership.id());
+                }
+            }
+        }
+
+        var project = projectRepository.getReferenceById(projectId);
+        for (List<Long> batch : batches(toAssign)) {
+            userRepository.assignProject(project, batch);
+        }
+        toAssign.forEach(securityService::onUserChanged);
+        return inRequestOrder(userIds, results);
+    }
+
+    /**
+     * Takes users out of a project, with the same permissions as
+     * {@link #assignUsersToProject(Long, Collection)}. Users that are not in the
+     * project are left as they are.
+     *
+     * @return Outcome per requested id, in the order given
+     * @throws SecurityException if the current user cannot unassign from the project
+     */
+    public Map<Long, MembershipChange> unassignUsersFromProject(Long projectId, Collection<Long> userIds) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        MembershipPermission permission = membershipPermission(projectId);
+
+        Map<Long, MembershipChange> results = new LinkedHashMap<>();
+        List<Long> toUnassign = new ArrayList<>();
+        for (List<Long> batch : batches(userIds)) {
+            for (UserMembership membership : userRepository.findMembershipsByIdIn(batch)) {
+                if (!permission.allows(membership.role())) {
+                    results.put(membership.id(), MembershipChange.FORBIDDEN);
+                } else if (!projectId.equals(membership.projectId())) {
+                    results.put(membership.id(), MembershipChange.UNCHANGED);
                 } else {
-                    throw new SecurityException("No tiene permisos para eliminar este usuario");
+                    results.put(membership.id(), MembershipChange.CHANGED);
+                    toUnassign.add(membership.id());
                 }
-            } else {
-                throw new SecurityException("No tiene permisos para eliminar este usuario");
             }
         }
 
-        User userToDelete = userRepository.findById(userId).orElse(null);
-        if (userToDelete != null && userToDelete.getRole() == Role.ADMIN) {
-            throw new SecurityException("No se puede eliminar un usuario con rol ADMIN");
+        for (List<Long> batch : batches(toUnassign)) {
+            userRepository.unassignProject(projectId, batch);
         }
+        toUnassign.forEach(securityService::onUserChanged);
+        return inRequestOrder(userIds, results);
+    }
 
-        if (securityService.isCurrentUser(userId)) {
-            throw new SecurityException("No puede eliminarse a sí mismo");
+    // Same rules as createOrUpdate, decided once for the whole request
+    private MembershipPermission membershipPermission(Long projectId) {
+        if (securityService.isSystemAdmin()) {
+            return role -> true;
+        }
+        boolean admin = securityService.isAdmin();
+        boolean usersAllowed = securityService.isPmoDirector() || securityService.isProjectDirector(projectId);
+        if (!admin && !usersAllowed) {
+            throw new SecurityException("No tienes permisos para realizar esta acción");
+        }
+        return role -> role == Role.USER ? usersAllowed : admin;
+    }
+
+    private static List<List<Long>> batches(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().distinct().toList();
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += ASSIGNMENT_BATCH_SIZE) {
+            batches.add(distinct.subList(from, Math.min(from + ASSIGNMENT_BATCH_SIZE, distinct.size())));
+        }
+        return batches;
+    }
+
+    private static Map<Long, MembershipChange> inRequestOrder(Collection<Long> userIds,
+            Map<Long, MembershipChange> results) {
+        Map<Long, MembershipChange> ordered = new LinkedHashMap<>();
+        for (Long id : userIds) {
+            ordered.put(id, results.getOrDefault(id, MembershipChange.NOT_FOUND));
+        }
+        return ordered;
+    }
+
+    @FunctionalInterface
+    private interface MembershipPermission {
+        boolean allows(Role role);
+    }
+
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public User get(Long userId) {
+        return userRepository.findById(userId).orElse(null);
+    }
+
+    public void delete(Long userId) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        // Validate deletion permissions (PmisPolicies)
+        if (!policyEngine.enforce(PolicyAction.USER_DELETE, userId)) {
+            return;
         }
 
+        apiTokenService.userRemoved(userId);
         userRepository.deleteById(userId);
+        securityService.onUserChanged(userId);
+        knownUvusFilter.userRemoved();
     }
 
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public List<User> getAll() {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
         List<User> users = userRepository.findAllWithProject();
         return users;
     }
 
+    /**
+     * Grid rows of {@link #getAll()} ordered by name and id, after the given row
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public List<UserRow> getPage(String afterName, Long afterId, int limit) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        return userRepository.findRowPage(afterName, afterId, Limit.of(limit));
+    }
+
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public List<User> findAllByRole(Role role) {
         return userRepository.findAllByRole(role);
     }
 
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public List<User> findAllByRoles(List<Role> roles) {
         return userRepository.findAllByRoleIn(roles);
     }
 
+    /**
+     * Grid rows of the users with any of the roles, ordered by name
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public List<UserRow> findRowsByRoles(List<Role> roles) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        return userRepository.findRowsByRoleIn(roles);
+    }
+
+    /**
+     * Users that can be added to a project (those not already in it) whose UVUS or
+     * name starts with the search text (ignoring case), a page at a time in UVUS
+     * order. The UVUS and name matches are read by two indexed queries and merged.
+     */
     @org.springframework.transaction.annotation.Transactional(readOnly = true)
-    public List<User> findAvailableForProject(Long projectId) {
-        return userRepository.findAllWithProject().stream()
-                .filter(user -> user.getProject() == null ||
-                        (projectId != null && !user.getProject().getId().equals(projectId)))
+    public List<UserRow> searchAvailableForProject(Long projectId, String search, String afterUvus, Long afterId,
+            int limit) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.READ);
+        // The keyset is on the lowercased UVUS
+        String after = afterUvus == null ? null : afterUvus.toLowerCase(java.util.Locale.ROOT);
+        if (search == null || search.isBlank()) {
+            return userRepository.findRowPageAvailableForProject(projectId, after, afterId, Limit.of(limit));
+        }
+        String prefix = search.trim().toLowerCase(java.util.Locale.ROOT)
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        Map<Long, UserRow> merged = new LinkedHashMap<>();
+        userRepository.findRowPageAvailableForProjectByUvus(projectId, prefix, after, afterId, Limit.of(limit))
+                .forEach(row -> merged.put(row.id(), row));
+        userRepository.findRowPageAvailableForProjectByName(projectId, prefix, after, afterId, Limit.of(limit))
+                .forEach(row -> merged.putIfAbsent(row.id(), row));
+        return merged.values().stream()
+                .sorted(java.util.Comparator.comparing((UserRow row) -> row.uvus().toLowerCase(java.util.Locale.ROOT))
+                        .thenComparing(UserRow::id))
+                .limit(limit)
                 .toList();
     }
 
@@ -127,11 +300,29 @@ public class UserService {
         if (projectId == null) {
             return List.of();
         }
-        return userRepository.findAllWithProject().stream()
-                .filter(user -> user.getProject() != null && user.getProject().getId().equals(projectId))
-                .toList();
+        return userRepository.findAllByProjectIdWithProject(projectId);
     }
 
+    /**
+     * Grid rows of the members of a project, ordered by name
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public List<UserRow> findRowsByProject(Long projectId) {
+        if (projectId == null) {
+            return List.of();
+        }
+        return userRepository.findRowsByProjectId(projectId);
+    }
+
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public long countByProject(Long projectId) {
+        if (projectId == null) {
+            return 0;
+        }
+        return userRepository.countByProjectId(projectId);
+    }
+
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public User findByUvus(String uvus) {
         return userRepository.findByUvus(uvus);
     }
@@ -141,37 +332,51 @@ public class UserService {
         return userRepository.findByUvusWithProject(uvus);
     }
 
+    /**
+     * Whether the user directs or sponsors anything, in one query that stops at
+     * the first assignment found
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public boolean hasAssignedEntities(Long id) {
-        return portfolioRepository.countByDirectorId(id) > 0
-                || programRepository.countByDirectorId(id) > 0
-                || projectRepository.countByDirectorId(id) > 0
-                || projectRepository.countBySponsorId(id) > 0
-                || pmoRepository.countByDirectorId(id) > 0;
+        return !userRepository.findAssignedIdsIn(List.of(id)).isEmpty();
     }
 
-    public void deleteSafe(Long id) {
-        // Validate deletion permissions
-        // Re-using logic from delete() for permission check
-        boolean customPermission = false;
-        if (securityService.isPmoDirector()) {
-            User target = userRepository.findById(id).orElse(null);
-            if (target != null && target.getRole() == Role.USER) {
-                customPermission = true;
-            }
-        }
+    /**
+     * Users of the batch that direct or sponsor anything, in one EXISTS query
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public Set<Long> withAssignedEntities(Collection<Long> ids) {
+        return ids.isEmpty() ? Set.of() : Set.copyOf(userRepository.findAssignedIdsIn(ids));
+    }
 
-        if (!customPermission && !securityService.canDeleteUser(id)) {
-            throw new SecurityException("No tiene permisos para eliminar este usuario");
-        }
+    /**
+     * Portfolios, programs and PMOs the user directs and projects it directs or
+     * sponsors, counted in one statement
+     *
+     * @return The counts, or null if the user does not exist
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public UserDependencies getDependencies(Long id) {
+        return getDependencies(List.of(id)).get(id);
+    }
 
-        // ... (rest of logic same as original but we need careful merge)
-        User userToDelete = userRepository.findById(id).orElse(null);
-        if (userToDelete != null && userToDelete.getRole() == Role.ADMIN) {
-            throw new SecurityException("No se puede eliminar un usuario con rol ADMIN");
+    /**
+     * Dependency counts of a batch of users in one statement
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public Map<Long, UserDependencies> getDependencies(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
         }
+        return userRepository.findDependenciesByIdIn(ids).stream()
+                .collect(Collectors.toMap(UserDependencies::id, Function.identity()));
+    }
 
-        if (securityService.isCurrentUser(id)) {
-            throw new SecurityException("No puede eliminarse a sí mismo");
+    public void deleteSafe(Long id) {
+        rateLimiter.acquireForCurrentUser(RateLimitBucket.WRITE);
+        // Validate deletion permissions (PmisPolicies)
+        if (!policyEngine.enforce(PolicyAction.USER_DELETE, id)) {
+            return;
         }
 
         portfolioRepository.unassignDirector(id);
@@ -179,6 +384,10 @@ public class UserService {
         projectRepository.unassignDirector(id);
         projectRepository.unassignSponsor(id);
         pmoRepository.unassignDirector(id);
+        directorshipIndex.directorRemoved(id);
+        apiTokenService.userRemoved(id);
         userRepository.deleteById(id);
+        securityService.onUserChanged(id);
+        knownUvusFilter.userRemoved();
     }
 }
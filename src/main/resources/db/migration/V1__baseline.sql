@@ -0,0 +1,102 @@
+-- Esquema base de PMIS: el mismo que generaba Hibernate con ddl-auto=update,
+-- más un índice por cada clave foránea y un índice único sin mayúsculas sobre el UVUS.
+
+create sequence users_seq start with 1 increment by 50;
+create sequence portfolio_seq start with 1 increment by 50;
+create sequence program_seq start with 1 increment by 50;
+create sequence project_seq start with 1 increment by 50;
+create sequence pmo_seq start with 1 increment by 50;
+create sequence api_token_seq start with 1 increment by 50;
+
+create table users (
+    user_id bigint not null,
+    user_name varchar(255) not null,
+    user_uvus varchar(255) not null,
+    user_password varchar(255),
+    user_role enum ('ADMIN', 'MANAGER', 'USER') not null,
+    project_id bigint,
+    -- Para buscar y garantizar la unicidad del UVUS sin distinguir mayúsculas
+    user_uvus_lower varchar(255) generated always as (lower(user_uvus)),
+    primary key (user_id),
+    constraint uk_users_uvus unique (user_uvus)
+);
+
+create table portfolio (
+    portfolio_id bigint not null,
+    portfolio_name varchar(255) not null,
+    director_id bigint,
+    primary key (portfolio_id)
+);
+
+create table program (
+    program_id bigint not null,
+    program_name varchar(255) not null,
+    portfolio_id bigint not null,
+    director_id bigint,
+    primary key (program_id)
+);
+
+create table project (
+    project_id bigint not null,
+    project_name varchar(255) not null,
+    program_id bigint not null,
+    director_id bigint,
+    sponsor_id bigint,
+    primary key (project_id)
+);
+
+create table pmo (
+    pmo_id bigint not null,
+    pmo_name varchar(255) not null,
+    portfolio_id bigint not null,
+    director_id bigint,
+    primary key (pmo_id)
+);
+
+create table api_token (
+    api_token_id bigint not null,
+    api_token_name varchar(255) not null,
+    api_token_public_id varchar(32) not null,
+    api_token_secret_hash varchar(255) not null,
+    api_token_created_at timestamp(6) with time zone not null,
+    user_id bigint not null,
+    primary key (api_token_id),
+    constraint uk_api_token_public_id unique (api_token_public_id)
+);
+
+-- Claves foráneas, cada una con su índice
+create index idx_users_project_id on users (project_id);
+alter table users add constraint fk_users_project foreign key (project_id) references project;
+
+create index idx_portfolio_director_id on portfolio (director_id);
+alter table portfolio add constraint fk_portfolio_director foreign key (director_id) references users;
+
+create index idx_program_portfolio_id on program (portfolio_id);
+create index idx_program_director_id on program (director_id);
+alter table program add constraint fk_program_portfolio foreign key (portfolio_id) references portfolio;
+alter table program add constraint fk_program_director foreign key (director_id) references users;
+
+create index idx_project_program_id on project (program_id);
+create index idx_project_director_id on project (director_id);
+create index idx_project_sponsor_id on project (sponsor_id);
+alter table project add constraint fk_project_program foreign key (program_id) references program;
+alter table project add constraint fk_project_director foreign key (director_id) references users;
+alter table project add constraint fk_project_sponsor foreign key (sponsor_id) references users;
+
+create index idx_pmo_portfolio_id on pmo (portfolio_id);
+create index idx_pmo_director_id on pmo (director_id);
+alter table pmo add constraint fk_pmo_portfolio foreign key (portfolio_id) references portfolio;
+alter table pmo add constraint fk_pmo_director foreign key (director_id) references users;
+
+create index idx_api_token_user_id on api_token (user_id);
+alter table api_token add constraint fk_api_token_user foreign key (user_id) references users;
+
+-- Listados paginados por nombre (keyset sobre nombre e id)
+create index idx_users_name_id on users (user_name, user_id);
+create index idx_portfolio_name_id on portfolio (portfolio_name, portfolio_id);
+create index idx_program_name_id on program (program_name, program_id);
+create index idx_project_name_id on project (project_name, project_id);
+create index idx_pmo_name_id on pmo (pmo_name, pmo_id);
+
+-- UVUS sin distinguir mayúsculas
+create unique index ux_users_uvus_lower on users (user_uvus_lower);
@@ -0,0 +1,9 @@
+-- Bloques de identificadores más grandes para las inserciones masivas (optimizador pooled-lo).
+-- Con pooled-lo el valor leído es el primero del bloque, así que los ids ya usados
+-- (como mucho el valor actual de cada secuencia) no se repiten.
+alter sequence users_seq increment by 500;
+alter sequence project_seq increment by 500;
+alter sequence program_seq increment by 100;
+alter sequence portfolio_seq increment by 100;
+alter sequence pmo_seq increment by 100;
+alter sequence api_token_seq increment by 100;
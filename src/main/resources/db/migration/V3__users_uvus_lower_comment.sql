@@ -0,0 +1,5 @@
+-- user_uvus_lower (V1) hace el UVUS único sin distinguir mayúsculas: no pueden
+-- existir "abc" y "ABC" a la vez. Su índice sirve también a la búsqueda por prefijo
+-- de UVUS. Las búsquedas exactas (inicio de sesión, id natural de Hibernate) siguen
+-- usando user_uvus, que guarda el UVUS tal como se dio de alta.
+comment on column users.user_uvus_lower is 'lower(user_uvus): unicidad sin distinguir mayúsculas y búsqueda por prefijo';
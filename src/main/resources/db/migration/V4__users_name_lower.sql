@@ -0,0 +1,4 @@
+-- Búsqueda por prefijo del nombre sin distinguir mayúsculas: lower(user_name) como
+-- columna generada para poder indexarla (H2 no admite índices sobre expresiones)
+alter table users add column user_name_lower varchar(255) generated always as (lower(user_name));
+create index idx_users_name_lower on users (user_name_lower);
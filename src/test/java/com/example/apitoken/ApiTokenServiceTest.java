@@ -0,0 +1,206 @@
+package com.example.apitoken;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.example.user.Role;
+import com.example.user.User;
+import com.example.user.UserService;
+
+/**
+ * Not transactional: a token is only accepted once the transaction that issued
+ * it commits, so each service call commits and the accounts are deleted after
+ * each test.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+public class ApiTokenServiceTest {
+
+    @Autowired
+    ApiTokenService apiTokenService;
+    @Autowired
+    UserService userService;
+    @Autowired
+    WebApplicationContext context;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private MockMvc mockMvc;
+    private User serviceAccount;
+
+    @BeforeEach
+    public void setup() {
+        // Same context as the other tests: a second one would seed the shared in-memory DB again
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        loginAsSystem();
+        serviceAccount = new User();
+        serviceAccount.setName("Integración");
+        serviceAccount.setUvus("svc-integration");
+        serviceAccount.setRole(Role.USER);
+        serviceAccount = userService.createOrUpdate(serviceAccount);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        loginAsSystem();
+        for (String uvus : List.of("svc-integration", "plain-user")) {
+            User user = userService.findByUvus(uvus);
+            if (user != null) {
+                userService.delete(user.getId());
+            }
+        }
+        SecurityContextHolder.clearContext();
+    }
+
+    private void loginAsSystem() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("system", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+    }
+
+    @Test
+    public void testValidTokenAuthenticatesWithoutSession() throws Exception {
+        String token = apiTokenService.issue(serviceAccount.getId(), "ci");
+        assertTrue(token.startsWith(ApiTokenService.PREFIX));
+        SecurityContextHolder.clearContext();
+
+        MvcResult result = mockMvc.perform(get("/api/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uvus").value("svc-integration"))
+                .andExpect(jsonPath("$.role").value("USER"))
+                .andReturn();
+        assertNull(result.getRequest().getSession(false), "La API no debe crear sesión");
+
+        mockMvc.perform(get("/api/projects").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+        assertTrue(apiTokenService.getVerifiedCount() >= 2);
+    }
+
+    @Test
+    public void testInvalidMissingAndRevokedTokensAreRejected() throws Exception {
+        String token = apiTokenService.issue(serviceAccount.getId(), "ci");
+        String wrongSecret = token.substring(0, token.length() - 4) + "AAAA";
+        SecurityContextHolder.clearContext();
+
+        mockMvc.perform(get("/api/me")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + wrongSecret))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/me").header(HttpHeaders.AUTHORIZATION, "Bearer pmis_unknown_secret"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/me").header(HttpHeaders.AUTHORIZATION, "Bearer garbage"))
+                .andExpect(status().isUnauthorized());
+
+        loginAsSystem();
+        ApiToken issued = apiTokenService.findAllByUserId(serviceAccount.getId()).get(0);
+        apiTokenService.revoke(issued.getId());
+        assertNull(apiTokenService.authenticate(token));
+        mockMvc.perform(get("/api/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void testTokenFollowsUserChangesAndDeletion() {
+        String token = apiTokenService.issue(serviceAccount.getId(), "ci");
+        assertEquals(Role.USER, apiTokenService.authenticate(token).getRole());
+
+        // Only the secret hash is stored
+        ApiToken issued = apiTokenService.findAllByUserId(serviceAccount.getId()).get(0);
+        assertTrue(!token.contains(issued.getSecretHash()));
+
+        serviceAccount.setRole(Role.MANAGER);
+        userService.createOrUpdate(serviceAccount);
+        assertEquals(Role.MANAGER, apiTokenService.authenticate(token).getRole());
+
+        userService.delete(serviceAccount.getId());
+        assertNull(apiTokenService.authenticate(token));
+        assertTrue(apiTokenService.findAllByUserId(serviceAccount.getId()).isEmpty());
+    }
+
+    @Test
+    public void testOnlyAdminsIssueTokens() {
+        User user = new User();
+        user.setName("Usuario");
+        user.setUvus("plain-user");
+        user.setRole(Role.USER);
+        user = userService.createOrUpdate(user);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("plain-user", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        Long userId = user.getId();
+        assertThrows(SecurityException.class, () -> apiTokenService.issue(userId, "mine"));
+
+        loginAsSystem();
+        assertNotNull(apiTokenService.issue(userId, "granted"));
+    }
+
+    @Test
+    public void testTokenIsOnlyAcceptedOnceCommitted() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        String rolledBack = transaction.execute(status -> {
+            String token = apiTokenService.issue(serviceAccount.getId(), "rolled back");
+            assertNull(apiTokenService.authenticate(token));
+            status.setRollbackOnly();
+            return token;
+        });
+        assertNull(apiTokenService.authenticate(rolledBack));
+
+        String committed = transaction.execute(status -> {
+            String token = apiTokenService.issue(serviceAccount.getId(), "committed");
+            assertNull(apiTokenService.authenticate(token));
+            return token;
+        });
+        assertNotNull(apiTokenService.authenticate(committed));
+    }
+
+    @Test
+    public void testOnlyAdminsListAndRevokeTokens() {
+        String token = apiTokenService.issue(serviceAccount.getId(), "ci");
+        ApiTokenRow row = apiTokenService.findAll().stream()
+                .filter(listed -> token.startsWith(ApiTokenService.PREFIX + listed.publicId() + "_"))
+                .findFirst().orElseThrow();
+        assertEquals("ci", row.name());
+        assertEquals("svc-integration", row.uvus());
+
+        User user = new User();
+        user.setName("Usuario");
+        user.setUvus("plain-user");
+        user.setRole(Role.USER);
+        userService.createOrUpdate(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("plain-user", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        assertThrows(SecurityException.class, () -> apiTokenService.findAll());
+        assertThrows(SecurityException.class, () -> apiTokenService.revoke(row.id()));
+        assertNotNull(apiTokenService.authenticate(token));
+
+        loginAsSystem();
+        apiTokenService.revoke(row.id());
+        assertNull(apiTokenService.authenticate(token));
+        assertTrue(apiTokenService.findAll().stream().noneMatch(listed -> listed.id().equals(row.id())));
+    }
+}
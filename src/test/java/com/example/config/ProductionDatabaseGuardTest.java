@@ -0,0 +1,43 @@
+package com.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.mock.env.MockEnvironment;
+
+public class ProductionDatabaseGuardTest {
+
+    private final ProductionDatabaseGuard guard = new ProductionDatabaseGuard();
+
+    @Test
+    public void testRejectsInMemoryDatabaseInProd() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.datasource.url", "jdbc:h2:mem:testdb");
+        environment.setActiveProfiles("prod");
+
+        assertThrows(IllegalStateException.class,
+                () -> guard.postProcessEnvironment(environment, new SpringApplication()));
+    }
+
+    @Test
+    public void testRejectsMissingUrlInProd() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("prod");
+
+        assertThrows(IllegalStateException.class,
+                () -> guard.postProcessEnvironment(environment, new SpringApplication()));
+    }
+
+    @Test
+    public void testAcceptsFileDatabaseInProdAndMemoryElsewhere() {
+        MockEnvironment prod = new MockEnvironment()
+                .withProperty("spring.datasource.url", "jdbc:h2:file:/data/pmis");
+        prod.setActiveProfiles("prod");
+        guard.postProcessEnvironment(prod, new SpringApplication());
+
+        MockEnvironment dev = new MockEnvironment()
+                .withProperty("spring.datasource.url", "jdbc:h2:mem:testdb");
+        guard.postProcessEnvironment(dev, new SpringApplication());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import com.example.apitoken.ApiTokenService;
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioRepository;
+import com.example.portfolio.PortfolioService;
+import com.example.security.DirectorshipIndex;
+import com.example.security.KnownUvusFilter;
+import com.example.user.UserService;
+
+/**
+ * A second pool on the same in-memory database stands in for the replica, so
+ * reads return the same rows and only the pool they came from differs.
+ * <p>
+ * Runs in its own application context, closed afterwards. Vaadin installs its
+ * security context strategy in the static holder when a context starts, so the
+ * one of the shared test context is put back at the end.
+ */
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, properties = {
+        "pmis.datasource.replica.urls=jdbc:h2:mem:testdb",
+        "pmis.datasource.replica.check-interval-seconds=3600" })
+public class ReadReplicaConfigTest {
+
+    @Autowired
+    ReplicaRoutingDataSource routing;
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    UserService userService;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    DirectorshipIndex directorshipIndex;
+    @Autowired
+    KnownUvusFilter knownUvusFilter;
+    @Autowired
+    ApiTokenService apiTokenService;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private static SecurityContextHolderStrategy sharedStrategy;
+
+    @BeforeAll
+    public static void saveStrategy() {
+        sharedStrategy = SecurityContextHolder.getContextHolderStrategy();
+    }
+
+    @AfterAll
+    public static void restoreStrategy() {
+        SecurityContextHolder.setContextHolderStrategy(sharedStrategy);
+    }
+
+    @BeforeEach
+    public void setupSecurity() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("system", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+    }
+
+    @Test
+    public void testReadOnlyServiceMethodsUseTheReplica() {
+        long replica = routing.getReplicaConnectionCount();
+        long primary = routing.getPrimaryConnectionCount();
+
+        assertFalse(portfolioService.getAll().isEmpty());
+        assertTrue(userService.getPage(null, null, 10).size() > 0);
+
+        assertEquals(replica + 2, routing.getReplicaConnectionCount());
+        assertEquals(primary, routing.getPrimaryConnectionCount());
+    }
+
+    @Test
+    public void testReadWriteTransactionsUseThePrimary() {
+        long replica = routing.getReplicaConnectionCount();
+        long primary = routing.getPrimaryConnectionCount();
+
+        new TransactionTemplate(transactionManager).execute(status -> portfolioRepository.count());
+
+        assertEquals(replica, routing.getReplicaConnectionCount());
+        assertEquals(primary + 1, routing.getPrimaryConnectionCount());
+    }
+
+    @Test
+    public void testReplicaReadsDoNotFillTheSecondLevelCache() {
+        Long portfolioId = portfolioService.getAll().get(0).getId();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        entityManagerFactory.getCache().evict(Portfolio.class);
+        readOnly.execute(status -> entityManager.find(Portfolio.class, portfolioId));
+        assertFalse(entityManagerFactory.getCache().contains(Portfolio.class, portfolioId));
+
+        // Read from the primary, the row is cached and later replica reads use it
+        new TransactionTemplate(transactionManager).execute(status -> entityManager.find(Portfolio.class, portfolioId));
+        assertTrue(entityManagerFactory.getCache().contains(Portfolio.class, portfolioId));
+        long replica = routing.getReplicaConnectionCount();
+        readOnly.execute(status -> entityManager.find(Portfolio.class, portfolioId));
+        assertEquals(replica, routing.getReplicaConnectionCount());
+    }
+
+    @Test
+    public void testAuthorizationRebuildsReadThePrimary() {
+        long replica = routing.getReplicaConnectionCount();
+        long primary = routing.getPrimaryConnectionCount();
+
+        directorshipIndex.rebuild();
+        knownUvusFilter.rebuild();
+        apiTokenService.reload();
+        // Also from inside a read-only transaction, which would otherwise use the replica
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> directorshipIndex.rebuild());
+
+        assertEquals(replica, routing.getReplicaConnectionCount());
+        assertEquals(primary + 4, routing.getPrimaryConnectionCount());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private static final String PRIMARY = "jdbc:h2:mem:routing-primary";
+    private static final String REPLICA = "jdbc:h2:mem:routing-replica";
+    // Nothing listens on port 1: the connection is refused at once
+    private static final String DOWN = "jdbc:h2:tcp://localhost:1/mem:down";
+
+    @AfterEach
+    public void clearReadOnly() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void testReadOnlyGoesToReplicaAndWritesToPrimary() throws Exception {
+        var routing = new ReplicaRoutingDataSource(h2(PRIMARY), List.of(h2(REPLICA)), "", Duration.ofSeconds(5));
+
+        assertEquals(PRIMARY, urlOf(routing));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals(REPLICA, urlOf(routing));
+
+        assertEquals(1, routing.getPrimaryConnectionCount());
+        assertEquals(1, routing.getReplicaConnectionCount());
+    }
+
+    @Test
+    public void testUnreachableReplicaFallsBackToNextAndPrimary() throws Exception {
+        var routing = new ReplicaRoutingDataSource(h2(PRIMARY), List.of(h2(DOWN), h2(REPLICA)), "",
+                Duration.ofSeconds(5));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Whichever comes first, every read succeeds and the down replica is set aside
+        for (int i = 0; i < 4; i++) {
+            assertEquals(REPLICA, urlOf(routing));
+        }
+        assertEquals(1, routing.getReplicaFailureCount());
+        assertEquals(1, routing.getUsableReplicaCount());
+
+        var onlyDown = new ReplicaRoutingDataSource(h2(PRIMARY), List.of(h2(DOWN)), "", Duration.ofSeconds(5));
+        assertEquals(PRIMARY, urlOf(onlyDown));
+        onlyDown.checkReplicas();
+        assertEquals(0, onlyDown.getUsableReplicaCount());
+    }
+
+    @Test
+    public void testLaggingReplicaIsSkippedUntilItCatchesUp() throws Exception {
+        try (Connection connection = h2(REPLICA).getConnection()) {
+            connection.createStatement().execute("CREATE TABLE IF NOT EXISTS replica_lag (seconds INT)");
+            connection.createStatement().execute("DELETE FROM replica_lag");
+            connection.createStatement().execute("INSERT INTO replica_lag VALUES (30)");
+        }
+        var routing = new ReplicaRoutingDataSource(h2(PRIMARY), List.of(h2(REPLICA)),
+                "SELECT seconds FROM replica_lag", Duration.ofSeconds(5));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        routing.checkReplicas();
+        assertEquals(PRIMARY, urlOf(routing));
+
+        try (Connection connection = h2(REPLICA).getConnection()) {
+            connection.createStatement().execute("UPDATE replica_lag SET seconds = 1");
+        }
+        routing.checkReplicas();
+        assertEquals(REPLICA, urlOf(routing));
+    }
+
+    private static DataSource h2(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        // Kept open between connections, so the tables of a test outlive its connections
+        dataSource.setURL(url + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+
+    private static String urlOf(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+}
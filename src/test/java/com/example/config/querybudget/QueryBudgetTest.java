@@ -0,0 +1,116 @@
+package com.example.config.querybudget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.portfolio.Portfolio;
+import com.example.program.Program;
+import com.example.project.Project;
+import com.example.project.ProjectRepository;
+
+import jakarta.persistence.EntityManager;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@Transactional
+public class QueryBudgetTest {
+
+    @Autowired
+    QueryBudget queryBudget;
+    @Autowired
+    ProjectRepository projectRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    @Test
+    public void testCountsStatementsAndFlagsLoopedQuery() {
+        List<Long> ids = createProjects(6);
+
+        assertTrue(queryBudget.begin("test"));
+        for (Long id : ids) {
+            projectRepository.findById(id);
+        }
+        RequestQueryStats stats = queryBudget.end();
+
+        assertEquals(6, stats.getStatements());
+        assertEquals(6, stats.getEntitiesLoaded());
+        assertEquals(1, stats.getRepeatedShapes().size());
+        RequestQueryStats.Shape shape = stats.getRepeatedShapes().get(0);
+        assertEquals(6, shape.getCount());
+        assertTrue(shape.getStack().get(0).contains("QueryBudgetTest.testCountsStatementsAndFlagsLoopedQuery"),
+                shape.getStack().toString());
+    }
+
+    @Test
+    public void testWarnsOverBudgetAndOnRepeatedShapes() {
+        QueryBudget budget = new QueryBudget(2, 3);
+
+        budget.begin("test");
+        for (int id = 1; id <= 3; id++) {
+            budget.statementPrepared();
+            budget.statementInspected("select * from project where project_id = " + id);
+        }
+        RequestQueryStats stats = budget.end();
+
+        assertEquals(3, stats.getStatements());
+        assertEquals(1, budget.getOverBudgetCount());
+        assertEquals(1, budget.getNPlusOneCount());
+        assertEquals("select * from project where project_id = ?", stats.getRepeatedShapes().get(0).getSql());
+    }
+
+    @Test
+    public void testOnlyCountsInsideARequest() {
+        QueryBudget budget = new QueryBudget(2, 3);
+        budget.statementPrepared();
+        assertNull(budget.end());
+
+        assertTrue(budget.begin("outer"));
+        // A nested dispatch of the same request keeps counting into the outer one
+        assertFalse(budget.begin("inner"));
+        budget.rename("ProjectDetailView /project/1");
+        assertEquals("ProjectDetailView /project/1", budget.end().getName());
+        assertEquals(1, budget.getRequestCount());
+    }
+
+    @Test
+    public void testShapeIgnoresLiteralsAndInListLength() {
+        assertEquals("select p1_0.project_id from project p1_0 where p1_0.program_id in (?)",
+                QueryBudget.shapeOf("select p1_0.project_id\n    from project p1_0\n"
+                        + "    where p1_0.program_id in (?, ?,?)"));
+        assertEquals(QueryBudget.shapeOf("select * from users where user_id in (?) limit 10"),
+                QueryBudget.shapeOf("select * from users where user_id in (?,?) limit 20"));
+        assertEquals("select u.user_id from users u where u.user_id in (?) and (u.user_role=?)",
+                QueryBudget.shapeOf("select u.user_id from users u where u.user_id in ("
+                        + "?,".repeat(10_000) + "?) and (u.user_role=?)"));
+    }
+
+    private List<Long> createProjects(int count) {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("Budget portfolio");
+        entityManager.persist(portfolio);
+        Program program = new Program();
+        program.setName("Budget program");
+        program.setPortfolio(portfolio);
+        entityManager.persist(program);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Project project = new Project();
+            project.setName("Budget project " + i);
+            project.setProgram(program);
+            entityManager.persist(project);
+            ids.add(project.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return ids;
+    }
+}
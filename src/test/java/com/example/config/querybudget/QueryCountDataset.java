@@ -0,0 +1,184 @@
+package com.example.config.querybudget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pmo.PMO;
+import com.example.pmo.PMORepository;
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioRepository;
+import com.example.program.Program;
+import com.example.program.ProgramRepository;
+import com.example.project.Project;
+import com.example.project.ProjectRepository;
+import com.example.security.DirectorshipIndex;
+import com.example.user.Role;
+import com.example.user.User;
+import com.example.user.UserRepository;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Committed dataset large enough that a query per row shows up in the counts:
+ * 10 portfolios with a PMO and 10 programs each, 10 projects per program and 5
+ * members per project. Every portfolio and program has its own MANAGER
+ * director; the portfolio director sponsors its projects and the first member
+ * directs each project.
+ * <p>
+ * Written straight through the entity manager, so the directorship index is
+ * rebuilt afterwards; {@link #delete} removes it all again.
+ */
+public class QueryCountDataset {
+
+    public static final int PORTFOLIOS = 10;
+    public static final int PROGRAMS_PER_PORTFOLIO = 10;
+    public static final int PROJECTS_PER_PROGRAM = 10;
+    public static final int MEMBERS_PER_PROJECT = 5;
+    private static final int FLUSH_EVERY = 500;
+
+    private final String prefix;
+    private User admin;
+    private final List<Long> portfolioIds = new ArrayList<>();
+    private final List<Long> portfolioDirectorIds = new ArrayList<>();
+    private final List<Long> programIds = new ArrayList<>();
+    private final List<Long> projectIds = new ArrayList<>();
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> pmoIds = new ArrayList<>();
+    private final List<Long> userIds = new ArrayList<>();
+
+    private QueryCountDataset(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public static QueryCountDataset seed(String prefix, EntityManager entityManager,
+            PlatformTransactionManager transactionManager, DirectorshipIndex directorshipIndex) {
+        QueryCountDataset dataset = new QueryCountDataset(prefix);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> dataset.build(entityManager));
+        directorshipIndex.rebuild();
+        return dataset;
+    }
+
+    private void build(EntityManager entityManager) {
+        admin = user(entityManager, "admin", Role.ADMIN, null);
+        int rows = 0;
+        for (int i = 0; i < PORTFOLIOS; i++) {
+            User portfolioDirector = user(entityManager, "pf" + i, Role.MANAGER, null);
+            portfolioDirectorIds.add(portfolioDirector.getId());
+            Portfolio portfolio = new Portfolio();
+            portfolio.setName(prefix + " portfolio " + i);
+            portfolio.setDirector(portfolioDirector);
+            entityManager.persist(portfolio);
+            portfolioIds.add(portfolio.getId());
+
+            PMO pmo = new PMO();
+            pmo.setName(prefix + " PMO " + i);
+            pmo.setPortfolio(portfolio);
+            pmo.setDirector(portfolioDirector);
+            entityManager.persist(pmo);
+            pmoIds.add(pmo.getId());
+
+            for (int j = 0; j < PROGRAMS_PER_PORTFOLIO; j++) {
+                Program program = new Program();
+                program.setName(prefix + " program " + i + "." + j);
+                program.setPortfolio(portfolio);
+                program.setDirector(user(entityManager, "pg" + i + "." + j, Role.MANAGER, null));
+                entityManager.persist(program);
+                programIds.add(program.getId());
+
+                for (int k = 0; k < PROJECTS_PER_PROGRAM; k++) {
+                    Project project = new Project();
+                    project.setName(prefix + " project " + i + "." + j + "." + k);
+                    project.setProgram(program);
+                    project.setSponsor(portfolioDirector);
+                    entityManager.persist(project);
+                    projectIds.add(project.getId());
+
+                    for (int m = 0; m < MEMBERS_PER_PROJECT; m++) {
+                        User member = user(entityManager, i + "." + j + "." + k + "." + m, Role.USER, project);
+                        memberIds.add(member.getId());
+                        if (m == 0) {
+                            project.setDirector(member);
+                        }
+                    }
+                    if (++rows % FLUSH_EVERY == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                        // The current entities are detached by the clear
+                        portfolioDirector = entityManager.getReference(User.class, portfolioDirector.getId());
+                        portfolio = entityManager.getReference(Portfolio.class, portfolio.getId());
+                        program = entityManager.getReference(Program.class, program.getId());
+                    }
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private User user(EntityManager entityManager, String suffix, Role role, Project project) {
+        User user = new User();
+        user.setName(prefix + " " + suffix);
+        user.setUvus(prefix + "-" + suffix);
+        user.setRole(role);
+        user.setProject(project);
+        entityManager.persist(user);
+        userIds.add(user.getId());
+        return user;
+    }
+
+    /**
+     * Removes the dataset with bulk statements, portfolio by portfolio
+     */
+    public void delete(PlatformTransactionManager transactionManager, UserRepository userRepository,
+            ProjectRepository projectRepository, ProgramRepository programRepository, PMORepository pmoRepository,
+            PortfolioRepository portfolioRepository, DirectorshipIndex directorshipIndex) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (Long portfolioId : portfolioIds) {
+                userRepository.unassignUsersFromProjectsInPortfolio(portfolioId);
+                projectRepository.deleteByPortfolioId(portfolioId);
+                programRepository.deleteByPortfolioId(portfolioId);
+                pmoRepository.deleteByPortfolioId(portfolioId);
+            }
+            portfolioRepository.deleteAllByIdInBatch(portfolioIds);
+            userRepository.deleteAllByIdInBatch(userIds);
+        });
+        directorshipIndex.rebuild();
+    }
+
+    public User getAdmin() {
+        return admin;
+    }
+
+    public List<Long> getPortfolioIds() {
+        return portfolioIds;
+    }
+
+    /**
+     * MANAGER directing the portfolio of the same index
+     */
+    public List<Long> getPortfolioDirectorIds() {
+        return portfolioDirectorIds;
+    }
+
+    public List<Long> getProgramIds() {
+        return programIds;
+    }
+
+    public List<Long> getProjectIds() {
+        return projectIds;
+    }
+
+    /**
+     * Members in project order; the first of each project directs it
+     */
+    public List<Long> getMemberIds() {
+        return memberIds;
+    }
+
+    public List<Long> getPmoIds() {
+        return pmoIds;
+    }
+}
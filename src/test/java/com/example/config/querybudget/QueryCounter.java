@@ -0,0 +1,52 @@
+package com.example.config.querybudget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Counts the SQL statements an action runs, as one request counted by
+ * {@link QueryBudget}. The second-level cache is emptied first, so counts are
+ * those of a cold cache: the most an action can cost, and the same on every run.
+ */
+public class QueryCounter {
+
+    private final QueryBudget queryBudget;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public QueryCounter(QueryBudget queryBudget, EntityManagerFactory entityManagerFactory) {
+        this.queryBudget = queryBudget;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public void assertStatements(long expected, String name, Runnable action) {
+        RequestQueryStats stats = count(name, action);
+        assertEquals(expected, stats.getStatements(), () -> describe(stats));
+    }
+
+    public void assertAtMostStatements(long max, String name, Runnable action) {
+        RequestQueryStats stats = count(name, action);
+        assertTrue(stats.getStatements() <= max, () -> "more than " + max + ": " + describe(stats));
+    }
+
+    public RequestQueryStats count(String name, Runnable action) {
+        entityManagerFactory.getCache().evictAll();
+        queryBudget.begin(name);
+        RequestQueryStats stats;
+        try {
+            action.run();
+        } finally {
+            stats = queryBudget.end();
+        }
+        return stats;
+    }
+
+    private static String describe(RequestQueryStats stats) {
+        return stats.getName() + " ran " + stats.getStatements() + " statements:" + stats.getTopShapes(10).stream()
+                .map(shape -> "\n  " + shape.getCount() + " x " + shape.getSql())
+                .collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.config.querybudget;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.pmo.PMO;
+import com.example.pmo.PMORepository;
+import com.example.pmo.PMOService;
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioRepository;
+import com.example.portfolio.PortfolioService;
+import com.example.program.Program;
+import com.example.program.ProgramRepository;
+import com.example.program.ProgramService;
+import com.example.project.Project;
+import com.example.project.ProjectRepository;
+import com.example.project.ProjectService;
+import com.example.security.DirectorshipIndex;
+import com.example.security.PmisUserDetails;
+import com.example.security.UserVersions;
+import com.example.user.Role;
+import com.example.user.User;
+import com.example.user.UserRepository;
+import com.example.user.UserService;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Statements run by each public service method against {@link QueryCountDataset},
+ * signed in as an ADMIN, or as the director a write needs. Reads run outside
+ * any test transaction, as they do from a view; writes run in a transaction
+ * that is flushed inside the count and then rolled back. A count that grows means a query per row came back.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ServiceQueryCountTest {
+
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    ProjectService projectService;
+    @Autowired
+    PMOService pmoService;
+    @Autowired
+    UserService userService;
+    @Autowired
+    QueryBudget queryBudget;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    DirectorshipIndex directorshipIndex;
+    @Autowired
+    UserVersions userVersions;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    ProjectRepository projectRepository;
+    @Autowired
+    ProgramRepository programRepository;
+    @Autowired
+    PMORepository pmoRepository;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+
+    private QueryCountDataset dataset;
+    private QueryCounter counter;
+
+    @BeforeAll
+    public void seed() {
+        dataset = QueryCountDataset.seed("qc-service", entityManager, transactionManager, directorshipIndex);
+        counter = new QueryCounter(queryBudget, entityManagerFactory);
+    }
+
+    @AfterAll
+    public void cleanUp() {
+        dataset.delete(transactionManager, userRepository, projectRepository, programRepository, pmoRepository,
+                portfolioRepository, directorshipIndex);
+    }
+
+    @BeforeEach
+    public void setup() {
+        signInAs(dataset.getAdmin());
+    }
+
+    @Test
+    public void testPortfolioService() {
+        Long portfolioId = dataset.getPortfolioIds().get(0);
+        List<Long> portfolioIds = dataset.getPortfolioIds();
+
+        counter.assertStatements(2, "PortfolioService.get", () -> portfolioService.get(portfolioId));
+        counter.assertStatements(1, "PortfolioService.getAll", () -> portfolioService.getAll());
+        counter.assertStatements(1, "PortfolioService.getPage", () -> portfolioService.getPage(null, null, 50));
+        counter.assertStatements(1, "PortfolioService.hasPrograms", () -> portfolioService.hasPrograms(portfolioId));
+        counter.assertStatements(1, "PortfolioService.withPrograms",
+                () -> portfolioService.withPrograms(portfolioIds));
+        counter.assertStatements(1, "PortfolioService.getDependencies(id)",
+                () -> portfolioService.getDependencies(portfolioId));
+        counter.assertStatements(1, "PortfolioService.getDependencies(ids)",
+                () -> portfolioService.getDependencies(portfolioIds));
+
+        rolledBack(() -> {
+            Portfolio portfolio = new Portfolio();
+            portfolio.setName("qc portfolio");
+            portfolio.setDirector(entityManager.getReference(User.class, dataset.getPortfolioDirectorIds().get(0)));
+            insert(1, "PortfolioService.createOrUpdate", () -> portfolioService.createOrUpdate(portfolio));
+            write(3, "PortfolioService.delete", () -> portfolioService.delete(portfolio.getId()));
+        });
+        rolledBack(() -> write(6, "PortfolioService.deleteWithCascade",
+                () -> portfolioService.deleteWithCascade(portfolioId)));
+    }
+
+    @Test
+    public void testProgramService() {
+        Long portfolioId = dataset.getPortfolioIds().get(0);
+        Long programId = dataset.getProgramIds().get(0);
+        List<Long> programIds = dataset.getProgramIds();
+
+        counter.assertStatements(3, "ProgramService.get", () -> programService.get(programId));
+        counter.assertStatements(1, "ProgramService.getAll", () -> programService.getAll());
+        counter.assertStatements(1, "ProgramService.getPage", () -> programService.getPage(null, null, 50));
+        counter.assertStatements(1, "ProgramService.getByPortfolioId",
+                () -> programService.getByPortfolioId(portfolioId));
+        counter.assertStatements(1, "ProgramService.hasProjects", () -> programService.hasProjects(programId));
+        counter.assertStatements(1, "ProgramService.withProjects", () -> programService.withProjects(programIds));
+        counter.assertStatements(1, "ProgramService.getDependencies(id)",
+                () -> programService.getDependencies(programId));
+        counter.assertStatements(1, "ProgramService.getDependencies(ids)",
+                () -> programService.getDependencies(programIds));
+
+        rolledBack(() -> {
+            Program program = new Program();
+            program.setName("qc program");
+            program.setPortfolio(entityManager.getReference(Portfolio.class, portfolioId));
+            // Programs are created by the director of their portfolio
+            signInAs(userService.get(dataset.getPortfolioDirectorIds().get(0)));
+            insert(1, "ProgramService.createOrUpdate", () -> programService.createOrUpdate(program));
+            signInAs(dataset.getAdmin());
+            write(1, "ProgramService.delete", () -> programService.delete(program.getId()));
+        });
+        rolledBack(() -> write(4, "ProgramService.deleteWithCascade",
+                () -> programService.deleteWithCascade(programId)));
+    }
+
+    @Test
+    public void testProjectService() {
+        Long programId = dataset.getProgramIds().get(0);
+        Long projectId = dataset.getProjectIds().get(0);
+        Long memberId = dataset.getMemberIds().get(0);
+        List<Long> projectIds = dataset.getProjectIds();
+
+        counter.assertStatements(5, "ProjectService.get", () -> projectService.get(projectId));
+        counter.assertStatements(1, "ProjectService.getAll", () -> projectService.getAll());
+        counter.assertStatements(1, "ProjectService.getPage", () -> projectService.getPage(null, null, 50));
+        counter.assertStatements(1, "ProjectService.getByProgramId",
+                () -> projectService.getByProgramId(programId));
+        counter.assertStatements(1, "ProjectService.getByUserId", () -> projectService.getByUserId(memberId));
+        counter.assertStatements(1, "ProjectService.hasAssignedUsers",
+                () -> projectService.hasAssignedUsers(projectId));
+        counter.assertStatements(1, "ProjectService.withAssignedUsers",
+                () -> projectService.withAssignedUsers(projectIds));
+        counter.assertStatements(1, "ProjectService.getDependencies",
+                () -> projectService.getDependencies(projectIds));
+
+        rolledBack(() -> {
+            Project project = projectService.get(projectId);
+            project.setName("qc renamed project");
+            // Updated by its sponsor, the portfolio director
+            signInAs(userService.get(dataset.getPortfolioDirectorIds().get(0)));
+            write(1, "ProjectService.createOrUpdate", () -> projectService.createOrUpdate(project));
+            signInAs(dataset.getAdmin());
+        });
+        rolledBack(() -> write(3, "ProjectService.delete", () -> projectService.delete(projectId)));
+        rolledBack(() -> write(3, "ProjectService.deleteSafe", () -> projectService.deleteSafe(projectId)));
+    }
+
+    @Test
+    public void testPmoService() {
+        Long pmoId = dataset.getPmoIds().get(0);
+
+        counter.assertStatements(1, "PMOService.get", () -> pmoService.get(pmoId));
+        counter.assertStatements(1, "PMOService.getAll", () -> pmoService.getAll());
+        counter.assertStatements(1, "PMOService.getPage", () -> pmoService.getPage(null, null, 50));
+
+        rolledBack(() -> {
+            PMO pmo = new PMO();
+            pmo.setName("qc PMO");
+            pmo.setPortfolio(entityManager.getReference(Portfolio.class, dataset.getPortfolioIds().get(0)));
+            insert(1, "PMOService.createOrUpdate", () -> pmoService.createOrUpdate(pmo));
+        });
+        rolledBack(() -> write(2, "PMOService.delete", () -> pmoService.delete(pmoId)));
+    }
+
+    @Test
+    public void testUserService() {
+        Long projectId = dataset.getProjectIds().get(0);
+        Long otherProjectId = dataset.getProjectIds().get(1);
+        Long directorId = dataset.getMemberIds().get(0);
+        List<Long> memberIds = dataset.getMemberIds();
+        List<Long> firstMembers = memberIds.subList(0, QueryCountDataset.MEMBERS_PER_PROJECT);
+        String uvus = userService.get(directorId).getUvus();
+
+        counter.assertStatements(1, "UserService.get", () -> userService.get(directorId));
+        counter.assertStatements(1, "UserService.getAll", () -> userService.getAll());
+        counter.assertStatements(1, "UserService.getPage", () -> userService.getPage(null, null, 50));
+        counter.assertStatements(1, "UserService.findAllByRole", () -> userService.findAllByRole(Role.MANAGER));
+        counter.assertStatements(1, "UserService.findAllByRoles",
+                () -> userService.findAllByRoles(List.of(Role.MANAGER, Role.ADMIN)));
+        counter.assertStatements(1, "UserService.findRowsByRoles",
+                () -> userService.findRowsByRoles(List.of(Role.MANAGER, Role.ADMIN)));
+        counter.assertStatements(1, "UserService.searchAvailableForProject",
+                () -> userService.searchAvailableForProject(projectId, null, null, null, 50));
+        // One indexed query for the UVUS and one for the name
+        counter.assertStatements(2, "UserService.searchAvailableForProject",
+                () -> userService.searchAvailableForProject(projectId, "qc", null, null, 50));
+        counter.assertStatements(1, "UserService.findByProject", () -> userService.findByProject(projectId));
+        counter.assertStatements(1, "UserService.findRowsByProject",
+                () -> userService.findRowsByProject(projectId));
+        counter.assertStatements(1, "UserService.countByProject", () -> userService.countByProject(projectId));
+        counter.assertStatements(1, "UserService.findByUvus", () -> userService.findByUvus(uvus));
+        counter.assertStatements(1, "UserService.findByUvusWithProject",
+                () -> userService.findByUvusWithProject(uvus));
+        counter.assertStatements(1, "UserService.hasAssignedEntities",
+                () -> userService.hasAssignedEntities(directorId));
+        counter.assertStatements(1, "UserService.withAssignedEntities",
+                () -> userService.withAssignedEntities(memberIds));
+        counter.assertStatements(1, "UserService.getDependencies(id)",
+                () -> userService.getDependencies(directorId));
+        counter.assertStatements(1, "UserService.getDependencies(ids)",
+                () -> userService.getDependencies(memberIds));
+
+        rolledBack(() -> {
+            User user = new User();
+            user.setName("qc new manager");
+            user.setUvus("qc-new-manager");
+            // Admins create managers; users are created by PMO directors
+            user.setRole(Role.MANAGER);
+            insert(1, "UserService.createOrUpdate", () -> userService.createOrUpdate(user));
+            write(3, "UserService.delete", () -> userService.delete(user.getId()));
+        });
+
+        // Users are moved by the director of the PMO of their portfolio
+        signInAs(userService.get(dataset.getPortfolioDirectorIds().get(0)));
+        rolledBack(() -> write(3, "UserService.assignUsersToProject",
+                () -> userService.assignUsersToProject(otherProjectId, firstMembers)));
+        rolledBack(() -> write(2, "UserService.unassignUsersFromProject",
+                () -> userService.unassignUsersFromProject(projectId, firstMembers)));
+        signInAs(dataset.getAdmin());
+        rolledBack(() -> write(9, "UserService.deleteSafe", () -> userService.deleteSafe(directorId)));
+    }
+
+    private void signInAs(User user) {
+        PmisUserDetails principal = PmisUserDetails.of(user, userVersions.current(user.getId()));
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+
+    // Counts the action and the flush of what it wrote
+    private void write(long expected, String name, Runnable action) {
+        counter.assertStatements(expected, name, () -> {
+            action.run();
+            entityManager.flush();
+        });
+    }
+
+    // Plus the call to the id sequence when the pooled block of ids runs out,
+    // which depends on what the other tests inserted before
+    private void insert(long expected, String name, Runnable action) {
+        counter.assertAtMostStatements(expected + 1, name, () -> {
+            action.run();
+            entityManager.flush();
+        });
+    }
+
+    private void rolledBack(Runnable action) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            action.run();
+            status.setRollbackOnly();
+        });
+    }
+}
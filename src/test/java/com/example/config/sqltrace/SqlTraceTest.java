@@ -0,0 +1,186 @@
+package com.example.config.sqltrace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.example.apitoken.ApiTokenService;
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioRepository;
+import com.example.user.Role;
+import com.example.user.User;
+import com.example.user.UserService;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+public class SqlTraceTest {
+
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    SqlTrace sqlTrace;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+    @Autowired
+    ApiTokenService apiTokenService;
+    @Autowired
+    UserService userService;
+    @Autowired
+    WebApplicationContext context;
+
+    @Test
+    public void testRecordsBindsRowsAndBatches() throws Exception {
+        RecordingSqlTrace trace = new RecordingSqlTrace();
+        DataSource target = assertInstanceOf(TracingDataSource.class, dataSource).getTargetDataSource();
+        DataSource traced = new TracingDataSource(target, trace);
+
+        try (Connection connection = traced.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into portfolio (portfolio_id, portfolio_name) values (?, ?)")) {
+                for (long id = -3; id < 0; id++) {
+                    insert.setLong(1, id);
+                    insert.setString(2, "Traza");
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement select = connection.prepareStatement(
+                    "select portfolio_id from portfolio where portfolio_name = ? and portfolio_id < ?")) {
+                select.setString(1, "Traza");
+                select.setLong(2, 0);
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) {
+                        // Only the rows read are counted
+                    }
+                }
+            }
+            connection.rollback();
+        }
+
+        assertEquals(2, trace.recorded.size());
+        assertEquals("6 binds, 3 rows: insert into portfolio (portfolio_id, portfolio_name) values (?, ?)",
+                trace.recorded.get(0));
+        assertEquals("2 binds, 3 rows: select portfolio_id from portfolio where portfolio_name = ?"
+                + " and portfolio_id < ?", trace.recorded.get(1));
+    }
+
+    @Test
+    @Transactional
+    public void testApplicationStatementsAreTraced() {
+        long before = sqlTrace.getStatementCount();
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("Traza");
+        portfolioRepository.saveAndFlush(portfolio);
+
+        // The insert, and the sequence call if the pooled block of ids ran out
+        assertTrue(sqlTrace.getStatementCount() > before);
+    }
+
+    @Test
+    public void testRanksSlowestShapesAndBoundsThem() {
+        SqlTrace trace = new SqlTrace(Duration.ofMillis(5), 2, Duration.ofMinutes(1), 3, 10);
+        trace.record("select * from project where project_id = 1", 1, 1, 1_000_000);
+        trace.record("select * from project where project_id = 2", 1, 1, 9_000_000);
+        trace.record("select * from program where program_id = 1", 1, 1, 4_000_000);
+        trace.record("select * from users where user_id = 1", 1, 1, 6_000_000);
+        trace.record("select * from portfolio where portfolio_id = 1", 1, 1, 20_000_000);
+
+        List<SqlTrace.ShapeTiming> slowest = trace.getSlowest();
+        assertEquals(2, slowest.size());
+        assertEquals("select * from project where project_id = ?", slowest.get(0).sql());
+        assertEquals(2, slowest.get(0).count());
+        assertEquals(9.0, slowest.get(0).maxMillis());
+        assertEquals(5.0, slowest.get(0).averageMillis());
+        assertEquals("select * from users where user_id = ?", slowest.get(1).sql());
+        // A fourth shape does not fit the window, though it is still logged as slow
+        assertEquals(1, trace.getUntrackedShapeCount());
+        assertEquals(3, trace.getSlowCount());
+        assertEquals(5, trace.getStatementCount());
+        trace.shutdown();
+    }
+
+    // Not transactional: tokens are only accepted once committed
+    @Test
+    public void testEndpointIsOnlyForAdmins() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        loginAsSystem();
+        User admin = account("svc-trace-admin", Role.ADMIN);
+        User user = account("svc-trace-user", Role.USER);
+        try {
+            String adminToken = apiTokenService.issue(admin.getId(), "ops");
+            String userToken = apiTokenService.issue(user.getId(), "ci");
+            SecurityContextHolder.clearContext();
+
+            mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+            mockMvc.perform(get("/actuator/slowqueries")).andExpect(status().isUnauthorized());
+            mockMvc.perform(get("/actuator/slowqueries").header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+                    .andExpect(status().isForbidden());
+            mockMvc.perform(get("/actuator/slowqueries").header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.statements").isNumber())
+                    .andExpect(jsonPath("$.slowest").isArray());
+        } finally {
+            loginAsSystem();
+            // Admins cannot be deleted: demoted first
+            User demoted = userService.findByUvus(admin.getUvus());
+            demoted.setRole(Role.USER);
+            userService.createOrUpdate(demoted);
+            userService.delete(admin.getId());
+            userService.delete(user.getId());
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static void loginAsSystem() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("system", "pass",
+                List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+    }
+
+    private User account(String uvus, Role role) {
+        User user = new User();
+        user.setName("Traza");
+        user.setUvus(uvus);
+        user.setRole(role);
+        return userService.createOrUpdate(user);
+    }
+
+    private static final class RecordingSqlTrace extends SqlTrace {
+
+        final List<String> recorded = new ArrayList<>();
+
+        RecordingSqlTrace() {
+            super(Duration.ofHours(1), 10, Duration.ofMinutes(1), 100, 10);
+        }
+
+        @Override
+        void record(String sql, int binds, long rows, long nanos) {
+            recorded.add(binds + " binds, " + rows + " rows: " + sql);
+            super.record(sql, binds, rows, nanos);
+        }
+    }
+}
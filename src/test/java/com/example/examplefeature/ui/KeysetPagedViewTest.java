@@ -0,0 +1,90 @@
+package com.example.examplefeature.ui;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.example.pmo.PMOService;
+import com.example.portfolio.PortfolioRepository;
+import com.example.portfolio.PortfolioService;
+import com.example.program.ProgramService;
+import com.example.security.PmisUserDetails;
+import com.example.security.SecurityService;
+import com.example.security.UserVersions;
+import com.example.user.User;
+import com.example.user.UserService;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.grid.Grid;
+
+/**
+ * The list views page with {@link com.example.base.ui.component.KeysetPager},
+ * which always reads by name and id: no column may offer a sort the query
+ * would ignore.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+public class KeysetPagedViewTest {
+
+    @Autowired
+    PMOService pmoService;
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    UserService userService;
+    @Autowired
+    SecurityService securityService;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+    @Autowired
+    UserVersions userVersions;
+
+    @BeforeEach
+    public void setup() {
+        UI.setCurrent(new UI());
+        // The demo coordinator, an ADMIN; a real principal, as the views read it outside a transaction
+        User admin = userService.findByUvus("jmcordero");
+        PmisUserDetails principal = PmisUserDetails.of(admin, userVersions.current(admin.getId()));
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        UI.setCurrent(null);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testKeysetPagedGridsAreNotSortable() {
+        assertNotSortable(new PmoView(pmoService, portfolioService, userService));
+        assertNotSortable(new PortfolioView(portfolioService, userService, securityService));
+        assertNotSortable(new ProgramView(programService, userService, securityService, portfolioRepository));
+    }
+
+    private static void assertNotSortable(Component view) {
+        List<Grid<?>> grids = descendants(view).filter(Grid.class::isInstance).<Grid<?>>map(Grid.class::cast)
+                .toList();
+        assertFalse(grids.isEmpty(), view.getClass().getSimpleName());
+        for (Grid<?> grid : grids) {
+            assertFalse(grid.getColumns().isEmpty(), view.getClass().getSimpleName());
+            assertTrue(grid.getColumns().stream().noneMatch(Grid.Column::isSortable),
+                    view.getClass().getSimpleName() + " offers a sortable column");
+        }
+    }
+
+    private static Stream<Component> descendants(Component component) {
+        return Stream.concat(Stream.of(component), component.getChildren().flatMap(KeysetPagedViewTest::descendants));
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.examplefeature.ui;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.base.ui.MainLayout;
+import com.example.config.querybudget.QueryBudget;
+import com.example.config.querybudget.QueryCountDataset;
+import com.example.config.querybudget.QueryCounter;
+import com.example.pmo.PMORepository;
+import com.example.portfolio.PortfolioRepository;
+import com.example.portfolio.PortfolioService;
+import com.example.program.ProgramRepository;
+import com.example.program.ProgramService;
+import com.example.project.ProjectRepository;
+import com.example.project.ProjectService;
+import com.example.security.DirectorshipIndex;
+import com.example.security.PmisUserDetails;
+import com.example.security.SecurityService;
+import com.example.security.UserVersions;
+import com.example.user.User;
+import com.example.user.UserRepository;
+import com.example.user.UserService;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.data.provider.DataGenerator;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.data.renderer.LitRenderer;
+import com.vaadin.flow.data.renderer.Renderer;
+import com.vaadin.flow.dom.Element;
+import com.vaadin.flow.function.ValueProvider;
+import com.vaadin.flow.server.menu.MenuConfiguration;
+import com.vaadin.flow.spring.security.AuthenticationContext;
+
+import elemental.json.Json;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Statements run to build each view against {@link QueryCountDataset}, as the
+ * different users who open it, grid cells included: every cell of every grid is
+ * rendered, so a lazy association read per row fails the test (outside a
+ * transaction, as in the application) instead of passing unnoticed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ViewQueryCountTest {
+
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    ProjectService projectService;
+    @Autowired
+    UserService userService;
+    @Autowired
+    SecurityService securityService;
+    @Autowired
+    AuthenticationContext authContext;
+    @Autowired
+    QueryBudget queryBudget;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    DirectorshipIndex directorshipIndex;
+    @Autowired
+    UserVersions userVersions;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    ProjectRepository projectRepository;
+    @Autowired
+    ProgramRepository programRepository;
+    @Autowired
+    PMORepository pmoRepository;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+
+    private QueryCountDataset dataset;
+    private QueryCounter counter;
+    private User admin;
+    private User portfolioDirector;
+    private User programDirector;
+    private User projectDirector;
+
+    @BeforeAll
+    public void seed() {
+        dataset = QueryCountDataset.seed("qc-view", entityManager, transactionManager, directorshipIndex);
+        counter = new QueryCounter(queryBudget, entityManagerFactory);
+        admin = dataset.getAdmin();
+        portfolioDirector = userService.get(dataset.getPortfolioDirectorIds().get(0));
+        programDirector = programService.get(dataset.getProgramIds().get(0)).getDirector();
+        projectDirector = userService.get(dataset.getMemberIds().get(0));
+    }
+
+    @AfterAll
+    public void cleanUp() {
+        dataset.delete(transactionManager, userRepository, projectRepository, programRepository, pmoRepository,
+                portfolioRepository, directorshipIndex);
+    }
+
+    @BeforeEach
+    public void setup() {
+        UI.setCurrent(new UI());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        UI.setCurrent(null);
+    }
+
+    @Test
+    public void testProjectDetailView() {
+        Long projectId = dataset.getProjectIds().get(0);
+        Runnable open = () -> {
+            ProjectDetailView view = new ProjectDetailView(projectService, userService, userRepository,
+                    securityService);
+            view.setParameter(null, projectId);
+            renderGrids(view);
+        };
+
+        assertStatements(8, "ProjectDetailView", admin, open);
+        assertStatements(8, "ProjectDetailView", portfolioDirector, open);
+        assertStatements(7, "ProjectDetailView", projectDirector, open);
+    }
+
+    @Test
+    public void testPortfolioDetailView() {
+        Long portfolioId = dataset.getPortfolioIds().get(0);
+        Runnable open = () -> {
+            PortfolioDetailView view = new PortfolioDetailView(portfolioService, programService, userService,
+                    securityService);
+            view.setParameter(null, portfolioId);
+            renderGrids(view);
+        };
+
+        assertStatements(3, "PortfolioDetailView", admin, open);
+        assertStatements(4, "PortfolioDetailView", portfolioDirector, open);
+    }
+
+    @Test
+    public void testProgramDetailView() {
+        Long programId = dataset.getProgramIds().get(0);
+        Runnable open = () -> {
+            ProgramDetailView view = new ProgramDetailView(programService, projectService, userService,
+                    securityService);
+            view.setParameter(null, programId);
+            renderGrids(view);
+        };
+
+        assertStatements(5, "ProgramDetailView", admin, open);
+        assertStatements(5, "ProgramDetailView", portfolioDirector, open);
+        assertStatements(5, "ProgramDetailView", programDirector, open);
+    }
+
+    @Test
+    public void testHomeView() {
+        Runnable open = () -> renderGrids(new HomeView(authContext, userService, projectService, securityService));
+
+        // Managers get links only; a USER is shown the project it is assigned to
+        assertStatements(0, "HomeView", admin, open);
+        assertStatements(0, "HomeView", portfolioDirector, open);
+        assertStatements(1, "HomeView", projectDirector, open);
+    }
+
+    @Test
+    public void testMainLayout() {
+        // The menu entries come from the route registry of a running servlet
+        try (MockedStatic<MenuConfiguration> menu = Mockito.mockStatic(MenuConfiguration.class)) {
+            menu.when(MenuConfiguration::getMenuEntries).thenReturn(List.of());
+            Runnable open = () -> new MainLayout(authContext, securityService);
+
+            // Name and role come from the principal
+            assertStatements(0, "MainLayout", admin, open);
+            assertStatements(0, "MainLayout", projectDirector, open);
+        }
+    }
+
+    private void assertStatements(long expected, String view, User user, Runnable open) {
+        signInAs(user);
+        counter.assertStatements(expected, view + " as " + user.getUvus(), open);
+    }
+
+    private void signInAs(User user) {
+        PmisUserDetails principal = PmisUserDetails.of(user, userVersions.current(user.getId()));
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+
+    // What the browser would be sent: every cell of every in-memory grid
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void renderGrids(Component root) {
+        descendants(root).filter(Grid.class::isInstance).map(Grid.class::cast).forEach(grid -> {
+            for (Object item : grid.getListDataView().getItems().toList()) {
+                for (Object column : grid.getColumns()) {
+                    Renderer renderer = ((Grid.Column) column).getRenderer();
+                    if (renderer instanceof ComponentRenderer componentRenderer) {
+                        componentRenderer.createComponent(item);
+                    } else if (renderer instanceof LitRenderer litRenderer) {
+                        litRenderer.getValueProviders().values()
+                                .forEach(provider -> ((ValueProvider) provider).apply(item));
+                    } else {
+                        renderer.render(new Element("div"), null).getDataGenerator().ifPresent(
+                                generator -> ((DataGenerator) generator).generateData(item, Json.createObject()));
+                    }
+                }
+            }
+        });
+    }
+
+    private static Stream<Component> descendants(Component component) {
+        return Stream.concat(Stream.of(component), component.getChildren().flatMap(ViewQueryCountTest::descendants));
+    }
+}
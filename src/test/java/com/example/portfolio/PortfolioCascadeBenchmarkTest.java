@@ -0,0 +1,150 @@
+package com.example.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.pmo.PMO;
+import com.example.pmo.PMOService;
+import com.example.program.Program;
+import com.example.program.ProgramService;
+import com.example.project.Project;
+import com.example.project.ProjectRepository;
+import com.example.user.Role;
+import com.example.user.User;
+import com.example.user.UserService;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Cascade delete of a portfolio with 1k programs and 10k projects, one member
+ * per project: program by program (the previous implementation) against the
+ * set-based {@link PortfolioService#deleteWithCascade}. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, properties = "spring.jpa.show-sql=false")
+@Transactional
+public class PortfolioCascadeBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioCascadeBenchmarkTest.class);
+
+    private static final int PROGRAMS = 1_000;
+    private static final int PROJECTS_PER_PROGRAM = 10;
+    private static final int FLUSH_EVERY = 1_000;
+
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    PMOService pmoService;
+    @Autowired
+    ProjectRepository projectRepository;
+    @Autowired
+    UserService userService;
+    @Autowired
+    EntityManager entityManager;
+
+    @BeforeEach
+    public void setup() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("system", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+        User admin = new User();
+        admin.setName("Bench admin");
+        admin.setUvus("bench-admin");
+        admin.setRole(Role.ADMIN);
+        userService.createOrUpdate(admin);
+
+        // The program delete policy only lets the ADMIN role through
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("bench-admin", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+
+    @Test
+    public void cascadeDelete() {
+        long perProgram = time(build("per-program"), this::deletePerProgram);
+        long setBased = time(build("set-based"), portfolioService::deleteWithCascade);
+
+        log.info("Cascade delete of {} programs and {} projects: per-program {} ms, set-based {} ms", PROGRAMS,
+                PROGRAMS * PROJECTS_PER_PROGRAM, perProgram / 1_000_000, setBased / 1_000_000);
+    }
+
+    // What deleteWithCascade did before: one permission check and three
+    // statements per program, then the PMOs and the portfolio
+    private void deletePerProgram(Long portfolioId) {
+        for (Program program : programService.getByPortfolioId(portfolioId)) {
+            programService.deleteWithCascade(program.getId());
+        }
+        portfolioService.delete(portfolioId);
+    }
+
+    private long time(Long portfolioId, Consumer<Long> delete) {
+        long projectsBefore = projectRepository.count();
+        long start = System.nanoTime();
+        delete.accept(portfolioId);
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+
+        entityManager.clear();
+        assertNull(portfolioService.get(portfolioId));
+        assertEquals(projectsBefore - PROGRAMS * PROJECTS_PER_PROGRAM, projectRepository.count());
+        return elapsed;
+    }
+
+    private Long build(String name) {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName(name);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+        PMO pmo = new PMO();
+        pmo.setName(name + " PMO");
+        pmo.setPortfolio(portfolio);
+        pmoService.createOrUpdate(pmo);
+        Long portfolioId = portfolio.getId();
+
+        int rows = 0;
+        for (int i = 0; i < PROGRAMS; i++) {
+            Program program = new Program();
+            program.setName(name + " program " + i);
+            program.setPortfolio(entityManager.getReference(Portfolio.class, portfolioId));
+            entityManager.persist(program);
+            for (int j = 0; j < PROJECTS_PER_PROGRAM; j++) {
+                Project project = new Project();
+                project.setName(program.getName() + " project " + j);
+                project.setProgram(program);
+                entityManager.persist(project);
+
+                User member = new User();
+                member.setName(project.getName() + " member");
+                member.setUvus(name + "-" + i + "-" + j);
+                member.setRole(Role.USER);
+                member.setProject(project);
+                entityManager.persist(member);
+                rows++;
+            }
+            if (rows % FLUSH_EVERY == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return portfolioId;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.portfolio;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -9,8 +10,19 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.config.SecondLevelCacheConfig;
+import com.example.config.SecondLevelCacheStatistics;
+import com.example.pmo.PMO;
+import com.example.pmo.PMOService;
+import com.example.program.Program;
+import com.example.program.ProgramService;
+import com.example.project.Project;
+import com.example.project.ProjectService;
+import com.example.security.DirectorshipIndex;
 import com.example.user.User;
 import com.example.user.UserService;
 import com.example.user.Role;
@@ -23,6 +35,20 @@ class PortfolioServiceTest {
     PortfolioService portfolioService;
     @Autowired
     UserService userService;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+    @Autowired
+    SecondLevelCacheStatistics cacheStatistics;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    ProjectService projectService;
+    @Autowired
+    PMOService pmoService;
+    @Autowired
+    DirectorshipIndex directorshipIndex;
 
     @org.junit.jupiter.api.BeforeEach
     public void setupSecurity() {
@@ -245,6 +271,121 @@ class PortfolioServiceTest {
         org.springframework.security.core.context.SecurityContextHolder.clearContext();
     }
 
+    @Test
+    public void testDependenciesCountSubtree() {
+        var portfolio = new Portfolio();
+        portfolio.setName("Dependencies Portfolio");
+        var createdPortfolio = portfolioService.createOrUpdate(portfolio);
+        var empty = new Portfolio();
+        empty.setName("Empty Portfolio");
+        var createdEmpty = portfolioService.createOrUpdate(empty);
+
+        var programIds = new java.util.ArrayList<Long>();
+        for (int i = 0; i < 2; i++) {
+            var program = new Program();
+            program.setName("Dependencies program " + i);
+            program.setPortfolio(createdPortfolio);
+            programIds.add(programService.createOrUpdate(program).getId());
+        }
+        Project member = null;
+        for (int j = 0; j < 3; j++) {
+            var project = new Project();
+            project.setName("Dependencies project " + j);
+            project.setProgram(programService.get(programIds.get(0)));
+            member = projectService.createOrUpdate(project);
+        }
+        var pmo = new PMO();
+        pmo.setName("Dependencies PMO");
+        pmo.setPortfolio(createdPortfolio);
+        pmoService.createOrUpdate(pmo);
+        var user = new User();
+        user.setName("Dependencies Member");
+        user.setUvus("dependencies_member");
+        user.setProject(member);
+        userService.createOrUpdate(user);
+
+        var dependencies = portfolioService.getDependencies(createdPortfolio.getId());
+        assertEquals(2, dependencies.programs());
+        assertEquals(3, dependencies.projects());
+        assertEquals(1, dependencies.pmos());
+        assertTrue(dependencies.hasPrograms());
+        assertTrue(!portfolioService.getDependencies(createdEmpty.getId()).hasPrograms());
+        assertNull(portfolioService.getDependencies(-1L));
+        assertTrue(portfolioService.hasPrograms(createdPortfolio.getId()));
+        assertTrue(!portfolioService.hasPrograms(createdEmpty.getId()));
+        assertEquals(java.util.Set.of(createdPortfolio.getId()),
+                portfolioService.withPrograms(java.util.List.of(createdPortfolio.getId(), createdEmpty.getId())));
+
+        var programs = programService.getDependencies(programIds);
+        assertEquals(3, programs.get(programIds.get(0)).projects());
+        assertEquals(1, programs.get(programIds.get(0)).members());
+        assertTrue(!programs.get(programIds.get(1)).hasProjects());
+        assertEquals(java.util.Set.of(programIds.get(0)), programService.withProjects(programIds));
+        assertEquals(java.util.Set.of(member.getId()),
+                projectService.withAssignedUsers(java.util.List.of(member.getId())));
+        assertEquals(1, projectService.getDependencies(java.util.List.of(member.getId())).get(member.getId())
+                .members());
+    }
+
+    @Test
+    public void testDeleteWithCascadeRemovesWholeSubtree() {
+        var programDirector = new User();
+        programDirector.setName("Subtree Director");
+        programDirector.setUvus("subtree_director");
+        programDirector.setRole(Role.MANAGER);
+        programDirector = userService.createOrUpdate(programDirector);
+
+        var portfolio = new Portfolio();
+        portfolio.setName("Subtree Portfolio");
+        var createdPortfolio = portfolioService.createOrUpdate(portfolio);
+        var other = new Portfolio();
+        other.setName("Untouched Portfolio");
+        var createdOther = portfolioService.createOrUpdate(other);
+
+        var projectIds = new java.util.ArrayList<Long>();
+        var programIds = new java.util.ArrayList<Long>();
+        for (var parent : java.util.List.of(createdPortfolio, createdOther)) {
+            for (int i = 0; i < 3; i++) {
+                var program = new Program();
+                program.setName(parent.getName() + " program " + i);
+                program.setPortfolio(parent);
+                program.setDirector(programDirector);
+                program = programService.createOrUpdate(program);
+                programIds.add(program.getId());
+                for (int j = 0; j < 2; j++) {
+                    var project = new Project();
+                    project.setName(program.getName() + " project " + j);
+                    project.setProgram(program);
+                    projectIds.add(projectService.createOrUpdate(project).getId());
+                }
+            }
+        }
+        var pmo = new PMO();
+        pmo.setName("Subtree PMO");
+        pmo.setPortfolio(createdPortfolio);
+        var pmoId = pmoService.createOrUpdate(pmo).getId();
+
+        var member = new User();
+        member.setName("Subtree Member");
+        member.setUvus("subtree_member");
+        member.setProject(projectService.get(projectIds.get(0)));
+        var memberId = userService.createOrUpdate(member).getId();
+
+        portfolioService.deleteWithCascade(createdPortfolio.getId());
+
+        assertNull(portfolioService.get(createdPortfolio.getId()));
+        assertNull(pmoService.get(pmoId));
+        // The first 3 programs and 6 projects belong to the deleted portfolio
+        for (int i = 0; i < programIds.size(); i++) {
+            assertEquals(i >= 3, programService.get(programIds.get(i)) != null);
+            assertEquals(i >= 3, directorshipIndex.isProgramDirector(programDirector.getId(), programIds.get(i)));
+        }
+        for (int i = 0; i < projectIds.size(); i++) {
+            assertEquals(i >= 6, projectService.get(projectIds.get(i)) != null);
+        }
+        assertNull(userService.get(memberId).getProject());
+    }
+
     @Test
     public void testCreateWithoutAuth() {
         // This test ensures DataInitializer can create Portfolios without
@@ -263,4 +404,34 @@ class PortfolioServiceTest {
         assertNotNull(createdPortfolio);
         assertTrue(createdPortfolio.getName().equals("No Auth Portfolio"));
     }
+
+    // Outside the test transaction: a read-write cache entry is only visible to
+    // sessions opened after it was stored, as with each request in the application
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testGetIsCachedAndBulkUnassignEvicts() {
+        var manager = new User();
+        manager.setName("Cached Director");
+        manager.setUvus("cached_director");
+        manager.setRole(Role.MANAGER);
+        var managerId = userService.createOrUpdate(manager).getId();
+        var portfolio = new Portfolio();
+        portfolio.setName("Cached Portfolio");
+        portfolio.setDirector(userService.get(managerId));
+        var id = portfolioService.createOrUpdate(portfolio).getId();
+        try {
+            portfolioService.get(id);
+            long hits = cacheStatistics.getHitCount(SecondLevelCacheConfig.PORTFOLIO_REGION);
+            var cached = portfolioService.get(id);
+            assertTrue(cacheStatistics.getHitCount(SecondLevelCacheConfig.PORTFOLIO_REGION) > hits);
+            assertEquals(managerId, cached.getDirector().getId());
+
+            // The bulk update must not leave the cached director behind
+            transactionTemplate.executeWithoutResult(status -> portfolioRepository.unassignDirector(managerId));
+            assertNull(portfolioService.get(id).getDirector());
+        } finally {
+            portfolioService.delete(id);
+            userService.delete(managerId);
+        }
+    }
 }
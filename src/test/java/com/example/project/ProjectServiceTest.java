@@ -1,5 +1,6 @@
 package com.example.project;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -10,7 +11,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.user.MembershipChange;
 import com.example.user.User;
+import com.example.user.UserRow;
 import com.example.user.UserService;
 import com.example.user.Role;
 import com.example.program.Program;
@@ -428,4 +431,182 @@ class ProjectServiceTest {
         projectService.delete(createdProject.getId());
         assertNull(projectService.get(createdProject.getId()));
     }
+
+    @Test
+    public void testGetPageKeepsRoleScope() {
+        var manager = new User();
+        manager.setName("Paging Manager");
+        manager.setUvus("paging_manager");
+        manager.setRole(Role.MANAGER);
+        userService.createOrUpdate(manager);
+
+        var portfolio = new Portfolio();
+        portfolio.setName("Paging Portfolio");
+        portfolio.setDirector(manager);
+        portfolioService.createOrUpdate(portfolio);
+
+        var program = new Program();
+        program.setName("Paging Program");
+        program.setPortfolio(portfolio);
+        program.setDirector(manager);
+        programService.createOrUpdate(program);
+
+        for (int i = 0; i < 7; i++) {
+            var project = new Project();
+            project.setName("Paged Project " + (i % 3));
+            project.setProgram(program);
+            projectService.createOrUpdate(project);
+        }
+
+        // The program director pages through their 7 projects only, in name and id order
+        org.springframework.security.core.context.SecurityContextHolder.getContext()
+                .setAuthentication(new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
+                        "paging_manager", "password",
+                        java.util.List.of(new org.springframework.security.core.authority.SimpleGrantedAuthority(
+                                "ROLE_MANAGER"))));
+        var walked = new java.util.ArrayList<ProjectRow>();
+        var page = projectService.getPage(null, null, 2);
+        while (!page.isEmpty()) {
+            walked.addAll(page);
+            var last = page.get(page.size() - 1);
+            page = projectService.getPage(last.name(), last.id(), 2);
+        }
+        assertEquals(7, walked.size());
+        assertEquals(walked.stream()
+                .sorted(java.util.Comparator.comparing(ProjectRow::name).thenComparing(ProjectRow::id))
+                .toList(), walked);
+        assertTrue(walked.stream().allMatch(project -> project.programId().equals(program.getId())));
+        assertTrue(walked.stream().allMatch(project -> "Paging Program".equals(project.programName())));
+    }
+
+    @Test
+    public void testFindByProjectReturnsOnlyMembers() {
+        var portfolio = new Portfolio();
+        portfolio.setName("Members Portfolio");
+        portfolioService.createOrUpdate(portfolio);
+
+        var program = new Program();
+        program.setName("Members Program");
+        program.setPortfolio(portfolio);
+        programService.createOrUpdate(program);
+
+        var team = new Project();
+        team.setName("Team");
+        team.setProgram(program);
+        var createdTeam = projectService.createOrUpdate(team);
+        var other = new Project();
+        other.setName("Other Team");
+        other.setProgram(program);
+        var createdOther = projectService.createOrUpdate(other);
+
+        for (int i = 0; i < 4; i++) {
+            var user = new User();
+            user.setName("Member " + i);
+            user.setUvus("member_" + i);
+            user.setProject(i < 3 ? createdTeam : createdOther);
+            userService.createOrUpdate(user);
+        }
+
+        var members = userService.findByProject(createdTeam.getId());
+        assertEquals(java.util.List.of("member_0", "member_1", "member_2"),
+                members.stream().map(User::getUvus).toList());
+        assertEquals(java.util.List.of("member_0", "member_1", "member_2"),
+                userService.findRowsByProject(createdTeam.getId()).stream().map(UserRow::uvus).toList());
+        assertEquals(3, userService.countByProject(createdTeam.getId()));
+        assertEquals(1, userService.countByProject(createdOther.getId()));
+        assertTrue(userService.findByProject(null).isEmpty());
+    }
+
+    @Test
+    public void testBulkAssignmentReportsEachUser() {
+        var portfolio = new Portfolio();
+        portfolio.setName("Bulk Portfolio");
+        portfolioService.createOrUpdate(portfolio);
+
+        var program = new Program();
+        program.setName("Bulk Program");
+        program.setPortfolio(portfolio);
+        programService.createOrUpdate(program);
+
+        var director = new User();
+        director.setName("Bulk Director");
+        director.setUvus("bulk_director");
+        director = userService.createOrUpdate(director);
+
+        var project = new Project();
+        project.setName("Bulk Project");
+        project.setProgram(program);
+        project.setDirector(director);
+        var createdProject = projectService.createOrUpdate(project);
+
+        var ids = new java.util.ArrayList<Long>();
+        for (int i = 0; i < 3; i++) {
+            var user = new User();
+            user.setName("Bulk " + i);
+            user.setUvus("bulk_" + i);
+            ids.add(userService.createOrUpdate(user).getId());
+        }
+        var manager = new User();
+        manager.setName("Bulk Manager");
+        manager.setUvus("bulk_manager");
+        manager.setRole(Role.MANAGER);
+        var managerId = userService.createOrUpdate(manager).getId();
+
+        // The project director assigns users, but not managers
+        org.springframework.security.core.context.SecurityContextHolder.getContext()
+                .setAuthentication(new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
+                        "bulk_director", "password",
+                        java.util.List.of(new org.springframework.security.core.authority.SimpleGrantedAuthority(
+                                "ROLE_USER"))));
+
+        var requested = java.util.List.of(ids.get(0), ids.get(1), ids.get(2), managerId, -1L);
+        var results = userService.assignUsersToProject(createdProject.getId(), requested);
+        assertEquals(requested, java.util.List.copyOf(results.keySet()));
+        assertEquals(java.util.List.of(MembershipChange.CHANGED, MembershipChange.CHANGED, MembershipChange.CHANGED,
+                MembershipChange.FORBIDDEN, MembershipChange.NOT_FOUND), java.util.List.copyOf(results.values()));
+        assertEquals(3, userService.countByProject(createdProject.getId()));
+        assertNull(userService.get(managerId).getProject());
+
+        // Assigning again changes nothing
+        assertEquals(MembershipChange.UNCHANGED,
+                userService.assignUsersToProject(createdProject.getId(), java.util.List.of(ids.get(0))).get(ids.get(0)));
+
+        var removed = userService.unassignUsersFromProject(createdProject.getId(),
+                java.util.List.of(ids.get(0), ids.get(1)));
+        assertTrue(removed.values().stream().allMatch(r -> r == MembershipChange.CHANGED));
+        assertEquals(1, userService.countByProject(createdProject.getId()));
+        assertNull(userService.get(ids.get(0)).getProject());
+        assertEquals(createdProject.getId(), userService.get(ids.get(2)).getProject().getId());
+    }
+
+    @Test
+    public void testBulkAssignmentRequiresPermissionOnProject() {
+        var portfolio = new Portfolio();
+        portfolio.setName("Denied Portfolio");
+        portfolioService.createOrUpdate(portfolio);
+
+        var program = new Program();
+        program.setName("Denied Program");
+        program.setPortfolio(portfolio);
+        programService.createOrUpdate(program);
+
+        var project = new Project();
+        project.setName("Denied Project");
+        project.setProgram(program);
+        var createdProject = projectService.createOrUpdate(project);
+
+        var outsider = new User();
+        outsider.setName("Outsider");
+        outsider.setUvus("outsider");
+        var outsiderId = userService.createOrUpdate(outsider).getId();
+
+        org.springframework.security.core.context.SecurityContextHolder.getContext()
+                .setAuthentication(new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
+                        "outsider", "password",
+                        java.util.List.of(new org.springframework.security.core.authority.SimpleGrantedAuthority(
+                                "ROLE_USER"))));
+
+        org.junit.jupiter.api.Assertions.assertThrows(SecurityException.class,
+                () -> userService.assignUsersToProject(createdProject.getId(), java.util.List.of(outsiderId)));
+    }
 }
@@ -1,33 +1,64 @@
 package com.example.security;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import com.example.pmo.PMO;
 import com.example.pmo.PMOService;
 import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioRepository;
 import com.example.portfolio.PortfolioService;
 import com.example.program.Program;
+import com.example.program.ProgramRepository;
 import com.example.program.ProgramService;
 import com.example.project.Project;
+import com.example.project.ProjectRepository;
 import com.example.project.ProjectService;
+import com.example.security.policy.Decision;
+import com.example.security.policy.PolicyAction;
+import com.example.security.policy.PolicyEngine;
+import com.example.security.ratelimit.RateLimitBucket;
+import com.example.security.ratelimit.RateLimitExceededException;
+import com.example.security.ratelimit.RateLimiter;
 import com.example.user.Role;
 import com.example.user.User;
 import com.example.user.UserService;
 
+import jakarta.persistence.EntityManager;
+
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
 @Transactional
 public class SecurityPermissionTest {
@@ -44,6 +75,28 @@ public class SecurityPermissionTest {
     ProjectService projectService;
     @Autowired
     SecurityService securityService;
+    @Autowired
+    UserVersions userVersions;
+    @Autowired
+    KnownUvusFilter knownUvusFilter;
+    @Autowired
+    CustomUserDetailsService userDetailsService;
+    @Autowired
+    PolicyEngine policyEngine;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    PortfolioRepository portfolioRepository;
+    @Autowired
+    ProgramRepository programRepository;
+    @Autowired
+    ProjectRepository projectRepository;
+    @Autowired
+    RateLimiter rateLimiter;
+    @Autowired
+    DirectorshipIndex directorshipIndex;
+    @Autowired
+    WebApplicationContext context;
 
     private User admin;
     private User manager1; // Portfolio Director
@@ -416,4 +469,473 @@ public class SecurityPermissionTest {
         u.setRole(Role.MANAGER);
         userService.createOrUpdate(u);
     }
+
+    @Test
+    public void testCurrentUserIsResolvedOncePerRequest() {
+        authenticateAsSystem();
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("P1");
+        portfolio.setDirector(manager1);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        PMO pmo = new PMO();
+        pmo.setName("PMO1");
+        pmo.setPortfolio(portfolio);
+        pmo.setDirector(manager3);
+        pmoService.createOrUpdate(pmo);
+
+        authenticate(manager3);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            long lookupsBefore = securityService.getCurrentUserLookupCount();
+            long savedBefore = securityService.getSavedCurrentUserLookupCount();
+
+            assertTrue(securityService.isPmoDirector());
+            assertTrue(securityService.isManager());
+            assertTrue(securityService.isAdminOrManager());
+            assertTrue(securityService.isCurrentUser(manager3.getId()));
+
+            assertEquals(1, securityService.getCurrentUserLookupCount() - lookupsBefore);
+            assertEquals(3, securityService.getSavedCurrentUserLookupCount() - savedBefore);
+
+            // Saving the current user drops the memo
+            securityService.onUserChanged(manager3.getId());
+            assertTrue(securityService.isManager());
+            assertEquals(2, securityService.getCurrentUserLookupCount() - lookupsBefore);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    public void testDirectorshipIndexFollowsReassignments() {
+        authenticateAsSystem();
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("P1");
+        portfolio.setDirector(manager1);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        Program program = new Program();
+        program.setName("Prog1");
+        program.setPortfolio(portfolio);
+        program.setDirector(manager2);
+        program = programService.createOrUpdate(program);
+
+        authenticate(manager1);
+        assertTrue(securityService.isPortfolioDirector(portfolio.getId()));
+        assertFalse(securityService.isProgramDirector(program.getId()));
+
+        // Hand the portfolio over to manager2
+        authenticateAsSystem();
+        portfolio.setDirector(manager2);
+        portfolioService.createOrUpdate(portfolio);
+
+        authenticate(manager1);
+        assertFalse(securityService.isPortfolioDirector(portfolio.getId()));
+        authenticate(manager2);
+        assertTrue(securityService.isPortfolioDirector(portfolio.getId()));
+        assertTrue(securityService.isProgramDirector(program.getId()));
+    }
+
+    @Test
+    public void testDirectorshipIndexSharesOnlyCommittedGrants() {
+        authenticateAsSystem();
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("P1");
+        portfolio.setDirector(manager1);
+        Long portfolioId = portfolioService.createOrUpdate(portfolio).getId();
+        Long directorId = manager1.getId();
+
+        // The transaction sees its own grant; another request does not until it commits
+        assertTrue(directorshipIndex.isPortfolioDirector(directorId, portfolioId));
+        assertTrue(directorshipIndex.portfoliosDirectedBy(directorId).contains(portfolioId));
+        assertFalse(CompletableFuture.supplyAsync(() -> directorshipIndex.isPortfolioDirector(directorId, portfolioId))
+                .join());
+    }
+
+    @Test
+    public void testPrincipalCarriesIdentityAndFollowsRoleChanges() {
+        authenticateAsSystem();
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("P1");
+        portfolio.setDirector(manager1);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        PmisUserDetails principal = PmisUserDetails.of(manager1, userVersions.current(manager1.getId()));
+        Authentication login = UsernamePasswordAuthenticationToken.authenticated(principal, null,
+                principal.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(login);
+
+        // Identity checks are answered from the principal, without lookups
+        long lookupsBefore = securityService.getCurrentUserLookupCount();
+        assertEquals(manager1.getId(), securityService.getCurrentUserId());
+        assertTrue(securityService.isManager());
+        assertFalse(securityService.isAdmin());
+        assertTrue(securityService.isCurrentUser(manager1.getId()));
+        assertTrue(securityService.isPortfolioDirector(portfolio.getId()));
+        assertTrue(securityService.directsAnyPortfolio());
+        assertFalse(securityService.directsAnyProgram());
+        assertEquals(0, securityService.getCurrentUserLookupCount() - lookupsBefore);
+
+        // Promote the user while the session is alive
+        authenticateAsSystem();
+        manager1.setRole(Role.ADMIN);
+        userService.createOrUpdate(manager1);
+        SecurityContextHolder.getContext().setAuthentication(login);
+
+        assertTrue(securityService.isAdmin());
+        assertEquals(Role.ADMIN, principal.getRole());
+        assertTrue(SecurityContextHolder.getContext().getAuthentication().getAuthorities()
+                .contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+    }
+
+    @Test
+    public void testPasswordHashingRejectsWhenSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "{hashed}" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encode(rawPassword).equals(encodedPassword);
+            }
+        };
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1);
+        try {
+            // One hash running, one waiting in the queue
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((encoder.getActiveCount() < 1 || encoder.getQueueDepth() < 1)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(PasswordHashingBusyException.class, () -> encoder.matches("c", "{hashed}c"));
+            assertEquals(1, encoder.getRejectedCount());
+
+            release.countDown();
+            assertEquals("{hashed}a", running.get(5, TimeUnit.SECONDS));
+            assertEquals("{hashed}b", queued.get(5, TimeUnit.SECONDS));
+            assertEquals(2, encoder.getCompletedCount());
+        } finally {
+            release.countDown();
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnknownUvusIsRejectedByFilter() {
+        // Users seeded at startup are in the filter
+        assertTrue(knownUvusFilter.mightExist("jmcordero"));
+        assertEquals("jmcordero", userDetailsService.loadUserByUsername("jmcordero").getUsername());
+
+        long rejectedBefore = knownUvusFilter.getRejectedCount();
+        long falsePositivesBefore = knownUvusFilter.getFalsePositiveCount();
+        for (int i = 0; i < 100; i++) {
+            String unknown = "intruso" + i;
+            assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername(unknown));
+        }
+        long rejected = knownUvusFilter.getRejectedCount() - rejectedBefore;
+        long falsePositives = knownUvusFilter.getFalsePositiveCount() - falsePositivesBefore;
+        assertEquals(100, rejected + falsePositives);
+        assertTrue(rejected >= 90, "Too many unknown UVUS reached the database: " + falsePositives);
+
+        long rebuildsBefore = knownUvusFilter.getRebuildCount();
+        knownUvusFilter.rebuild();
+        assertEquals(rebuildsBefore + 1, knownUvusFilter.getRebuildCount());
+        assertTrue(knownUvusFilter.mightExist("jmcordero"));
+        assertTrue(knownUvusFilter.getExpectedFalsePositiveRate() < 0.01);
+    }
+
+    @Test
+    public void testBatchPermissionsForGrids() {
+        authenticateAsSystem();
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("P1");
+        portfolio.setDirector(manager1);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        Program program = new Program();
+        program.setName("Prog1");
+        program.setPortfolio(portfolio);
+        program.setDirector(manager2);
+        program = programService.createOrUpdate(program);
+
+        Program otherProgram = new Program();
+        otherProgram.setName("Prog2");
+        otherProgram.setPortfolio(portfolio);
+        otherProgram.setDirector(manager3);
+        otherProgram = programService.createOrUpdate(otherProgram);
+
+        Project project = new Project();
+        project.setName("Proj1");
+        project.setProgram(program);
+        project = projectService.createOrUpdate(project);
+
+        Project otherProject = new Project();
+        otherProject.setName("Proj2");
+        otherProject.setProgram(otherProgram);
+        otherProject = projectService.createOrUpdate(otherProject);
+
+        List<Long> projectIds = List.of(project.getId(), otherProject.getId());
+        List<Long> programIds = List.of(program.getId(), otherProgram.getId());
+
+        // Program director: only the projects of their program
+        authenticate(manager2);
+        Permissions projectPermissions = securityService.permissionsForProjects(projectIds);
+        assertTrue(projectPermissions.canEdit(project.getId()));
+        assertTrue(projectPermissions.canDelete(project.getId()));
+        assertFalse(projectPermissions.canEdit(otherProject.getId()));
+        assertFalse(securityService.permissionsForPrograms(programIds).canEdit(program.getId()));
+
+        // Portfolio director: every program of the portfolio, edit on the portfolio itself
+        authenticate(manager1);
+        Permissions programPermissions = securityService.permissionsForPrograms(programIds);
+        assertTrue(programPermissions.canEdit(program.getId()));
+        assertTrue(programPermissions.canDelete(otherProgram.getId()));
+        Permissions portfolioPermissions = securityService.permissionsForPortfolios(List.of(portfolio.getId()));
+        assertTrue(portfolioPermissions.canEdit(portfolio.getId()));
+        assertFalse(portfolioPermissions.canDelete(portfolio.getId()));
+
+        // Admin: full control over portfolios only
+        authenticate(admin);
+        assertTrue(securityService.permissionsForPortfolios(List.of(portfolio.getId())).canDelete(portfolio.getId()));
+        assertFalse(securityService.permissionsForProjects(projectIds).canEdit(project.getId()));
+    }
+
+    @Test
+    public void testBatchPermissionsSkipIdsUnknownToTheIndex() {
+        // Committed demo data: jmcordero directs a portfolio, one of its programs and
+        // that program's projects
+        User coordinator = userService.findByUvus("jmcordero");
+        Long portfolioId = directorshipIndex.portfoliosDirectedBy(coordinator.getId()).iterator().next();
+        Long programId = directorshipIndex.programsDirectedBy(coordinator.getId()).iterator().next();
+        assertEquals(portfolioId, directorshipIndex.portfolioOfProgram(programId));
+        Long projectId = projectRepository.findAll().stream()
+                .filter(project -> project.getProgram() != null && programId.equals(project.getProgram().getId()))
+                .findFirst().orElseThrow().getId();
+        // Not in the index, like a row of another node or not applied after commit yet
+        Long unknownId = Long.MAX_VALUE;
+
+        // On another thread: no transaction, so the shared index is read directly
+        PmisUserDetails principal = PmisUserDetails.of(coordinator, userVersions.current(coordinator.getId()));
+        List<Permissions> permissions = CompletableFuture.supplyAsync(() -> {
+            SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken
+                    .authenticated(principal, null, principal.getAuthorities()));
+            try {
+                return List.of(securityService.permissionsForPrograms(List.of(programId, unknownId)),
+                        securityService.permissionsForProjects(List.of(projectId, unknownId)));
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }).join();
+
+        assertTrue(permissions.get(0).canEdit(programId));
+        assertFalse(permissions.get(0).canEdit(unknownId));
+        assertTrue(permissions.get(1).canEdit(projectId));
+        assertFalse(permissions.get(1).canEdit(unknownId));
+    }
+
+    @Test
+    public void testPolicyDecisionsExplainTheirRules() {
+        authenticateAsSystem();
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("P1");
+        portfolio.setDirector(manager1);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        Program program = new Program();
+        program.setName("Prog1");
+        program.setPortfolio(portfolio);
+        program.setDirector(manager2);
+        program = programService.createOrUpdate(program);
+
+        Project project = new Project();
+        project.setName("Proj1");
+        project.setProgram(program);
+        project = projectService.createOrUpdate(project);
+
+        // The portfolio director does not direct the program of the project
+        authenticate(manager1);
+        Decision denied = policyEngine.explain(PolicyAction.PROJECT_DELETE, project.getId());
+        assertEquals(Decision.Effect.DENY, denied.effect());
+        assertEquals("default", denied.rule());
+        assertNotNull(denied.reason());
+        assertEquals(List.of("admin -> no match", "missing -> no match", "program-director -> no match",
+                "default -> DENY"), denied.trace());
+        Long projectId = project.getId();
+        assertThrows(SecurityException.class, () -> projectService.delete(projectId));
+
+        authenticate(manager2);
+        Decision permitted = policyEngine.explain(PolicyAction.PROJECT_DELETE, project.getId());
+        assertTrue(permitted.isPermitted());
+        assertEquals("program-director", permitted.rule());
+
+        // Missing resources are a no-op, not a denial
+        assertEquals(Decision.Effect.NOT_FOUND, policyEngine.decide(PolicyAction.PROJECT_DELETE, -1L).effect());
+
+        // Users: self, admin targets and managers deleting managers are denied with their own rule
+        assertEquals("self", policyEngine.decide(PolicyAction.USER_DELETE, manager2.getId()).rule());
+        assertEquals("admin-target", policyEngine.decide(PolicyAction.USER_DELETE, admin.getId()).rule());
+        assertEquals("default", policyEngine.decide(PolicyAction.USER_DELETE, manager3.getId()).rule());
+        assertEquals("manager-deletes-user",
+                policyEngine.decide(PolicyAction.USER_DELETE, regularUser.getId()).rule());
+    }
+
+    @Test
+    public void testListingsFetchOnlyRowsVisibleToEachRole() {
+        authenticateAsSystem();
+
+        // 3 portfolios x 4 programs x 25 projects; manager2 directs one program,
+        // the regular user works on one project and directs another
+        List<Project> projects = new java.util.ArrayList<>();
+        for (int f = 0; f < 3; f++) {
+            Portfolio portfolio = new Portfolio();
+            portfolio.setName("Fixture portfolio " + f);
+            portfolio.setDirector(manager1);
+            portfolio = portfolioService.createOrUpdate(portfolio);
+            for (int g = 0; g < 4; g++) {
+                Program program = new Program();
+                program.setName("Fixture program " + f + "." + g);
+                program.setPortfolio(portfolio);
+                program.setDirector(f == 0 && g == 0 ? manager2 : manager4);
+                program = programService.createOrUpdate(program);
+                for (int p = 0; p < 25; p++) {
+                    Project project = new Project();
+                    project.setName("Fixture project " + f + "." + g + "." + p);
+                    project.setProgram(program);
+                    project.setSponsor(manager4);
+                    projects.add(projectService.createOrUpdate(project));
+                }
+            }
+        }
+        Project assigned = projects.get(0);
+        Project directed = projects.get(299);
+        directed.setDirector(regularUser);
+        projectService.createOrUpdate(directed);
+        regularUser.setProject(assigned);
+        userService.createOrUpdate(regularUser);
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            // USER: their two projects, the two programs and portfolios holding them
+            authenticate(regularUser);
+            assertEquals(2, loaded(statistics, Project.class, () -> projectService.getAll()));
+            assertEquals(2, loaded(statistics, Program.class, () -> programService.getAll()));
+            assertEquals(2, loaded(statistics, Portfolio.class, () -> portfolioService.getAll()));
+
+            // MANAGER: the program they direct and its projects
+            authenticate(manager2);
+            assertEquals(25, loaded(statistics, Project.class, () -> projectService.getAll()));
+            assertEquals(1, loaded(statistics, Program.class, () -> programService.getAll()));
+            assertEquals(1, loaded(statistics, Portfolio.class, () -> portfolioService.getAll()));
+
+            // ADMIN: everything
+            authenticate(admin);
+            assertEquals(projectRepository.count(), loaded(statistics, Project.class, () -> projectService.getAll()));
+            assertEquals(programRepository.count(), loaded(statistics, Program.class, () -> programService.getAll()));
+            assertEquals(portfolioRepository.count(),
+                    loaded(statistics, Portfolio.class, () -> portfolioService.getAll()));
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void testRateLimiterRejectsBurstsPerKey() throws Exception {
+        // Default LOGIN bucket: 10 attempts, then about one every 6 seconds
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, rateLimiter.tryAcquire(RateLimitBucket.LOGIN, "test:burst"));
+        }
+        long rejected = rateLimiter.getRejectedCount(RateLimitBucket.LOGIN);
+        assertTrue(rateLimiter.tryAcquire(RateLimitBucket.LOGIN, "test:burst") > 0);
+        assertEquals(rejected + 1, rateLimiter.getRejectedCount(RateLimitBucket.LOGIN));
+        RateLimitExceededException ex = assertThrows(RateLimitExceededException.class,
+                () -> rateLimiter.acquire(RateLimitBucket.LOGIN, "test:burst"));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+
+        // Other keys and other buckets are independent
+        assertEquals(0, rateLimiter.tryAcquire(RateLimitBucket.LOGIN, "test:other"));
+        assertEquals(0, rateLimiter.tryAcquire(RateLimitBucket.WRITE, "test:burst"));
+
+        // A service call is charged once per transaction, however many services it goes through
+        authenticate(admin);
+        long allowed = rateLimiter.getAllowedCount(RateLimitBucket.READ);
+        for (int i = 0; i < 200; i++) {
+            projectService.getAll();
+        }
+        assertEquals(allowed + 1, rateLimiter.getAllowedCount(RateLimitBucket.READ));
+
+        // The login form is throttled per UVUS and per IP before the credentials are
+        // checked; users sharing an address (NAT, proxy) do not lock each other out
+        SecurityContextHolder.clearContext();
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        for (int i = 0; i < 30; i++) {
+            mockMvc.perform(post("/login").with(csrf()).with(remoteAddr("10.0.0.99"))
+                    .param("username", "nobody-" + i).param("password", "x"))
+                    .andExpect(header().doesNotExist(HttpHeaders.RETRY_AFTER));
+        }
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(post("/login").with(csrf()).with(remoteAddr("10.0.1." + i))
+                    .param("username", "nobody").param("password", "x"))
+                    .andExpect(header().doesNotExist(HttpHeaders.RETRY_AFTER));
+        }
+        mockMvc.perform(post("/login").with(csrf()).with(remoteAddr("10.0.1.99"))
+                .param("username", "NOBODY").param("password", "x"))
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
+        // Each attempt is still charged to the per-IP budget, which stops one address
+        // trying many UVUS
+        long ipAllowed = rateLimiter.getAllowedCount(RateLimitBucket.LOGIN_IP);
+        mockMvc.perform(post("/login").with(csrf()).with(remoteAddr("10.0.0.99"))
+                .param("username", "somebody-else").param("password", "x"));
+        assertEquals(ipAllowed + 1, rateLimiter.getAllowedCount(RateLimitBucket.LOGIN_IP));
+    }
+
+    @Test
+    public void testOnlyLocalProxiesAreTrustedForTheClientIp() {
+        // The real server's RemoteIpValve takes X-Forwarded-For only from these addresses
+        String trusted = context.getEnvironment().getProperty("server.tomcat.remoteip.internal-proxies");
+        assertTrue(java.util.regex.Pattern.matches(trusted, "127.0.0.1"));
+        assertTrue(java.util.regex.Pattern.matches(trusted, "0:0:0:0:0:0:0:1"));
+        assertFalse(java.util.regex.Pattern.matches(trusted, "10.0.0.99"));
+        assertFalse(java.util.regex.Pattern.matches(trusted, "127a0b0c1"));
+    }
+
+    private static org.springframework.test.web.servlet.request.RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
+    /**
+     * Entities of the given type hydrated from the database by the listing, with
+     * an empty persistence context so none is served from it
+     */
+    private long loaded(Statistics statistics, Class<?> entity, java.util.function.Supplier<List<?>> listing) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        List<?> rows = listing.get();
+        long loads = statistics.getEntityStatistics(entity.getName()).getLoadCount();
+        assertEquals(rows.size(), loads);
+        return loads;
+    }
 }
@@ -0,0 +1,142 @@
+package com.example.security.policy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioService;
+import com.example.program.Program;
+import com.example.program.ProgramService;
+import com.example.project.Project;
+import com.example.project.ProjectService;
+import com.example.security.PmisUserDetails;
+import com.example.security.UserVersions;
+import com.example.user.Role;
+import com.example.user.User;
+import com.example.user.UserService;
+
+/**
+ * Decision latency of the policy engine. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@Transactional
+public class PolicyEngineBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PolicyEngineBenchmarkTest.class);
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+    private static final int QUERY_ITERATIONS = 2_000;
+
+    @Autowired
+    PolicyEngine policyEngine;
+    @Autowired
+    UserService userService;
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    ProjectService projectService;
+    @Autowired
+    UserVersions userVersions;
+
+    private User programDirector;
+    private User regularUser;
+    private Project project;
+
+    @BeforeEach
+    public void setup() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("system", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+
+        User portfolioDirector = createUser("bench-portfolio", Role.MANAGER);
+        programDirector = createUser("bench-program", Role.MANAGER);
+        regularUser = createUser("bench-user", Role.USER);
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("Bench portfolio");
+        portfolio.setDirector(portfolioDirector);
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        Program program = new Program();
+        program.setName("Bench program");
+        program.setPortfolio(portfolio);
+        program.setDirector(programDirector);
+        program = programService.createOrUpdate(program);
+
+        project = new Project();
+        project.setName("Bench project");
+        project.setProgram(program);
+        project = projectService.createOrUpdate(project);
+
+        // Login-form principal, so identity resolution needs no lookup
+        PmisUserDetails principal = PmisUserDetails.of(programDirector,
+                userVersions.current(programDirector.getId()));
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+
+    private User createUser(String uvus, Role role) {
+        User user = new User();
+        user.setName(uvus);
+        user.setUvus(uvus);
+        user.setRole(role);
+        return userService.createOrUpdate(user);
+    }
+
+    @Test
+    public void decisionLatency() {
+        // Rules alone, attributes already resolved
+        PolicyContext projectContext = policyEngine.context(PolicyAction.PROJECT_DELETE, project.getId());
+        projectContext.resource();
+        Function<PolicyContext, Decision> projectDelete = policyEngine.compiled(PolicyAction.PROJECT_DELETE);
+        assertEquals(Decision.Effect.PERMIT, projectDelete.apply(projectContext).effect());
+        report("PROJECT_DELETE rules only", ITERATIONS, () -> projectDelete.apply(projectContext));
+
+        PolicyContext userContext = policyEngine.context(PolicyAction.USER_DELETE, regularUser.getId());
+        userContext.resource();
+        Function<PolicyContext, Decision> userDelete = policyEngine.compiled(PolicyAction.USER_DELETE);
+        assertEquals(Decision.Effect.PERMIT, userDelete.apply(userContext).effect());
+        report("USER_DELETE rules only", ITERATIONS, () -> userDelete.apply(userContext));
+
+        // Subject resolution plus the resource query
+        report("PROJECT_DELETE end to end", QUERY_ITERATIONS,
+                () -> policyEngine.decide(PolicyAction.PROJECT_DELETE, project.getId()));
+        report("USER_DELETE end to end", QUERY_ITERATIONS,
+                () -> policyEngine.decide(PolicyAction.USER_DELETE, regularUser.getId()));
+        report("PROJECT_DELETE traced", QUERY_ITERATIONS,
+                () -> policyEngine.explain(PolicyAction.PROJECT_DELETE, project.getId()));
+    }
+
+    private static void report(String name, int iterations, Supplier<Decision> decision) {
+        Decision last = null;
+        for (int i = 0; i < Math.min(WARMUP, iterations); i++) {
+            last = decision.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            last = decision.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("{}: {} ns/decision ({} decisions, last: {})", name,
+                String.format("%.1f", (double) elapsed / iterations), iterations, last.effect());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioService;
+import com.example.program.Program;
+import com.example.program.ProgramService;
+import com.example.project.Project;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Insert throughput of 100k users and 10k projects, one statement per row
+ * against the configured JDBC batch size. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, properties = "spring.jpa.show-sql=false")
+@Transactional
+public class BulkWriteBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkWriteBenchmarkTest.class);
+
+    private static final int USERS = 100_000;
+    private static final int PROJECTS = 10_000;
+    private static final int WARMUP_USERS = 10_000;
+    private static final int WARMUP_PROJECTS = 1_000;
+    // Rows per flush and clear, so the persistence context stays small
+    private static final int FLUSH_EVERY = 1_000;
+
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    private Program program;
+
+    @BeforeEach
+    public void setup() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("system", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("Bench portfolio");
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        program = new Program();
+        program.setName("Bench program");
+        program.setPortfolio(portfolio);
+        program = programService.createOrUpdate(program);
+    }
+
+    @Test
+    public void insertThroughput() {
+        Integer configured = Integer.valueOf(String.valueOf(
+                entityManager.getEntityManagerFactory().getProperties().get("hibernate.jdbc.batch_size")));
+
+        insert("warmup", 1, WARMUP_USERS, WARMUP_PROJECTS);
+        insert("warmup-batched", configured, WARMUP_USERS, WARMUP_PROJECTS);
+
+        insert("row-by-row", 1, USERS, PROJECTS);
+        insert("batched", configured, USERS, PROJECTS);
+    }
+
+    private void insert(String name, Integer batchSize, int users, int projects) {
+        Session session = entityManager.unwrap(Session.class);
+        session.setJdbcBatchSize(batchSize);
+        long before = userRepository.count();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setName("Bench user " + i);
+            user.setUvus(name + "-" + i);
+            user.setRole(Role.USER);
+            entityManager.persist(user);
+            flushEvery(i);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        long usersElapsed = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Program parent = entityManager.getReference(Program.class, program.getId());
+        for (int i = 0; i < projects; i++) {
+            Project project = new Project();
+            project.setName(name + " project " + i);
+            project.setProgram(parent);
+            entityManager.persist(project);
+            if (flushEvery(i)) {
+                parent = entityManager.getReference(Program.class, program.getId());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        long projectsElapsed = System.nanoTime() - start;
+
+        assertEquals(before + users, userRepository.count());
+        log.info("{} (batch {}): users {} rows/s, projects {} rows/s", name, batchSize,
+                Math.round(users * 1e9 / usersElapsed), Math.round(projects * 1e9 / projectsElapsed));
+        session.setJdbcBatchSize(null);
+    }
+
+    private boolean flushEvery(int i) {
+        if ((i + 1) % FLUSH_EVERY != 0) {
+            return false;
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.portfolio.Portfolio;
+import com.example.portfolio.PortfolioService;
+import com.example.program.Program;
+import com.example.program.ProgramService;
+import com.example.project.Project;
+import com.example.project.ProjectService;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Cost of refreshing the members of a project as the user table grows. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@Transactional
+public class ProjectMembershipBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectMembershipBenchmarkTest.class);
+
+    private static final int[] TEAM_SIZES = { 5, 50 };
+    private static final int[] USER_TOTALS = { 2_000, 20_000 };
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    PortfolioService portfolioService;
+    @Autowired
+    ProgramService programService;
+    @Autowired
+    ProjectService projectService;
+    @Autowired
+    EntityManager entityManager;
+
+    private final List<Project> teams = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("system", "pass",
+                        List.of(new SimpleGrantedAuthority("ROLE_SYSTEM_ADMIN"))));
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setName("Bench portfolio");
+        portfolio = portfolioService.createOrUpdate(portfolio);
+
+        Program program = new Program();
+        program.setName("Bench program");
+        program.setPortfolio(portfolio);
+        program = programService.createOrUpdate(program);
+
+        for (int teamSize : TEAM_SIZES) {
+            Project project = new Project();
+            project.setName("Bench team of " + teamSize);
+            project.setProgram(program);
+            teams.add(projectService.createOrUpdate(project));
+        }
+    }
+
+    @Test
+    public void membersRefreshScalesWithTeamSize() {
+        int created = 0;
+        for (int total : USER_TOTALS) {
+            created = addUsers(created, total);
+            for (int t = 0; t < TEAM_SIZES.length; t++) {
+                Project team = teams.get(t);
+                int teamSize = TEAM_SIZES[t];
+                assertEquals(teamSize, userService.countByProject(team.getId()));
+
+                report("indexed query", total, teamSize, () -> userService.findByProject(team.getId()));
+                report("full scan + filter", total, teamSize, () -> userRepository.findAllWithProject().stream()
+                        .filter(user -> user.getProject() != null
+                                && user.getProject().getId().equals(team.getId()))
+                        .toList());
+            }
+        }
+    }
+
+    /**
+     * Grows the user table to the given total. The first users fill the teams.
+     */
+    private int addUsers(int from, int total) {
+        List<User> batch = new ArrayList<>();
+        for (int i = from; i < total; i++) {
+            User user = new User();
+            user.setName("Bench user " + i);
+            user.setUvus("bench" + i);
+            user.setRole(Role.USER);
+            int offset = i;
+            for (int t = 0; t < TEAM_SIZES.length; t++) {
+                if (offset < TEAM_SIZES[t]) {
+                    user.setProject(teams.get(t));
+                    break;
+                }
+                offset -= TEAM_SIZES[t];
+            }
+            batch.add(user);
+            if (batch.size() == 1_000) {
+                flush(batch);
+            }
+        }
+        flush(batch);
+        return total;
+    }
+
+    private void flush(List<User> batch) {
+        userRepository.saveAll(batch);
+        entityManager.flush();
+        entityManager.clear();
+        batch.clear();
+    }
+
+    private void report(String name, int total, int teamSize, Supplier<List<User>> refresh) {
+        List<User> members = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            members = refresh.get();
+            entityManager.clear();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            members = refresh.get();
+            entityManager.clear();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(teamSize, members.size());
+        log.info("{} (users {}, team {}): {} us/refresh", name, total, teamSize,
+                String.format("%.1f", elapsed / 1_000.0 / ITERATIONS));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.user;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -17,6 +18,16 @@ public class UserServiceTest {
 
 	@Autowired
 	UserService userService;
+	@Autowired
+	UserRepository userRepository;
+	@Autowired
+	com.example.config.SecondLevelCacheStatistics cacheStatistics;
+	@Autowired
+	com.example.portfolio.PortfolioService portfolioService;
+	@Autowired
+	com.example.program.ProgramService programService;
+	@Autowired
+	com.example.project.ProjectService projectService;
 
 	@org.junit.jupiter.api.BeforeEach
 	public void setupSecurity() {
@@ -221,4 +232,135 @@ public class UserServiceTest {
 		userService.delete(createdUser.getId());
 		assertNull(userService.get(createdUser.getId()));
 	}
+
+	@Test
+	public void testDependenciesCountEveryAssignment() {
+		var manager = new User();
+		manager.setName("Assigned Manager");
+		manager.setUvus("assigned_manager");
+		manager.setRole(Role.MANAGER);
+		manager = userService.createOrUpdate(manager);
+		var free = new User();
+		free.setName("Free User");
+		free.setUvus("free_user");
+		free = userService.createOrUpdate(free);
+
+		var portfolio = new com.example.portfolio.Portfolio();
+		portfolio.setName("Dependencies Portfolio");
+		portfolio.setDirector(manager);
+		portfolio = portfolioService.createOrUpdate(portfolio);
+		var program = new com.example.program.Program();
+		program.setName("Dependencies Program");
+		program.setPortfolio(portfolio);
+		program.setDirector(manager);
+		program = programService.createOrUpdate(program);
+		for (int i = 0; i < 2; i++) {
+			var project = new com.example.project.Project();
+			project.setName("Sponsored Project " + i);
+			project.setProgram(program);
+			project.setSponsor(manager);
+			projectService.createOrUpdate(project);
+		}
+
+		var dependencies = userService.getDependencies(java.util.List.of(manager.getId(), free.getId(), -1L));
+		assertEquals(2, dependencies.size());
+		var assigned = dependencies.get(manager.getId());
+		assertEquals(1, assigned.portfolios());
+		assertEquals(1, assigned.programs());
+		assertEquals(0, assigned.directedProjects());
+		assertEquals(2, assigned.sponsoredProjects());
+		assertEquals(0, assigned.pmos());
+		assertTrue(assigned.isAssigned());
+		assertTrue(!dependencies.get(free.getId()).isAssigned());
+
+		assertTrue(userService.hasAssignedEntities(manager.getId()));
+		assertTrue(!userService.hasAssignedEntities(free.getId()));
+		assertEquals(java.util.Set.of(manager.getId()),
+				userService.withAssignedEntities(java.util.List.of(manager.getId(), free.getId())));
+		assertTrue(userService.withAssignedEntities(java.util.List.of()).isEmpty());
+	}
+
+	@Test
+	public void testGetPageWalksAllUsersByNameAndId() {
+		// Same name on several rows: the id breaks the tie between pages
+		for (int i = 0; i < 5; i++) {
+			var user = new User();
+			user.setName("Paged User");
+			user.setUvus("paged_" + i);
+			userService.createOrUpdate(user);
+		}
+
+		var expected = userService.getAll().stream()
+				.sorted(java.util.Comparator.comparing(User::getName).thenComparing(User::getId))
+				.map(User::getId)
+				.toList();
+		var walked = new java.util.ArrayList<Long>();
+		var page = userService.getPage(null, null, 3);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 3);
+			page.forEach(user -> walked.add(user.id()));
+			var last = page.get(page.size() - 1);
+			page = userService.getPage(last.name(), last.id(), 3);
+		}
+		assertEquals(expected, walked);
+	}
+
+	@Test
+	public void testSearchAvailableForProjectByPrefix() {
+		for (String[] row : new String[][] { { "cand_a1", "Zoe Candidate" }, { "cand_b2", "Bob Candidate" },
+				{ "candxa3", "Carl Candidate" }, { "CAND_C4", "Dan Candidate" }, { "zz_cand5", "Candice Other" } }) {
+			var user = new User();
+			user.setUvus(row[0]);
+			user.setName(row[1]);
+			userService.createOrUpdate(user);
+		}
+
+		// Case is ignored and "_" is a literal, not a LIKE wildcard
+		var byUvus = userService.searchAvailableForProject(null, "CAND_", null, null, 10);
+		assertEquals(java.util.List.of("cand_a1", "cand_b2", "CAND_C4"), byUvus.stream().map(UserRow::uvus).toList());
+
+		var byName = userService.searchAvailableForProject(null, "zoe", null, null, 10);
+		assertEquals(java.util.List.of("cand_a1"), byName.stream().map(UserRow::uvus).toList());
+
+		// UVUS and name matches merged and paged in lowercased UVUS order
+		var first = userService.searchAvailableForProject(null, "cand", null, null, 3);
+		assertEquals(java.util.List.of("cand_a1", "cand_b2", "CAND_C4"), first.stream().map(UserRow::uvus).toList());
+		var second = userService.searchAvailableForProject(null, "cand", "CAND_C4", first.get(2).id(), 3);
+		assertEquals(java.util.List.of("candxa3", "zz_cand5"), second.stream().map(UserRow::uvus).toList());
+	}
+
+	@Test
+	public void testUvusIsUniqueIgnoringCase() {
+		var user = new User();
+		user.setName("Lower Case");
+		user.setUvus("casetest");
+		userService.createOrUpdate(user);
+
+		var clash = new User();
+		clash.setName("Upper Case");
+		clash.setUvus("CaseTest");
+		assertThrows(org.springframework.dao.DataIntegrityViolationException.class, () -> {
+			userService.createOrUpdate(clash);
+			userRepository.flush();
+		});
+	}
+
+	// Outside the test transaction, so each lookup runs in its own session
+	@Test
+	@org.springframework.transaction.annotation.Transactional(propagation = org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED)
+	public void testFindByUvusUsesNaturalIdCache() {
+		var user = new User();
+		user.setName("Cached User");
+		user.setUvus("cached_user");
+		var id = userService.createOrUpdate(user).getId();
+		try {
+			assertEquals(id, userService.findByUvus("cached_user").getId());
+			long hits = cacheStatistics.getNaturalIdHitCount();
+			assertEquals(id, userService.findByUvus("cached_user").getId());
+			assertTrue(cacheStatistics.getNaturalIdHitCount() > hits);
+			assertNull(userService.findByUvus("not_a_user"));
+		} finally {
+			userService.delete(id);
+		}
+	}
 }